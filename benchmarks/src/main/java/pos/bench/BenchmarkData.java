@@ -0,0 +1,89 @@
+package pos.bench;
+
+import pos.db.ProductDAO;
+import pos.db.PromotionDao;
+import pos.model.Product;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic catalogs and promotion sets for the benchmarks.
+ * Everything is generated from a fixed seed so runs are comparable.
+ * SKUs are numeric (100000, 100001, ...) so product promotions can target them by id.
+ */
+final class BenchmarkData {
+    static final int CATEGORIES = 50;
+    static final int FIRST_SKU = 100000;
+    private static final long SEED = 42L;
+
+    private BenchmarkData() {}
+
+    static String sku(int index) {
+        return String.valueOf(FIRST_SKU + index);
+    }
+
+    /**
+     * Catalog of the given size; about one product in ten is out of stock
+     */
+    static Product[] products(int count) {
+        Random random = new Random(SEED);
+        Product[] products = new Product[count];
+        for (int i = 0; i < count; i++) {
+            double price = (random.nextInt(500_00) + 50) / 100.0;
+            int quantity = random.nextInt(10) == 0 ? 0 : random.nextInt(200) + 1;
+            products[i] = new Product(sku(i), price, "Product " + i, "", quantity, 1 + random.nextInt(CATEGORIES));
+        }
+        return products;
+    }
+
+    /**
+     * Poll result for a catalog, as ProductDAO returns it (status "active", data hash set)
+     */
+    static List<ProductDAO.ProductWithStatus> productsWithStatus(Product[] products) {
+        List<ProductDAO.ProductWithStatus> rows = new ArrayList<>(products.length);
+        for (Product p : products) {
+            rows.add(withStatus(p, p.getPrice(), p.getQuantity()));
+        }
+        return rows;
+    }
+
+    static ProductDAO.ProductWithStatus withStatus(Product p, double price, int quantity) {
+        ProductDAO.ProductWithStatus row = new ProductDAO.ProductWithStatus(
+            p.getSku(), price, p.getDescription(), p.getImagePath(), quantity, p.getCategoryId(), "active");
+        row.setDataHash(row.generateCurrentHash());
+        return row;
+    }
+
+    /**
+     * Mix of store-wide, category and product promotions, percentage and fixed,
+     * some with a minimum purchase
+     */
+    static List<PromotionDao.Promotion> promotions(int count, int skuCount) {
+        Random random = new Random(SEED + 1);
+        List<PromotionDao.Promotion> promos = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            PromotionDao.Promotion p = new PromotionDao.Promotion();
+            p.id = i + 1;
+            p.title = "Promo " + (i + 1);
+            p.saleChannel = "in-store";
+            boolean percentage = random.nextBoolean();
+            p.type = percentage ? "percentage" : "fixed";
+            p.value = percentage ? 5 + random.nextInt(30) : 10 + random.nextInt(200);
+            p.minPurchase = random.nextInt(4) == 0 ? 100 + random.nextInt(900) : 0;
+            int target = random.nextInt(20);
+            if (target == 0) {
+                p.appliesToType = "all";
+            } else if (target < 8) {
+                p.appliesToType = "category";
+                p.appliesToId = 1 + random.nextInt(CATEGORIES);
+            } else {
+                p.appliesToType = "product";
+                p.appliesToId = FIRST_SKU + random.nextInt(skuCount);
+            }
+            promos.add(p);
+        }
+        return promos;
+    }
+}
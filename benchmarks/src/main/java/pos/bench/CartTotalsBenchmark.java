@@ -0,0 +1,87 @@
+package pos.bench;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pos.db.PromotionIndex;
+import pos.model.CartItem;
+import pos.model.Product;
+import pos.view.CartPricingEngine;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cart totals as PaymentSectionView gets them: a quantity change repricing one line,
+ * adding a line, and repricing the whole cart after the promotions are reloaded.
+ * Only needs javafx-base (observable collections), not a running FX toolkit.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CartTotalsBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int skus;
+
+    @Param({"10", "100", "1000"})
+    public int promotions;
+
+    @Param({"20"})
+    public int cartLines;
+
+    private Product[] products;
+    private ObservableList<CartItem> cart;
+    private CartPricingEngine engine;
+    private PromotionIndex index;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        products = BenchmarkData.products(skus);
+        index = PromotionIndex.compile(BenchmarkData.promotions(promotions, skus));
+        cart = FXCollections.observableArrayList();
+        for (int i = 0; i < cartLines; i++) {
+            cart.add(new CartItem(products[(int) ((long) i * skus / cartLines)], 1));
+        }
+        engine = new CartPricingEngine(cart);
+        engine.setVatRate(12);
+        engine.setPromotionIndex(index);
+    }
+
+    @Benchmark
+    public CartPricingEngine.Totals changeQuantity() {
+        int i = next;
+        next = i + 1 == cartLines ? 0 : i + 1;
+        CartItem item = cart.get(i);
+        item.setQuantity(item.getQuantity() == 1 ? 2 : 1);
+        return engine.getTotals();
+    }
+
+    @Benchmark
+    public CartPricingEngine.Totals addAndRemoveLine() {
+        int i = next;
+        next = i + 1 == skus ? 0 : i + 1;
+        cart.add(new CartItem(products[i], 1));
+        cart.remove(cart.size() - 1);
+        return engine.getTotals();
+    }
+
+    @Benchmark
+    public CartPricingEngine.Totals reloadPromotions() {
+        engine.setPromotionIndex(index);
+        return engine.getTotals();
+    }
+}
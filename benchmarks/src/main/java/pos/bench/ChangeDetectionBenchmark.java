@@ -0,0 +1,66 @@
+package pos.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pos.db.ProductDAO;
+import pos.model.Product;
+import pos.view.ProductChangeDetector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Product polling change detection (POSView.analyzeProductChanges).
+ * Each invocation analyzes a full catalog poll in which changedPercent of the products
+ * have a new quantity; polls alternate between the changed and the original data so
+ * every call reports the same number of modified products.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChangeDetectionBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int skus;
+
+    @Param({"1"})
+    public int changedPercent;
+
+    private ProductChangeDetector detector;
+    private List<ProductDAO.ProductWithStatus> original;
+    private List<ProductDAO.ProductWithStatus> changed;
+    private boolean flip;
+
+    @Setup
+    public void setUp() {
+        Product[] products = BenchmarkData.products(skus);
+        original = BenchmarkData.productsWithStatus(products);
+        changed = new ArrayList<>(original);
+        int step = Math.max(1, 100 / Math.max(1, changedPercent));
+        for (int i = 0; i < skus; i += step) {
+            Product p = products[i];
+            changed.set(i, BenchmarkData.withStatus(p, p.getPrice(), p.getQuantity() + 1));
+        }
+        detector = new ProductChangeDetector();
+        detector.prime(products);
+    }
+
+    @Benchmark
+    public ProductChangeDetector.Changes analyze() {
+        flip = !flip;
+        return detector.analyze(flip ? changed : original, row -> row);
+    }
+}
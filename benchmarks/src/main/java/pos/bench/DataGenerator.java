@@ -0,0 +1,381 @@
+package pos.bench;
+
+import pos.db.DBConnection;
+import pos.model.Money;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic catalog and sales history for load tests and query tuning.
+ * Generates, from one seed:
+ *   inventory items spread over categories, each sold in-store (one in_store_product_details row)
+ *   or in-store and online (online_product_details plus 1..maxVariants variants);
+ *   vouchers with applicability rules (all, category or product);
+ *   months of pos_transactions with physical_sale_items and transaction_log entries, where SKU
+ *   popularity follows a Zipf distribution so a few products dominate like in a real store;
+ *   pos_returns with pos_return_items for a share of those sales.
+ *
+ * Keys are assigned here, starting at 1, so the output goes into an empty schema. SKUs are numeric
+ * (in-store 1000001.., variants 5000001..) so product vouchers can reference them by applies_to_id.
+ * Output is either loaded directly over JDBC (DBConnection, embedded profile unless -Dpos.db.profile
+ * is set) or written as a MySQL script of multi-row INSERT batches:
+ *
+ *   java -Dpos.db.profile=mysql -cp target/benchmarks.jar pos.bench.DataGenerator
+ *   java -Dpos.gen.output=sql:/tmp/pos_data.sql -Dpos.gen.months=12 -cp target/benchmarks.jar pos.bench.DataGenerator
+ *
+ * The in-memory embedded database only lives as long as the JVM, so a standalone JDBC load is only
+ * useful with a file-based -Dpos.db.embedded.url or against MySQL; LoadSimulator calls load() itself.
+ */
+public class DataGenerator {
+
+    static final long IN_STORE_SKU_BASE = 1_000_000L;
+    static final long VARIANT_SKU_BASE = 5_000_000L;
+
+    private static final String[] ADJECTIVES = {
+        "Classic", "Premium", "Compact", "Deluxe", "Everyday", "Fresh", "Heavy-Duty", "Mini", "Organic", "Travel"
+    };
+    private static final String[] NOUNS = {
+        "Notebook", "Tumbler", "Shampoo", "Charger", "Towel", "Snack Pack", "Sandals", "Umbrella", "Lunch Box", "Pen Set",
+        "Face Mask", "Coffee", "Headphones", "Backpack", "Soap", "Rice Cooker", "T-Shirt", "Water Bottle"
+    };
+
+    /**
+     * Generation settings, from -Dpos.gen.* system properties; fields can be changed before generate()
+     */
+    static final class Config {
+        int items = Integer.getInteger("pos.gen.items", 5000);
+        double onlineShare = Double.parseDouble(System.getProperty("pos.gen.onlineShare", "0.3"));
+        int maxVariants = Integer.getInteger("pos.gen.maxVariants", 3);
+        double archivedShare = Double.parseDouble(System.getProperty("pos.gen.archivedShare", "0.02"));
+        int categories = Integer.getInteger("pos.gen.categories", 40);
+        int stockMin = Integer.getInteger("pos.gen.stockMin", 0);
+        int stockMax = Integer.getInteger("pos.gen.stockMax", 200);
+        int vouchers = Integer.getInteger("pos.gen.vouchers", 30);
+        int months = Integer.getInteger("pos.gen.months", 6);
+        int salesPerDay = Integer.getInteger("pos.gen.salesPerDay", 300); // weekday average; weekends are busier
+        double meanLines = Double.parseDouble(System.getProperty("pos.gen.meanLines", "2.5"));
+        double skew = Double.parseDouble(System.getProperty("pos.gen.skew", "1.1")); // Zipf exponent
+        double returnRate = Double.parseDouble(System.getProperty("pos.gen.returnRate", "0.02"));
+        int[] staffIds = parseIds(System.getProperty("pos.gen.staffIds", "1"));
+        int supervisorId = Integer.getInteger("pos.gen.supervisorId", 2);
+        int vatRate = Integer.getInteger("pos.gen.vatRate", 12);
+        int rowsPerInsert = Integer.getInteger("pos.gen.rowsPerInsert", 500);
+        int commitEvery = Integer.getInteger("pos.gen.commitEvery", 20_000);
+        long seed = Long.getLong("pos.gen.seed", 42L);
+        String output = System.getProperty("pos.gen.output", "jdbc"); // jdbc, or sql:<file>
+
+        private static int[] parseIds(String spec) {
+            return Arrays.stream(spec.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+        }
+    }
+
+    /**
+     * Row counts per table, for the summary
+     */
+    static final class Summary {
+        long inventory, inStore, variants, vouchers, applicability, sales, saleItems, returns, returnItems;
+
+        @Override
+        public String toString() {
+            return String.format("%,d items (%,d in-store SKUs, %,d variants), %,d vouchers (%,d rules), "
+                    + "%,d sales (%,d lines), %,d returns (%,d lines)",
+                inventory, inStore, variants, vouchers, applicability, sales, saleItems, returns, returnItems);
+        }
+    }
+
+    /**
+     * A sellable SKU as referenced by sale lines
+     */
+    private static final class Sku {
+        final String sku;
+        final long unitPrice;
+        final int stock;
+        final String saleChannel;
+        final int onlineItemId;
+        final int inStoreItemId;
+
+        Sku(String sku, long unitPrice, int stock, String saleChannel, int onlineItemId, int inStoreItemId) {
+            this.sku = sku;
+            this.unitPrice = unitPrice;
+            this.stock = stock;
+            this.saleChannel = saleChannel;
+            this.onlineItemId = onlineItemId;
+            this.inStoreItemId = inStoreItemId;
+        }
+    }
+
+    private final Config config;
+    private final Random random;
+    private final Summary summary = new Summary();
+    private final List<Sku> skus = new ArrayList<>();
+
+    DataGenerator(Config config) {
+        if (config.items >= VARIANT_SKU_BASE - IN_STORE_SKU_BASE) {
+            throw new IllegalArgumentException("pos.gen.items must be below " + (VARIANT_SKU_BASE - IN_STORE_SKU_BASE));
+        }
+        this.config = config;
+        this.random = new Random(config.seed);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Config config = new Config();
+        long start = System.nanoTime();
+        Summary summary;
+        if (config.output.startsWith("sql:")) {
+            Path file = Paths.get(config.output.substring(4));
+            try (SqlRowSink sink = new SqlRowSink(file, config.rowsPerInsert)) {
+                summary = new DataGenerator(config).generate(sink);
+            }
+            System.out.println("Wrote " + file.toAbsolutePath());
+        } else if ("jdbc".equals(config.output)) {
+            if (System.getProperty("pos.db.profile") == null) {
+                System.setProperty("pos.db.profile", DBConnection.PROFILE_EMBEDDED);
+            }
+            summary = load(config);
+            System.out.println("Loaded into " + DBConnection.getProfile() + " database");
+        } else {
+            throw new IllegalArgumentException("pos.gen.output must be 'jdbc' or 'sql:<file>'");
+        }
+        System.out.printf("Generated %s in %.1f s%n", summary, (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Load a generated catalog, and history if configured, into the DBConnection database
+     */
+    static Summary load(Config config) throws Exception {
+        try (JdbcRowSink sink = new JdbcRowSink(config.rowsPerInsert, config.commitEvery)) {
+            sink.requireEmpty();
+            return new DataGenerator(config).generate(sink);
+        }
+    }
+
+    Summary generate(RowSink sink) throws Exception {
+        generateCatalog(sink);
+        generateVouchers(sink);
+        if (config.months > 0 && config.salesPerDay > 0 && !skus.isEmpty()) {
+            generateHistory(sink);
+        }
+        return summary;
+    }
+
+    private void generateCatalog(RowSink sink) throws Exception {
+        int variantId = 0;
+        int onlineDetailsId = 0;
+        int inStoreId = 0;
+        for (int itemId = 1; itemId <= config.items; itemId++) {
+            boolean both = random.nextDouble() < config.onlineShare;
+            boolean archived = random.nextDouble() < config.archivedShare;
+            String name = ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " " + NOUNS[random.nextInt(NOUNS.length)] + " " + itemId;
+            sink.row(GeneratedTable.INVENTORY, itemId, name, "Generated product " + itemId,
+                1 + random.nextInt(Math.max(1, config.categories)), archived ? "archived" : "active", both ? "both" : "in-store");
+            summary.inventory++;
+
+            long basePrice = randomPrice();
+            if (both) {
+                sink.row(GeneratedTable.ONLINE_PRODUCT_DETAILS, ++onlineDetailsId, itemId);
+                int variants = 1 + random.nextInt(Math.max(1, config.maxVariants));
+                for (int v = 0; v < variants; v++) {
+                    variantId++;
+                    // Variants of one product differ a little in price
+                    long price = Math.max(100, basePrice + (v == 0 ? 0 : (random.nextInt(41) - 20) * basePrice / 100 / 25 * 25));
+                    int stock = randomStock();
+                    String sku = Long.toString(VARIANT_SKU_BASE + variantId);
+                    sink.row(GeneratedTable.ONLINE_PRODUCT_VARIANT, variantId, onlineDetailsId, sku,
+                        Money.toBigDecimal(price), stock, "product_" + itemId + "_" + (v + 1) + ".jpg");
+                    skus.add(new Sku(sku, price, stock, "both", variantId, 0));
+                    summary.variants++;
+                }
+            } else {
+                inStoreId++;
+                int stock = randomStock();
+                String sku = Long.toString(IN_STORE_SKU_BASE + inStoreId);
+                sink.row(GeneratedTable.IN_STORE_PRODUCT_DETAILS, inStoreId, itemId, sku, Money.toBigDecimal(basePrice), stock);
+                skus.add(new Sku(sku, basePrice, stock, "in-store", 0, inStoreId));
+                summary.inStore++;
+            }
+        }
+    }
+
+    /**
+     * Log-normal around 250 pesos, in quarter-peso steps, between 10 and 20,000 pesos
+     */
+    private long randomPrice() {
+        double pesos = Math.exp(Math.log(250) + 0.9 * random.nextGaussian());
+        pesos = Math.min(20_000, Math.max(10, pesos));
+        return Math.round(pesos * 4) * 25;
+    }
+
+    private int randomStock() {
+        return config.stockMin + random.nextInt(Math.max(1, config.stockMax - config.stockMin + 1));
+    }
+
+    private void generateVouchers(RowSink sink) throws Exception {
+        LocalDate today = LocalDate.now();
+        String[] channels = {"in-store", "both", "online"};
+        int ruleId = 0;
+        for (int voucherId = 1; voucherId <= config.vouchers; voucherId++) {
+            // Mostly automatic discounts, since those are what the POS applies
+            String method = random.nextInt(4) == 0 ? "voucher_code" : "automatic_discount";
+            int kind = random.nextInt(10);
+            String type = kind < 6 ? "percentage" : kind < 9 ? "fixed" : "free_shipping";
+            BigDecimal value = "percentage".equals(type) ? BigDecimal.valueOf(5 + 5 * random.nextInt(6))
+                : "fixed".equals(type) ? Money.toBigDecimal((20 + random.nextInt(30) * 10) * 100L)
+                : BigDecimal.ZERO;
+            BigDecimal minPurchase = random.nextBoolean() ? BigDecimal.ZERO : Money.toBigDecimal((500 + random.nextInt(20) * 100) * 100L);
+            // A quarter expired or not started yet, the rest running today
+            LocalDate activation = today.minusDays(random.nextInt(60));
+            LocalDate expiration = today.plusDays(1 + random.nextInt(90));
+            int window = random.nextInt(8);
+            if (window == 0) {
+                expiration = activation.minusDays(1 + random.nextInt(30));
+                activation = expiration.minusDays(30);
+            } else if (window == 1) {
+                activation = today.plusDays(1 + random.nextInt(30));
+                expiration = activation.plusDays(30);
+            }
+            sink.row(GeneratedTable.VOUCHERS, voucherId, "Promo " + voucherId, type, value, minPurchase,
+                channels[random.nextInt(channels.length)], method, Date.valueOf(activation), Date.valueOf(expiration));
+            summary.vouchers++;
+
+            int scope = random.nextInt(10);
+            if (scope < 2 || skus.isEmpty()) {
+                sink.row(GeneratedTable.VOUCHER_APPLICABILITY, ++ruleId, voucherId, "all", null);
+                summary.applicability++;
+            } else if (scope < 6) {
+                int rules = 1 + random.nextInt(2);
+                for (int r = 0; r < rules; r++) {
+                    sink.row(GeneratedTable.VOUCHER_APPLICABILITY, ++ruleId, voucherId, "category",
+                        1 + random.nextInt(Math.max(1, config.categories)));
+                    summary.applicability++;
+                }
+            } else {
+                int rules = 1 + random.nextInt(5);
+                for (int r = 0; r < rules; r++) {
+                    Sku target = skus.get(random.nextInt(skus.size()));
+                    sink.row(GeneratedTable.VOUCHER_APPLICABILITY, ++ruleId, voucherId, "product", Integer.valueOf(target.sku));
+                    summary.applicability++;
+                }
+            }
+        }
+    }
+
+    private void generateHistory(RowSink sink) throws Exception {
+        // Popularity rank is independent of the SKU number
+        List<Sku> byPopularity = new ArrayList<>(skus);
+        Collections.shuffle(byPopularity, random);
+        double[] cumulative = new double[byPopularity.size()];
+        double total = 0;
+        for (int rank = 0; rank < cumulative.length; rank++) {
+            total += 1.0 / Math.pow(rank + 1, config.skew);
+            cumulative[rank] = total;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        LocalDate firstDay = now.toLocalDate().minusMonths(config.months);
+        int saleId = 0, saleItemId = 0, returnId = 0, returnItemId = 0, logId = 0;
+
+        for (LocalDate day = firstDay; !day.isAfter(now.toLocalDate()); day = day.plusDays(1)) {
+            DayOfWeek dow = day.getDayOfWeek();
+            double load = dow == DayOfWeek.SATURDAY ? 1.8 : dow == DayOfWeek.SUNDAY ? 1.4 : 1.0;
+            int sales = (int) Math.round(config.salesPerDay * load * (0.8 + 0.4 * random.nextDouble()));
+            // Store hours 9:00-21:00, in order through the day
+            int[] seconds = new int[sales];
+            for (int s = 0; s < sales; s++) {
+                seconds[s] = 9 * 3600 + random.nextInt(12 * 3600);
+            }
+            Arrays.sort(seconds);
+
+            String dayKey = day.toString().replace("-", "");
+            int logSeq = 0;
+            for (int s = 0; s < sales; s++) {
+                LocalDateTime when = day.atStartOfDay().plusSeconds(seconds[s]);
+                if (when.isAfter(now)) break;
+
+                saleId++;
+                int lines = Math.min(15, 1 + geometric(config.meanLines - 1));
+                List<Sku> picked = new ArrayList<>(lines);
+                List<Integer> quantities = new ArrayList<>(lines);
+                long subtotal = 0;
+                for (int l = 0; l < lines; l++) {
+                    Sku sku = byPopularity.get(zipf(cumulative));
+                    if (picked.contains(sku)) continue;
+                    int qty = random.nextInt(10) < 7 ? 1 : 2 + random.nextInt(3);
+                    picked.add(sku);
+                    quantities.add(qty);
+                    subtotal += Money.times(sku.unitPrice, qty);
+                }
+                long discount = random.nextInt(10) == 0 ? Money.percentOf(subtotal, 10) : 0;
+                long tax = Money.percentOf(subtotal - discount, config.vatRate);
+                long totalAmount = subtotal - discount + tax;
+                boolean cash = random.nextInt(10) < 7;
+                long received = cash ? (totalAmount + 9_999) / 10_000 * 10_000 : totalAmount; // rounded up to 100 pesos
+                String invoiceNo = String.format("%07d", saleId);
+                int staffId = config.staffIds[random.nextInt(config.staffIds.length)];
+
+                sink.row(GeneratedTable.POS_TRANSACTIONS, saleId, Timestamp.valueOf(when), cash ? "Cash" : "E-Wallet", staffId,
+                    Money.toBigDecimal(subtotal), Money.toBigDecimal(discount), Money.toBigDecimal(tax),
+                    Money.toBigDecimal(totalAmount), Money.toBigDecimal(received), invoiceNo,
+                    cash ? null : String.format("%013d", Math.floorMod(random.nextLong(), 10_000_000_000_000L)));
+                sink.row(GeneratedTable.TRANSACTION_LOG, ++logId, String.format("TRX-%s-%05d", dayKey, ++logSeq),
+                    null, saleId, null, null, "in-store", "sale", "completed");
+                summary.sales++;
+
+                int firstItemId = saleItemId + 1;
+                for (int l = 0; l < picked.size(); l++) {
+                    Sku sku = picked.get(l);
+                    int qty = quantities.get(l);
+                    sink.row(GeneratedTable.PHYSICAL_SALE_ITEMS, ++saleItemId, saleId, sku.sku, qty, sku.stock,
+                        Money.toBigDecimal(Money.times(sku.unitPrice, qty)), sku.saleChannel, sku.onlineItemId, sku.inStoreItemId);
+                    summary.saleItems++;
+                }
+
+                if (random.nextDouble() < config.returnRate) {
+                    // One line back, part or all of it
+                    int l = random.nextInt(picked.size());
+                    Sku sku = picked.get(l);
+                    int qtyReturned = 1 + random.nextInt(quantities.get(l));
+                    long refund = Money.times(sku.unitPrice, qtyReturned);
+                    returnId++;
+                    sink.row(GeneratedTable.POS_RETURNS, returnId, String.format("RTN-%06d", returnId), invoiceNo,
+                        staffId, config.supervisorId, Money.toBigDecimal(refund), "Cash", "Generated return");
+                    sink.row(GeneratedTable.POS_RETURN_ITEMS, ++returnItemId, returnId, firstItemId + l,
+                        sku.onlineItemId, sku.inStoreItemId, qtyReturned, Money.toBigDecimal(refund));
+                    sink.row(GeneratedTable.TRANSACTION_LOG, ++logId, String.format("TRX-%s-%05d", dayKey, ++logSeq),
+                        null, null, null, returnId, "in-store", "refund", "refunded");
+                    summary.returns++;
+                    summary.returnItems++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Index into the popularity ranking, drawn from the cumulative Zipf weights
+     */
+    private int zipf(double[] cumulative) {
+        double target = random.nextDouble() * cumulative[cumulative.length - 1];
+        int idx = Arrays.binarySearch(cumulative, target);
+        return Math.min(cumulative.length - 1, idx >= 0 ? idx : -idx - 1);
+    }
+
+    /**
+     * Geometric number of extra lines with the given mean (0 or more)
+     */
+    private int geometric(double mean) {
+        if (mean <= 0) return 0;
+        double p = 1.0 / (1.0 + mean);
+        return (int) Math.floor(Math.log(1 - random.nextDouble()) / Math.log(1 - p));
+    }
+}
@@ -0,0 +1,42 @@
+package pos.bench;
+
+/**
+ * Tables written by DataGenerator, in an order that satisfies their foreign keys.
+ * The first column is the primary key; the generator assigns it so the rows can reference
+ * each other without reading generated keys back.
+ */
+enum GeneratedTable {
+    INVENTORY("inventory", "id", "item_name", "description", "category_id", "product_status", "sale_channel"),
+    IN_STORE_PRODUCT_DETAILS("in_store_product_details", "id", "inventory_product_id", "sku", "unit_price", "quantity"),
+    ONLINE_PRODUCT_DETAILS("online_product_details", "id", "product_id"),
+    ONLINE_PRODUCT_VARIANT("online_product_variant", "id", "online_product_id", "sku", "unit_price", "quantity", "image_path"),
+    VOUCHERS("vouchers", "id", "title", "type", "value", "min_purchase", "sale_channel", "application_method",
+             "activation_date", "expiration_date"),
+    VOUCHER_APPLICABILITY("voucher_applicability", "id", "voucher_id", "applies_to_type", "applies_to_id"),
+    POS_TRANSACTIONS("pos_transactions", "id", "transaction_date", "payment_method", "staff_id", "subtotal", "discount",
+                     "tax", "total_amount", "received_amount", "invoice_no", "payment_ref_no"),
+    PHYSICAL_SALE_ITEMS("physical_sale_items", "id", "pos_transaction_id", "sku", "order_quantity", "stock_quantity",
+                        "subtotal", "sale_channel", "online_inventory_item_id", "in_store_inventory_item_id"),
+    POS_RETURNS("pos_returns", "return_id", "return_no", "invoice_no", "cashier_id", "supervisor_id", "refund_total",
+                "refund_method", "notes"),
+    POS_RETURN_ITEMS("pos_return_items", "id", "return_id", "invoice_item_id", "online_inventory_item_id",
+                     "in_store_inventory_id", "qty_returned", "refund_amount"),
+    TRANSACTION_LOG("transaction_log", "id", "transaction_id", "online_order_id", "pos_transaction_id", "return_id",
+                    "pos_returns_id", "channel", "type", "status");
+
+    final String tableName;
+    final String[] columns;
+
+    GeneratedTable(String tableName, String... columns) {
+        this.tableName = tableName;
+        this.columns = columns;
+    }
+
+    String idColumn() {
+        return columns[0];
+    }
+
+    String insertPrefix() {
+        return "INSERT INTO " + tableName + " (" + String.join(", ", columns) + ") VALUES ";
+    }
+}
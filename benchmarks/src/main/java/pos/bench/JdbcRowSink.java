@@ -0,0 +1,127 @@
+package pos.bench;
+
+import pos.db.DBConnection;
+import pos.db.EmbeddedDatabase;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads generated rows straight into the database from DBConnection, as multi-row INSERTs.
+ * Rows are buffered per table; when any buffer is full all tables are flushed in declaration
+ * order, so parents are always written before the rows that reference them.
+ */
+final class JdbcRowSink implements RowSink {
+    private final Connection conn;
+    private final int rowsPerInsert;
+    private final int commitEvery;
+    private final Map<GeneratedTable, List<Object[]>> buffers = new EnumMap<>(GeneratedTable.class);
+    private final Map<GeneratedTable, Long> maxIds = new EnumMap<>(GeneratedTable.class);
+    private long rowsSinceCommit;
+    private long rowsWritten;
+
+    JdbcRowSink(int rowsPerInsert, int commitEvery) throws SQLException {
+        this.rowsPerInsert = rowsPerInsert;
+        this.commitEvery = commitEvery;
+        this.conn = DBConnection.getConnection();
+        conn.setAutoCommit(false);
+        for (GeneratedTable table : GeneratedTable.values()) {
+            buffers.put(table, new ArrayList<>(rowsPerInsert));
+        }
+    }
+
+    /**
+     * Generated IDs start at 1, so the target tables must be empty
+     */
+    void requireEmpty() throws SQLException {
+        for (GeneratedTable table : GeneratedTable.values()) {
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table.tableName)) {
+                if (rs.next() && rs.getLong(1) > 0) {
+                    throw new SQLException(table.tableName + " already has rows - generate into an empty database");
+                }
+            }
+        }
+    }
+
+    @Override
+    public void row(GeneratedTable table, Object... values) throws SQLException {
+        List<Object[]> buffer = buffers.get(table);
+        buffer.add(values);
+        maxIds.merge(table, ((Number) values[0]).longValue(), Math::max);
+        if (buffer.size() >= rowsPerInsert) {
+            flushAll();
+        }
+    }
+
+    long rowsWritten() {
+        return rowsWritten;
+    }
+
+    private void flushAll() throws SQLException {
+        for (GeneratedTable table : GeneratedTable.values()) {
+            List<Object[]> buffer = buffers.get(table);
+            if (!buffer.isEmpty()) {
+                insert(table, buffer);
+                rowsSinceCommit += buffer.size();
+                rowsWritten += buffer.size();
+                buffer.clear();
+            }
+        }
+        if (rowsSinceCommit >= commitEvery) {
+            conn.commit();
+            rowsSinceCommit = 0;
+        }
+    }
+
+    private void insert(GeneratedTable table, List<Object[]> rows) throws SQLException {
+        String placeholders = "(" + "?, ".repeat(table.columns.length - 1) + "?)";
+        StringBuilder sql = new StringBuilder(table.insertPrefix());
+        for (int i = 0; i < rows.size(); i++) {
+            if (i > 0) sql.append(", ");
+            sql.append(placeholders);
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            int idx = 1;
+            for (Object[] row : rows) {
+                for (Object value : row) {
+                    if (value == null) {
+                        stmt.setNull(idx++, Types.NULL);
+                    } else {
+                        stmt.setObject(idx++, value);
+                    }
+                }
+            }
+            stmt.executeUpdate();
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try {
+            flushAll();
+            conn.commit();
+            if (DBConnection.getDataSource() instanceof EmbeddedDatabase) {
+                // H2 doesn't move an identity past explicitly inserted keys the way MySQL does
+                try (Statement stmt = conn.createStatement()) {
+                    for (Map.Entry<GeneratedTable, Long> entry : maxIds.entrySet()) {
+                        GeneratedTable table = entry.getKey();
+                        stmt.execute("ALTER TABLE " + table.tableName + " ALTER COLUMN " + table.idColumn()
+                            + " RESTART WITH " + (entry.getValue() + 1));
+                    }
+                }
+                conn.commit();
+            }
+        } finally {
+            conn.close();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package pos.bench;
+
+import java.util.Arrays;
+
+/**
+ * Exact latency samples (nanoseconds) for one operation type on one lane.
+ * Lanes record into their own recorder without locking; recorders are merged for the report.
+ */
+final class LatencyRecorder {
+    private long[] samples = new long[1024];
+    private int size;
+    private boolean sorted;
+
+    void record(long nanos) {
+        if (size == samples.length) {
+            samples = Arrays.copyOf(samples, size * 2);
+        }
+        samples[size++] = nanos;
+        sorted = false;
+    }
+
+    void addAll(LatencyRecorder other) {
+        if (size + other.size > samples.length) {
+            samples = Arrays.copyOf(samples, Math.max(samples.length * 2, size + other.size));
+        }
+        System.arraycopy(other.samples, 0, samples, size, other.size);
+        size += other.size;
+        sorted = false;
+    }
+
+    int count() {
+        return size;
+    }
+
+    /**
+     * Nearest-rank percentile, e.g. 0.99 for p99; 0 if nothing was recorded
+     */
+    long percentile(double fraction) {
+        if (size == 0) {
+            return 0;
+        }
+        if (!sorted) {
+            Arrays.sort(samples, 0, size);
+            sorted = true;
+        }
+        int rank = (int) Math.ceil(fraction * size);
+        return samples[Math.min(size, Math.max(1, rank)) - 1];
+    }
+
+    long max() {
+        return percentile(1.0);
+    }
+}
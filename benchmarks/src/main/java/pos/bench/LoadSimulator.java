@@ -0,0 +1,512 @@
+package pos.bench;
+
+import pos.db.ActivityLogWriter;
+import pos.db.CheckoutDAO;
+import pos.db.DBConnection;
+import pos.db.InvoiceCache;
+import pos.db.ProductDAO;
+import pos.db.ReturnsDAO;
+import pos.db.SlowQueryLog;
+import pos.db.StockReservationDAO;
+import pos.model.CartItem;
+import pos.model.Money;
+import pos.model.Product;
+
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransactionRollbackException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Headless load simulator for checkout-rush contention.
+ * N virtual cashiers ("lanes") run concurrently through the same DAO paths as the POS:
+ *   scan     - StockReservationDAO.upsertReservation for one more of a product
+ *   adjust   - change the quantity of a cart line by one (upsert or removeReservation)
+ *   checkout - CheckoutDAO.writeSale in one transaction (sale rows, guarded stock decrement,
+ *              reservation release)
+ *   return   - one unit of a recent sale through ReturnsDAO.processReturnTransactionWithReturnNo
+ * A share of the scans hits a small set of hot products to create contention.
+ *
+ * Reported per operation: throughput, p50/p99/p999/max latency, and outcomes (ok, rejected by a
+ * business rule such as insufficient stock, deadlock, lock wait timeout, constraint conflict, error).
+ * At the end the stock levels are compared with what was sold and returned: an oversell incident
+ * is a product sold beyond its stock (or left negative), a mismatch is stock that doesn't add up.
+ *
+ * Runs against the embedded database unless -Dpos.db.profile is set; an empty embedded catalog is
+ * filled with pos.sim.seedSkus products first. Against MySQL it writes real sales, so it refuses to
+ * run there without -Dpos.sim.allowNonEmbedded=true.
+ *
+ *   java -cp target/benchmarks.jar pos.bench.LoadSimulator
+ *   java -Dpos.sim.lanes=16 -Dpos.sim.thinkMs=0 -cp target/benchmarks.jar pos.bench.LoadSimulator
+ *
+ * Exits with status 2 if any oversell incident or stock mismatch was found.
+ */
+public class LoadSimulator {
+
+    enum Op { SCAN, ADJUST, CHECKOUT, RETURN }
+
+    enum Outcome { OK, REJECTED, DEADLOCK, LOCK_TIMEOUT, CONFLICT, ERROR }
+
+    private static final int MAX_RECENT_INVOICES = 2000;
+    private static final int MAX_LOGGED_ERRORS = 10;
+    private static final int VAT_RATE = 12;
+
+    /**
+     * Simulation settings, from -Dpos.sim.* system properties
+     */
+    static final class Config {
+        final int lanes = Integer.getInteger("pos.sim.lanes", 8);
+        final int durationSeconds = Integer.getInteger("pos.sim.durationSeconds", 60);
+        final long thinkMs = Long.getLong("pos.sim.thinkMs", 250L); // mean, exponentially distributed
+        final int[] mix = parseMix(System.getProperty("pos.sim.mix", "scan=55,adjust=20,checkout=20,return=5"));
+        final int hotSkus = Integer.getInteger("pos.sim.hotSkus", 20);
+        final double hotShare = Double.parseDouble(System.getProperty("pos.sim.hotShare", "0.5"));
+        final int maxCartLines = Integer.getInteger("pos.sim.maxCartLines", 12);
+        final int cashierId = Integer.getInteger("pos.sim.cashierId", 1);
+        final int supervisorId = Integer.getInteger("pos.sim.supervisorId", 2);
+        final int seedSkus = Integer.getInteger("pos.sim.seedSkus", 500);
+        final int seedStock = Integer.getInteger("pos.sim.seedStock", 40);
+        final long seed = Long.getLong("pos.sim.seed", 42L);
+
+        String describeMix() {
+            StringBuilder sb = new StringBuilder();
+            for (Op op : Op.values()) {
+                if (sb.length() > 0) sb.append(',');
+                sb.append(op.name().toLowerCase()).append('=').append(mix[op.ordinal()]);
+            }
+            return sb.toString();
+        }
+
+        private static int[] parseMix(String spec) {
+            int[] weights = new int[Op.values().length];
+            for (String part : spec.split(",")) {
+                String[] kv = part.trim().split("=");
+                if (kv.length != 2) {
+                    throw new IllegalArgumentException("Bad pos.sim.mix entry '" + part + "', expected op=weight");
+                }
+                weights[Op.valueOf(kv[0].trim().toUpperCase()).ordinal()] = Integer.parseInt(kv[1].trim());
+            }
+            return weights;
+        }
+    }
+
+    private final Config config;
+    private final List<Product> catalog = new ArrayList<>();
+    private final List<Product> hotProducts = new ArrayList<>();
+    private final Map<String, Product> productsBySku = new HashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> sold = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> returned = new ConcurrentHashMap<>();
+    private final List<String> recentInvoices = new ArrayList<>();
+    private final AtomicLong cartCounter = new AtomicLong();
+    private final AtomicLong loggedErrors = new AtomicLong();
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+
+    LoadSimulator(Config config) {
+        this.config = config;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (System.getProperty("pos.db.profile") == null) {
+            System.setProperty("pos.db.profile", DBConnection.PROFILE_EMBEDDED);
+        }
+        if (!DBConnection.isEmbedded() && !Boolean.getBoolean("pos.sim.allowNonEmbedded")) {
+            System.err.println("Refusing to write simulated sales to " + DBConnection.getProfile()
+                + " - use the embedded profile or set -Dpos.sim.allowNonEmbedded=true");
+            System.exit(1);
+        }
+        int status;
+        try {
+            status = new LoadSimulator(new Config()).run(System.out);
+        } finally {
+            ActivityLogWriter.shutdownShared();
+            SlowQueryLog.shutdown();
+        }
+        System.exit(status);
+    }
+
+    /**
+     * Run the simulation and print the report
+     * @return 0 if stock is consistent, 2 if oversells or mismatches were found
+     */
+    int run(PrintStream out) throws Exception {
+        loadCatalog();
+        Map<String, Integer> initialStock = stockBySku();
+
+        Lane[] lanes = new Lane[config.lanes];
+        Thread[] threads = new Thread[config.lanes];
+        long start = System.nanoTime();
+        long end = start + config.durationSeconds * 1_000_000_000L;
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane(i + 1, end);
+            threads[i] = new Thread(lanes[i], "sim-lane-" + (i + 1));
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        Map<String, Integer> finalStock = stockBySku();
+        report(out, lanes, elapsedSeconds);
+        return checkStock(out, initialStock, finalStock);
+    }
+
+    private void loadCatalog() throws Exception {
+        List<Product> products = ProductDAO.getAllActiveProductsAsList();
+        if (products.isEmpty()) {
+            if (!DBConnection.isEmbedded()) {
+                throw new IllegalStateException("No active products to sell");
+            }
+            seedCatalog(config.seedSkus, config.seedStock, config.seed);
+            products = ProductDAO.getAllActiveProductsAsList();
+        }
+        catalog.addAll(products);
+        for (Product p : products) {
+            productsBySku.put(p.getSku(), p);
+        }
+        List<Product> shuffled = new ArrayList<>(products);
+        Collections.shuffle(shuffled, new Random(config.seed));
+        hotProducts.addAll(shuffled.subList(0, Math.min(config.hotSkus, shuffled.size())));
+    }
+
+    /**
+     * Fill an empty embedded catalog through DataGenerator; about a quarter of the products are
+     * sold in-store and online, all active with the same stock
+     */
+    static void seedCatalog(int count, int stock, long seed) throws Exception {
+        DataGenerator.Config gen = new DataGenerator.Config();
+        gen.items = count;
+        gen.onlineShare = 0.25;
+        gen.maxVariants = 1;
+        gen.archivedShare = 0;
+        gen.stockMin = stock;
+        gen.stockMax = stock;
+        gen.vouchers = 0;
+        gen.months = 0;
+        gen.seed = seed;
+        DataGenerator.load(gen);
+        System.out.println("Seeded " + count + " products with " + stock + " in stock each");
+    }
+
+    private static Map<String, Integer> stockBySku() throws SQLException {
+        Map<String, Integer> stock = new HashMap<>();
+        for (ProductDAO.ProductWithStatus p : ProductDAO.getAllProductsWithStatus()) {
+            stock.put(p.getSku(), p.getQuantity());
+        }
+        return stock;
+    }
+
+    private void recordInvoice(String invoiceNo) {
+        synchronized (recentInvoices) {
+            if (recentInvoices.size() == MAX_RECENT_INVOICES) {
+                recentInvoices.remove(0);
+            }
+            recentInvoices.add(invoiceNo);
+        }
+    }
+
+    private String pickInvoice(Random random) {
+        synchronized (recentInvoices) {
+            return recentInvoices.isEmpty() ? null : recentInvoices.get(random.nextInt(recentInvoices.size()));
+        }
+    }
+
+    /**
+     * Sort a failure into a deadlock, lock wait timeout, constraint conflict, business-rule
+     * rejection (no SQLState anywhere in the chain, e.g. insufficient stock) or other error
+     */
+    static Outcome classify(SQLException e) {
+        boolean hasSqlState = false;
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (!(t instanceof SQLException)) continue;
+            SQLException sql = (SQLException) t;
+            String state = sql.getSQLState();
+            int code = sql.getErrorCode();
+            // MySQL 1205 / H2 50200: lock wait timeout; MySQL 1213 / H2 40001: deadlock
+            if (code == 1205 || code == 50200 || "HYT00".equals(state)) return Outcome.LOCK_TIMEOUT;
+            if (code == 1213 || "40001".equals(state) || sql instanceof SQLTransactionRollbackException) return Outcome.DEADLOCK;
+            if (state != null && state.startsWith("23")) return Outcome.CONFLICT;
+            if (state != null) hasSqlState = true;
+        }
+        return hasSqlState ? Outcome.ERROR : Outcome.REJECTED;
+    }
+
+    private void report(PrintStream out, Lane[] lanes, double elapsedSeconds) {
+        out.println();
+        out.printf("Load simulation: %d lanes, %.1f s, think %d ms, mix %s, %d products (%d hot, %.0f%% of scans)%n",
+            config.lanes, elapsedSeconds, config.thinkMs, config.describeMix(), catalog.size(),
+            hotProducts.size(), config.hotShare * 100);
+        out.printf("%-9s %8s %8s %8s %8s %8s %8s %8s %9s %9s %9s %9s %9s%n",
+            "op", "count", "ok", "rejected", "deadlock", "timeout", "conflict", "error",
+            "ops/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        long totalOps = 0;
+        long[] totalOutcomes = new long[Outcome.values().length];
+        for (Op op : Op.values()) {
+            LatencyRecorder merged = new LatencyRecorder();
+            long[] outcomes = new long[Outcome.values().length];
+            for (Lane lane : lanes) {
+                merged.addAll(lane.latencies[op.ordinal()]);
+                for (int i = 0; i < outcomes.length; i++) {
+                    outcomes[i] += lane.outcomes[op.ordinal()][i];
+                }
+            }
+            for (int i = 0; i < outcomes.length; i++) {
+                totalOutcomes[i] += outcomes[i];
+            }
+            totalOps += merged.count();
+            out.printf("%-9s %8d %8d %8d %8d %8d %8d %8d %9.1f %9.2f %9.2f %9.2f %9.2f%n",
+                op.name().toLowerCase(), merged.count(),
+                outcomes[Outcome.OK.ordinal()], outcomes[Outcome.REJECTED.ordinal()],
+                outcomes[Outcome.DEADLOCK.ordinal()], outcomes[Outcome.LOCK_TIMEOUT.ordinal()],
+                outcomes[Outcome.CONFLICT.ordinal()], outcomes[Outcome.ERROR.ordinal()],
+                merged.count() / elapsedSeconds,
+                millis(merged.percentile(0.50)), millis(merged.percentile(0.99)),
+                millis(merged.percentile(0.999)), millis(merged.max()));
+        }
+        out.printf("Throughput: %.1f ops/s; deadlocks: %d, lock wait timeouts: %d, conflicts: %d, errors: %d%n",
+            totalOps / elapsedSeconds, totalOutcomes[Outcome.DEADLOCK.ordinal()],
+            totalOutcomes[Outcome.LOCK_TIMEOUT.ordinal()], totalOutcomes[Outcome.CONFLICT.ordinal()],
+            totalOutcomes[Outcome.ERROR.ordinal()]);
+    }
+
+    private int checkStock(PrintStream out, Map<String, Integer> initialStock, Map<String, Integer> finalStock) {
+        int oversells = 0;
+        int mismatches = 0;
+        long unitsSold = 0;
+        long unitsReturned = 0;
+        Set<String> skus = new java.util.TreeSet<>(initialStock.keySet());
+        skus.addAll(finalStock.keySet());
+        for (String sku : skus) {
+            int initial = initialStock.getOrDefault(sku, 0);
+            int current = finalStock.getOrDefault(sku, 0);
+            long soldQty = sold.containsKey(sku) ? sold.get(sku).sum() : 0;
+            long returnedQty = returned.containsKey(sku) ? returned.get(sku).sum() : 0;
+            unitsSold += soldQty;
+            unitsReturned += returnedQty;
+            if (current < 0 || soldQty - returnedQty > initial) {
+                oversells++;
+                out.printf("  OVERSELL %s: stock %d, sold %d, returned %d, now %d%n", sku, initial, soldQty, returnedQty, current);
+            }
+            long expected = initial - soldQty + returnedQty;
+            if (current != expected) {
+                mismatches++;
+                out.printf("  MISMATCH %s: expected %d in stock, found %d%n", sku, expected, current);
+            }
+        }
+        out.printf("Stock check: %d units sold, %d returned; oversell incidents: %d, stock mismatches: %d%n",
+            unitsSold, unitsReturned, oversells, mismatches);
+        return oversells > 0 || mismatches > 0 ? 2 : 0;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    /**
+     * One virtual cashier with its own cart (reservation transaction ID and lines)
+     */
+    private final class Lane implements Runnable {
+        final LatencyRecorder[] latencies = new LatencyRecorder[Op.values().length];
+        final long[][] outcomes = new long[Op.values().length][Outcome.values().length];
+        private final int id;
+        private final long endNanos;
+        private final Random random;
+        private final int mixTotal;
+        private final Map<String, Integer> cart = new LinkedHashMap<>();
+        private String transactionId;
+
+        Lane(int id, long endNanos) {
+            this.id = id;
+            this.endNanos = endNanos;
+            this.random = new Random(config.seed * 31 + id);
+            int total = 0;
+            for (int weight : config.mix) total += weight;
+            this.mixTotal = total;
+            for (int i = 0; i < latencies.length; i++) {
+                latencies[i] = new LatencyRecorder();
+            }
+            newCart();
+        }
+
+        @Override
+        public void run() {
+            while (System.nanoTime() < endNanos) {
+                Op op = choose();
+                long start = System.nanoTime();
+                Outcome outcome;
+                try {
+                    outcome = execute(op);
+                } catch (SQLException e) {
+                    outcome = classify(e);
+                    if (op == Op.CHECKOUT) {
+                        abandonCart(); // the sale was rolled back; start over like a voided cart
+                    }
+                    if (outcome == Outcome.ERROR) logError(op, e);
+                } catch (RuntimeException e) {
+                    outcome = Outcome.ERROR;
+                    if (op == Op.CHECKOUT) {
+                        abandonCart();
+                    }
+                    logError(op, e);
+                }
+                latencies[op.ordinal()].record(System.nanoTime() - start);
+                outcomes[op.ordinal()][outcome.ordinal()]++;
+                think();
+            }
+            abandonCart();
+        }
+
+        private Op choose() {
+            int r = random.nextInt(Math.max(1, mixTotal));
+            Op op = Op.SCAN;
+            for (Op candidate : Op.values()) {
+                r -= config.mix[candidate.ordinal()];
+                if (r < 0) {
+                    op = candidate;
+                    break;
+                }
+            }
+            if ((op == Op.ADJUST || op == Op.CHECKOUT) && cart.isEmpty()) return Op.SCAN;
+            if (op == Op.SCAN && cart.size() >= config.maxCartLines) return Op.CHECKOUT;
+            if (op == Op.RETURN && pickInvoice(random) == null) return Op.SCAN;
+            return op;
+        }
+
+        private Outcome execute(Op op) throws SQLException {
+            switch (op) {
+                case SCAN: return scan();
+                case ADJUST: return adjust();
+                case CHECKOUT: return checkout();
+                default: return returnOne();
+            }
+        }
+
+        private Outcome scan() throws SQLException {
+            Product product = random.nextDouble() < config.hotShare && !hotProducts.isEmpty()
+                ? hotProducts.get(random.nextInt(hotProducts.size()))
+                : catalog.get(random.nextInt(catalog.size()));
+            int quantity = cart.getOrDefault(product.getSku(), 0) + 1;
+            try (Connection conn = DBConnection.getConnection()) {
+                StockReservationDAO.upsertReservation(conn, transactionId, product.getSku(), quantity);
+            }
+            cart.put(product.getSku(), quantity);
+            return Outcome.OK;
+        }
+
+        private Outcome adjust() throws SQLException {
+            List<String> lines = new ArrayList<>(cart.keySet());
+            String sku = lines.get(random.nextInt(lines.size()));
+            int quantity = cart.get(sku) + (random.nextBoolean() ? 1 : -1);
+            try (Connection conn = DBConnection.getConnection()) {
+                if (quantity == 0) {
+                    StockReservationDAO.removeReservation(conn, transactionId, sku);
+                } else {
+                    StockReservationDAO.upsertReservation(conn, transactionId, sku, quantity);
+                }
+            }
+            if (quantity == 0) {
+                cart.remove(sku);
+            } else {
+                cart.put(sku, quantity);
+            }
+            return Outcome.OK;
+        }
+
+        private Outcome checkout() throws SQLException {
+            List<CartItem> items = new ArrayList<>(cart.size());
+            long subtotal = 0;
+            for (Map.Entry<String, Integer> line : cart.entrySet()) {
+                CartItem item = new CartItem(productsBySku.get(line.getKey()), line.getValue(), transactionId);
+                items.add(item);
+                subtotal += item.getSubtotalCentavos();
+            }
+            long tax = Money.percentOf(subtotal, VAT_RATE);
+            long total = subtotal + tax;
+
+            CheckoutDAO.SaleResult sale;
+            try (Connection conn = DBConnection.getConnection()) {
+                conn.setAutoCommit(false);
+                try {
+                    sale = CheckoutDAO.writeSale(conn, items, config.cashierId, subtotal, 0, tax, total, total, "Cash", null);
+                    conn.commit();
+                } catch (SQLException | RuntimeException e) {
+                    conn.rollback();
+                    throw e;
+                }
+            }
+            for (Map.Entry<String, Integer> line : cart.entrySet()) {
+                sold.computeIfAbsent(line.getKey(), k -> new LongAdder()).add(line.getValue());
+            }
+            recordInvoice(sale.invoiceNo);
+            newCart();
+            return Outcome.OK;
+        }
+
+        private Outcome returnOne() throws SQLException {
+            String invoiceNo = pickInvoice(random);
+            InvoiceCache.CachedInvoice invoice = InvoiceCache.reload(invoiceNo);
+            if (!ReturnsDAO.validateInvoiceForReturns(invoice, invoiceNo).isValid) {
+                return Outcome.REJECTED;
+            }
+            InvoiceCache.InvoiceLine line = null;
+            int offset = random.nextInt(invoice.lines.size());
+            for (int i = 0; i < invoice.lines.size() && line == null; i++) {
+                InvoiceCache.InvoiceLine candidate = invoice.lines.get((offset + i) % invoice.lines.size());
+                if (candidate.getReturnableQuantity() > 0) line = candidate;
+            }
+            long refund = line.refundFor(line.subtotal, 1);
+            ReturnsDAO.ReturnItemData item = new ReturnsDAO.ReturnItemData(line.invoiceItemId,
+                line.onlineInventoryItemId > 0 ? line.onlineInventoryItemId : null,
+                line.inStoreInventoryItemId > 0 ? line.inStoreInventoryItemId : null,
+                1, refund);
+            ReturnsDAO.processReturnTransactionWithReturnNo(new ReturnsDAO.ReturnTransactionData(
+                invoiceNo, config.cashierId, config.supervisorId, refund, "Load simulator", List.of(item)));
+            returned.computeIfAbsent(line.sku, k -> new LongAdder()).increment();
+            return Outcome.OK;
+        }
+
+        private void newCart() {
+            cart.clear();
+            transactionId = "SIM-" + runId + "-" + id + "-" + cartCounter.incrementAndGet();
+        }
+
+        private void abandonCart() {
+            if (!cart.isEmpty()) {
+                try (Connection conn = DBConnection.getConnection()) {
+                    StockReservationDAO.clearReservationsByTransaction(conn, transactionId);
+                } catch (SQLException e) {
+                    logError(Op.CHECKOUT, e);
+                }
+            }
+            newCart();
+        }
+
+        private void think() {
+            if (config.thinkMs <= 0) return;
+            // Exponential think time around the mean, capped so one lane doesn't stall for long
+            long pause = (long) Math.min(config.thinkMs * 10.0, -Math.log(1 - random.nextDouble()) * config.thinkMs);
+            try {
+                Thread.sleep(pause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void logError(Op op, Exception e) {
+            if (loggedErrors.incrementAndGet() <= MAX_LOGGED_ERRORS) {
+                System.err.println("Lane " + id + " " + op.name().toLowerCase() + " failed: " + e);
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package pos.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pos.model.Product;
+import pos.view.ProductSearch;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Catalog search: the debounced as-you-type filter (ProductCatalogView.performSearch)
+ * and the exact SKU match on Enter / barcode scan (handleSearchEnterKey)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProductSearchBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int skus;
+
+    private Product[] products;
+    private String lastSku;
+
+    @Setup
+    public void setUp() {
+        products = BenchmarkData.products(skus);
+        lastSku = BenchmarkData.sku(skus - 1);
+    }
+
+    @Benchmark
+    public List<Product> filterSelective() {
+        return ProductSearch.filterInStock(products, lastSku.substring(0, 5));
+    }
+
+    @Benchmark
+    public List<Product> filterBroad() {
+        return ProductSearch.filterInStock(products, "1");
+    }
+
+    @Benchmark
+    public Product exactMatchWorstCase() {
+        return ProductSearch.findBySku(products, lastSku);
+    }
+
+    @Benchmark
+    public Product exactMatchMiss() {
+        return ProductSearch.findBySku(products, "UNKNOWN-SKU");
+    }
+}
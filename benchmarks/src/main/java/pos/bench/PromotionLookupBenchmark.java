@@ -0,0 +1,68 @@
+package pos.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pos.db.PromotionDao;
+import pos.db.PromotionIndex;
+import pos.model.Product;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Best-promotion lookup for one cart line, and compiling the promotion index after a reload
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PromotionLookupBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int skus;
+
+    @Param({"10", "100", "1000"})
+    public int promotions;
+
+    private Product[] products;
+    private long[] pricesCentavos;
+    private List<PromotionDao.Promotion> promos;
+    private PromotionIndex index;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        products = BenchmarkData.products(skus);
+        pricesCentavos = new long[skus];
+        for (int i = 0; i < skus; i++) {
+            pricesCentavos[i] = products[i].getPriceCentavos();
+        }
+        promos = BenchmarkData.promotions(promotions, skus);
+        index = PromotionIndex.compile(promos);
+    }
+
+    @Benchmark
+    public PromotionIndex.Match findBest() {
+        int i = next;
+        next = i + 1 == skus ? 0 : i + 1;
+        Product p = products[i];
+        return index.findBest(p.getSku(), p.getCategoryId(), pricesCentavos[i], 2);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public PromotionIndex compile() {
+        return PromotionIndex.compile(promos);
+    }
+}
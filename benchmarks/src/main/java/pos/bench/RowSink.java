@@ -0,0 +1,22 @@
+package pos.bench;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+/**
+ * Destination for generated rows: a database over JDBC, or a SQL script
+ */
+interface RowSink extends AutoCloseable {
+
+    /**
+     * Add one row; values are in the table's column order (Integer, Long, String, BigDecimal,
+     * java.sql.Timestamp, java.sql.Date or null)
+     */
+    void row(GeneratedTable table, Object... values) throws SQLException, IOException;
+
+    /**
+     * Write everything still buffered and finish (commit, or close the file)
+     */
+    @Override
+    void close() throws SQLException, IOException;
+}
@@ -0,0 +1,174 @@
+package pos.bench;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import pos.db.ActivityLogWriter;
+import pos.db.CheckoutDAO;
+import pos.db.DBConnection;
+import pos.db.EmbeddedDatabase;
+import pos.db.InvoiceCache;
+import pos.db.ProductDAO;
+import pos.db.ReturnsDAO;
+import pos.db.StockReservationDAO;
+import pos.model.CartItem;
+import pos.model.Money;
+import pos.model.Product;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs a checkout and returns through the same DAO calls as the tills on the embedded profile
+ * (H2 in MySQL mode), so SQL that H2 rejects fails "mvn test" instead of a benchmark run:
+ * the FOR UPDATE stock lock and CASE decrement of ProductDAO.batchUpdateInventory, the multi-row
+ * sale inserts, and the locking reads and TIMESTAMPDIFF window check of ReturnsDAO.
+ */
+class EmbeddedProfileSmokeTest {
+    private static final int CASHIER_ID = 1;
+    private static final int SUPERVISOR_ID = 2;
+    private static final int VAT_RATE = 12;
+
+    @BeforeAll
+    static void createDatabase() throws Exception {
+        System.setProperty("pos.db.profile", DBConnection.PROFILE_EMBEDDED);
+        DBConnection.setDataSource(EmbeddedDatabase.getInstance());
+        EmbeddedDatabase.getInstance().reset();
+        InvoiceCache.clear();
+        LoadSimulator.seedCatalog(20, 10, 7L);
+    }
+
+    @AfterAll
+    static void shutdown() {
+        ActivityLogWriter.shutdownShared();
+        DBConnection.setDataSource(null);
+    }
+
+    @Test
+    void checkoutAndReturn() throws Exception {
+        List<Product> products = pickProducts();
+        Product first = products.get(0);
+        Product second = products.get(1);
+        int firstStock = stockOf(first.getSku());
+        int secondStock = stockOf(second.getSku());
+
+        // Checkout: two of the first product, one of the second
+        String cartId = "SMOKE-" + System.nanoTime();
+        List<CartItem> cart = new ArrayList<>();
+        try (Connection conn = DBConnection.getConnection()) {
+            StockReservationDAO.upsertReservation(conn, cartId, first.getSku(), 2);
+            StockReservationDAO.upsertReservation(conn, cartId, second.getSku(), 1);
+        }
+        cart.add(new CartItem(first, 2, cartId));
+        cart.add(new CartItem(second, 1, cartId));
+        long subtotal = 0;
+        for (CartItem item : cart) {
+            subtotal += item.getSubtotalCentavos();
+        }
+        long tax = Money.percentOf(subtotal, VAT_RATE);
+        CheckoutDAO.SaleResult sale;
+        try (Connection conn = DBConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                sale = CheckoutDAO.writeSale(conn, cart, CASHIER_ID, subtotal, 0, tax, subtotal + tax,
+                    subtotal + tax, "Cash", null);
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+        assertNotNull(sale.invoiceNo);
+        assertEquals(2, sale.releasedReservations);
+        assertEquals(firstStock - 2, stockOf(first.getSku()));
+        assertEquals(secondStock - 1, stockOf(second.getSku()));
+
+        // Return one of the two
+        InvoiceCache.CachedInvoice invoice = InvoiceCache.reload(sale.invoiceNo);
+        assertTrue(ReturnsDAO.validateInvoiceForReturns(invoice, sale.invoiceNo).isValid);
+        InvoiceCache.InvoiceLine firstLine = lineFor(invoice, first.getSku());
+        InvoiceCache.InvoiceLine secondLine = lineFor(invoice, second.getSku());
+        ReturnsDAO.ReturnTransactionResult result = returnUnits(sale.invoiceNo, firstLine, 1);
+        assertNotNull(result.returnNo);
+        assertEquals(firstStock - 1, stockOf(first.getSku()));
+        assertEquals(1, lineFor(InvoiceCache.reload(sale.invoiceNo), first.getSku()).getReturnableQuantity());
+
+        // More than is left on the line is rejected and changes nothing
+        assertThrows(SQLException.class, () -> returnUnits(sale.invoiceNo, firstLine, 2));
+        assertEquals(firstStock - 1, stockOf(first.getSku()));
+
+        // Past the return window the locking read rejects it even with a stale validation
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                 "UPDATE pos_transactions SET transaction_date = ? WHERE invoice_no = ?")) {
+            long age = (ReturnsDAO.RETURN_WINDOW_DAYS + 1) * 24L * 60 * 60 * 1000;
+            stmt.setTimestamp(1, new Timestamp(System.currentTimeMillis() - age));
+            stmt.setString(2, sale.invoiceNo);
+            assertEquals(1, stmt.executeUpdate());
+        }
+        assertThrows(SQLException.class, () -> returnUnits(sale.invoiceNo, secondLine, 1));
+        assertEquals(secondStock - 1, stockOf(second.getSku()));
+        assertFalse(ReturnsDAO.validateInvoiceForReturns(InvoiceCache.reload(sale.invoiceNo), sale.invoiceNo).isValid);
+    }
+
+    /**
+     * An in-store product and an online one when the catalog has both, so both stock tables are
+     * decremented; otherwise the first two
+     */
+    private static List<Product> pickProducts() throws SQLException {
+        List<Product> products = ProductDAO.getAllActiveProductsAsList();
+        assertTrue(products.size() >= 2, "seeded catalog");
+        Product inStore = null;
+        Product online = null;
+        try (Connection conn = DBConnection.getConnection()) {
+            for (Product p : products) {
+                ProductDAO.InventoryInfo info = ProductDAO.getInventoryInfoBySku(conn, p.getSku());
+                if ("in-store".equals(info.saleChannel)) {
+                    if (inStore == null) inStore = p;
+                } else if (online == null) {
+                    online = p;
+                }
+            }
+        }
+        return inStore != null && online != null ? List.of(inStore, online) : products.subList(0, 2);
+    }
+
+    private static ReturnsDAO.ReturnTransactionResult returnUnits(String invoiceNo, InvoiceCache.InvoiceLine line,
+                                                                  int units) throws SQLException {
+        long refund = line.refundFor(line.subtotal, units);
+        ReturnsDAO.ReturnItemData item = new ReturnsDAO.ReturnItemData(line.invoiceItemId,
+            line.onlineInventoryItemId > 0 ? line.onlineInventoryItemId : null,
+            line.inStoreInventoryItemId > 0 ? line.inStoreInventoryItemId : null,
+            units, refund);
+        return ReturnsDAO.processReturnTransactionWithReturnNo(new ReturnsDAO.ReturnTransactionData(
+            invoiceNo, CASHIER_ID, SUPERVISOR_ID, refund, "Smoke test", List.of(item)));
+    }
+
+    private static InvoiceCache.InvoiceLine lineFor(InvoiceCache.CachedInvoice invoice, String sku) {
+        for (InvoiceCache.InvoiceLine line : invoice.lines) {
+            if (sku.equals(line.sku)) {
+                return line;
+            }
+        }
+        throw new AssertionError("No line for " + sku + " on " + invoice);
+    }
+
+    private static int stockOf(String sku) throws SQLException {
+        for (ProductDAO.ProductWithStatus p : ProductDAO.getAllProductsWithStatus()) {
+            if (sku.equals(p.getSku())) {
+                return p.getQuantity();
+            }
+        }
+        throw new AssertionError("No product " + sku);
+    }
+}
@@ -1,6 +1,7 @@
 package com.mycompany.pos_fx;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.geometry.Pos;
 import javafx.scene.Node;
 import javafx.scene.Scene;
@@ -11,12 +12,26 @@ import javafx.stage.Stage;
 import javafx.stage.StageStyle;
 import pos.view.LoginView;
 import pos.view.POSView;
+import pos.view.ReceiptQueue;
+import pos.view.ReceiptTemplates;
+import pos.view.WarmUp;
+import pos.db.ActivityLogWriter;
+import pos.db.AuthService;
 import pos.db.CashierDAO;
+import pos.db.DBConnection;
+import pos.db.SaleCommitService;
+import pos.db.SlowQueryLog;
+import pos.metrics.Metrics;
+import pos.log.Log;
+import pos.log.Logger;
+import pos.startup.Startup;
 
 public class App extends Application {
+    private static final Logger log = Log.get(App.class);
 
     @Override
     public void start(Stage stage) {
+        Startup.phase("fxStart");
         BorderPane root = new BorderPane();
         root.getStyleClass().add("root-container");
 
@@ -34,6 +49,32 @@ public class App extends Application {
 
         configureStage(stage, scene);
         makeDraggable(stage, header);
+        Platform.runLater(() -> Startup.phase("loginShown"));
+
+        // Nothing the login screen needs: compile receipt templates (unless the warm-up already
+        // did) and register the metrics MBean once the catalog is on screen
+        Startup.deferUntilLogin("receiptTemplates", ReceiptTemplates::compileAll);
+        // Latency histograms over JMX (pos:type=Metrics) and in a periodic log line
+        Startup.deferUntilLogin("metrics", Metrics::start);
+
+        if (Startup.isTraining()) {
+            runTraining();
+        }
+    }
+
+    /**
+     * AppCDS training run (-Dpos.startup.training=true): load everything a normal session loads
+     * up to the first receipt, then exit so -XX:ArchiveClassesAtExit can write the archive
+     */
+    private void runTraining() {
+        Startup.deferUntilLogin("jdbcDrivers", () -> java.sql.DriverManager.getDrivers());
+        Startup.deferUntilLogin("warmUp", WarmUp::runNow);
+        Startup.deferUntilLogin("applicationClasses", Startup::loadApplicationClasses);
+        Platform.runLater(() -> Startup.runDeferred(() -> Platform.runLater(() -> {
+            Startup.report();
+            log.info("trainingComplete");
+            Platform.exit();
+        })));
     }
 
     private HBox createHeader() {
@@ -73,6 +114,7 @@ public class App extends Application {
 
     private void setupLoginHandler(Stage stage, VBox mainContent, LoginView loginView, BorderPane root, HBox header) {
         loginView.setOnLoginSuccess((cashierName, username) -> {
+            Startup.phase("login");
             int staffId = -1;
             try {
                 staffId = CashierDAO.getStaffIdByUsername(username);
@@ -91,9 +133,9 @@ public class App extends Application {
                 alert.showAndWait().ifPresent(type -> {
                     if (type == yesBtn) {
                         // Log logout activity
-                        new Thread(() -> {
-                            try { CashierDAO.logActivity(finalStaffId, "login_logout", username + " (cashier) logged out"); } catch (Exception ignored) {}
-                        }).start();
+                        CashierDAO.logActivity(finalStaffId, "login_logout", username + " (cashier) logged out");
+                        // Supervisor authorizations don't carry over to the next cashier
+                        AuthService.getInstance().revokeAllSessions();
                         loginView.clearFields();
                         stage.getScene().setRoot(root);
                         Scene currentScene = stage.getScene();
@@ -106,11 +148,11 @@ public class App extends Application {
                     }
                 });
             };
+            CashierDAO.logActivity(finalStaffId, "login_logout", username + " (cashier) logged in");
             // Update last_login in DB (background thread)
             new Thread(() -> {
                 try { 
                     CashierDAO.updateLastLogin(username); 
-                    CashierDAO.logActivity(finalStaffId, "login_logout", username + " (cashier) logged in");
                 } catch (Exception ignored) {}
             }).start();
             POSView posView = new POSView(logoutCallback, cashierName, staffId);
@@ -141,8 +183,22 @@ public class App extends Application {
             
             // Handle window close event - release all cart reservations
             stage.setOnCloseRequest(event -> {
-                System.out.println("Application closing - releasing cart reservations...");
+                log.info("closing");
                 posView.releaseAllCartReservations();
+                // Flush any sales still waiting for a group commit
+                SaleCommitService.shutdownShared();
+                // Finish receipts that are still queued for printing
+                ReceiptQueue.shutdownShared();
+                // Write (or spill) activity log entries that are still queued
+                ActivityLogWriter.shutdownShared();
+                Metrics.logSummary();
+                Metrics.shutdown();
+                // Slow statement report, if -Dpos.db.slowQueryMs is set
+                SlowQueryLog.shutdown();
+                // Close the pooled connections
+                DBConnection.shutdown();
+                // Print log records still queued
+                Log.shutdown();
             });
         });
     }
@@ -166,6 +222,7 @@ public class App extends Application {
     }
 
     public static void main(String[] args) {
+        Startup.phase("main");
         launch();
     }
 }
\ No newline at end of file
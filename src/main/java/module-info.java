@@ -6,6 +6,8 @@ module com.mycompany.pos_fx {
     requires org.apache.pdfbox;
     requires java.desktop;
     requires java.sql;
+    requires java.management;
+    requires jdk.jfr;
     requires mysql.connector.j;
     requires transitive jbcrypt;
     requires jasperreports;
@@ -0,0 +1,327 @@
+package pos.db;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous writer for activity_log.
+ * Callers only enqueue an entry (no connection, no blocking); a daemon thread writes the entries
+ * with multi-row INSERTs once BATCH_SIZE entries are waiting or every FLUSH_INTERVAL_MS.
+ *
+ * If the database can't be reached the batch is appended to a local spill file
+ * (-Dpos.activityLog.spill, default activity_log.spill) and replayed after the next successful
+ * write, so login/logout and return audit entries aren't lost during an outage. Entries written
+ * late (from the spill file) get the time they were recorded appended to their details.
+ * The spill file is renamed to <spill>.replaying before its entries are inserted, so a replay
+ * that fails is retried from that file and a finished one is never inserted twice.
+ */
+public class ActivityLogWriter {
+    private static final int BATCH_SIZE = 50;
+    private static final int ROWS_PER_INSERT = 100;
+    private static final long FLUSH_INTERVAL_MS = 2000;
+    private static final long LATE_ENTRY_MS = 60_000;
+
+    private static final String INSERT_PREFIX = "INSERT INTO activity_log (staff_id, activity_type, details) VALUES ";
+    private static final String ROW_PLACEHOLDERS = "(?, ?, ?)";
+    private static final String FULL_INSERT_SQL = buildInsertSql(ROWS_PER_INSERT);
+    private static final DateTimeFormatter RECORDED_AT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static ActivityLogWriter instance;
+
+    /**
+     * One activity_log row, with the time it was recorded on this terminal
+     */
+    public static class Entry {
+        public final int staffId;
+        public final String activityType;
+        public final String details;
+        public final long recordedAt;
+
+        public Entry(int staffId, String activityType, String details, long recordedAt) {
+            this.staffId = staffId;
+            this.activityType = activityType;
+            this.details = details;
+            this.recordedAt = recordedAt;
+        }
+    }
+
+    private final ConcurrentLinkedQueue<Entry> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final File spillFile;
+    private final File replayFile;
+    /** Set when a replayed file could not be cleared; replaying stops until restart instead of duplicating */
+    private boolean replayBlocked;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    private ActivityLogWriter(File spillFile) {
+        this.spillFile = spillFile;
+        this.replayFile = new File(spillFile.getPath() + ".replaying");
+        worker = new Thread(this::runLoop, "activity-log-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public static synchronized ActivityLogWriter getInstance() {
+        if (instance == null) {
+            instance = new ActivityLogWriter(new File(System.getProperty("pos.activityLog.spill", "activity_log.spill")));
+        }
+        return instance;
+    }
+
+    /**
+     * Stop the shared writer (if it was started), writing or spilling everything still queued
+     */
+    public static synchronized void shutdownShared() {
+        if (instance != null) {
+            instance.shutdown();
+            instance = null;
+        }
+    }
+
+    /**
+     * Queue an activity_log entry. Never blocks and never touches the database on the caller's thread.
+     */
+    public void log(int staffId, String activityType, String details) {
+        queue.offer(new Entry(staffId, activityType, details, System.currentTimeMillis()));
+        if (queued.incrementAndGet() >= BATCH_SIZE) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    public int pending() {
+        return queued.get();
+    }
+
+    private void shutdown() {
+        running = false;
+        LockSupport.unpark(worker);
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runLoop() {
+        boolean spillPending = spillFile.exists() || replayFile.exists();
+        while (running || !queue.isEmpty()) {
+            if (running && queued.get() < BATCH_SIZE) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MS));
+            }
+            List<Entry> batch = drain();
+            if (batch.isEmpty() && !spillPending) {
+                continue;
+            }
+            try {
+                if (spillPending) {
+                    replaySpill();
+                    // A failed move or read leaves a file behind; it is retried on the next flush
+                    spillPending = spillFile.exists() || replayFile.exists();
+                }
+                if (!batch.isEmpty()) {
+                    write(batch);
+                }
+            } catch (SQLException e) {
+                System.err.println("Warning: Could not write " + batch.size() + " activity log entries, keeping them locally: " + e.getMessage());
+                if (spill(batch)) {
+                    spillPending = true;
+                }
+                if (!running) {
+                    break; // database is down - everything left goes to the spill file below
+                }
+            }
+        }
+        List<Entry> rest = drain();
+        if (!rest.isEmpty()) {
+            spill(rest);
+        }
+    }
+
+    private List<Entry> drain() {
+        List<Entry> batch = new ArrayList<>(Math.max(16, queued.get()));
+        Entry entry;
+        while ((entry = queue.poll()) != null) {
+            batch.add(entry);
+        }
+        queued.addAndGet(-batch.size());
+        return batch;
+    }
+
+    private void write(List<Entry> entries) throws SQLException {
+        long now = System.currentTimeMillis();
+        try (Connection conn = DBConnection.getConnection()) {
+            // One transaction, so a failed batch can be spilled and retried without duplicates
+            conn.setAutoCommit(false);
+            int offset = 0;
+            while (offset < entries.size()) {
+                int rows = Math.min(ROWS_PER_INSERT, entries.size() - offset);
+                String sql = rows == ROWS_PER_INSERT ? FULL_INSERT_SQL : buildInsertSql(rows);
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    int idx = 1;
+                    for (int i = offset; i < offset + rows; i++) {
+                        Entry entry = entries.get(i);
+                        stmt.setInt(idx++, entry.staffId);
+                        stmt.setString(idx++, entry.activityType);
+                        stmt.setString(idx++, detailsFor(entry, now));
+                    }
+                    stmt.executeUpdate();
+                }
+                offset += rows;
+            }
+            conn.commit();
+        }
+    }
+
+    private static String detailsFor(Entry entry, long now) {
+        if (now - entry.recordedAt < LATE_ENTRY_MS) {
+            return entry.details;
+        }
+        LocalDateTime recorded = LocalDateTime.ofInstant(Instant.ofEpochMilli(entry.recordedAt), ZoneId.systemDefault());
+        return entry.details + " [recorded " + recorded.format(RECORDED_AT) + "]";
+    }
+
+    /**
+     * Append entries to the spill file, one tab-separated line each, and sync it to disk
+     * @return false if the entries could not be saved either
+     */
+    private boolean spill(List<Entry> entries) {
+        try (FileOutputStream out = new FileOutputStream(spillFile, true);
+             Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+            for (Entry entry : entries) {
+                writer.write(entry.recordedAt + "\t" + entry.staffId + "\t" + escape(entry.activityType) + "\t" + escape(entry.details) + "\n");
+            }
+            writer.flush();
+            out.getFD().sync();
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error: Lost " + entries.size() + " activity log entries, spill file not writable: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Write spilled entries to the database. A .replaying file left by an earlier failed replay
+     * goes first; then the spill file is atomically renamed to .replaying, so entries spilled from
+     * here on start a new spill file, and replayed.
+     */
+    private void replaySpill() throws SQLException {
+        if (replayBlocked || (replayFile.exists() && !replay())) {
+            return;
+        }
+        if (!spillFile.exists()) {
+            return;
+        }
+        try {
+            Files.move(spillFile.toPath(), replayFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Warning: Could not move activity log spill file aside for replay: " + e.getMessage());
+            return;
+        }
+        replay();
+    }
+
+    /**
+     * Insert the entries of the .replaying file and clear the file. Lines that can't be parsed are skipped.
+     * @return false if the file is still there, so the spill file must not be renamed onto it
+     */
+    private boolean replay() throws SQLException {
+        List<Entry> entries = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(replayFile.toPath()), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", -1);
+                if (fields.length != 4) continue;
+                try {
+                    entries.add(new Entry(Integer.parseInt(fields[1]), unescape(fields[2]), unescape(fields[3]), Long.parseLong(fields[0])));
+                } catch (NumberFormatException e) {
+                    // partial line from an interrupted spill
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Warning: Could not read activity log spill file: " + e.getMessage());
+            return false;
+        }
+        if (!entries.isEmpty()) {
+            write(entries);
+        }
+        if (!clearReplayFile()) {
+            replayBlocked = true;
+            return false;
+        }
+        if (!entries.isEmpty()) {
+            System.out.println("Replayed " + entries.size() + " spilled activity log entries");
+        }
+        return true;
+    }
+
+    /**
+     * Delete the replayed file, or empty it if it can't be deleted (e.g. held open on Windows)
+     */
+    private boolean clearReplayFile() {
+        if (replayFile.delete()) {
+            return true;
+        }
+        try (FileChannel channel = FileChannel.open(replayFile.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(0);
+            channel.force(true);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error: Could not delete or empty " + replayFile.getAbsolutePath()
+                               + " after replaying it; remove it by hand or its entries will be inserted again: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static String escape(String value) {
+        if (value == null) return "";
+        return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static String unescape(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                sb.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String buildInsertSql(int rows) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + rows * (ROW_PLACEHOLDERS.length() + 2));
+        sql.append(INSERT_PREFIX);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) sql.append(", ");
+            sql.append(ROW_PLACEHOLDERS);
+        }
+        return sql.toString();
+    }
+}
@@ -0,0 +1,276 @@
+package pos.db;
+
+import org.mindrot.jbcrypt.BCrypt;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cashier and supervisor authentication.
+ * The account lookup and the (deliberately slow) BCrypt check run on a small bounded worker pool
+ * and complete a future, so callers on the FX thread never wait for them. When the pool is busy
+ * the attempt is refused right away instead of queueing up.
+ *
+ * Failed attempts are throttled per username: after MAX_FAILURES in a row the username is locked
+ * for LOCKOUT_MS, doubling on each further lockout up to MAX_LOCKOUT_MS. A successful login resets it.
+ *
+ * A successful supervisor authorization also returns a session token. While the token is valid
+ * (-Dpos.auth.supervisorSessionSeconds, default 300) the supervisor doesn't need to re-enter
+ * credentials for further refunds in the same returns session; the returns view revokes the token
+ * when the session ends (return completed or returns mode left).
+ */
+public class AuthService {
+    private static final int WORKERS = 2;
+    private static final int QUEUE_CAPACITY = 4;
+    private static final int MAX_FAILURES = 5;
+    private static final long LOCKOUT_MS = 30_000;
+    private static final long MAX_LOCKOUT_MS = 5 * 60_000;
+    private static final long SUPERVISOR_SESSION_MS = Long.getLong("pos.auth.supervisorSessionSeconds", 300L) * 1000L;
+
+    private static final AuthService instance = new AuthService();
+
+    /**
+     * Outcome of one authentication attempt
+     */
+    public static class AuthResult {
+        public final boolean success;
+        public final int staffId;
+        public final String fullName;
+        public final String sessionToken; // supervisor authorizations only
+        public final String errorMessage;
+
+        private AuthResult(boolean success, int staffId, String fullName, String sessionToken, String errorMessage) {
+            this.success = success;
+            this.staffId = staffId;
+            this.fullName = fullName;
+            this.sessionToken = sessionToken;
+            this.errorMessage = errorMessage;
+        }
+
+        static AuthResult success(int staffId, String fullName, String sessionToken) {
+            return new AuthResult(true, staffId, fullName, sessionToken, null);
+        }
+
+        static AuthResult failure(String errorMessage) {
+            return new AuthResult(false, -1, null, null, errorMessage);
+        }
+    }
+
+    private static class Throttle {
+        int failures;
+        int lockouts;
+        long lockedUntil;
+    }
+
+    private static class SupervisorSession {
+        final int supervisorId;
+        final long expiresAt;
+
+        SupervisorSession(int supervisorId, long expiresAt) {
+            this.supervisorId = supervisorId;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final ThreadPoolExecutor pool;
+    private final ConcurrentHashMap<String, Throttle> throttles = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, SupervisorSession> sessions = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    // Checked against when the username doesn't exist, so unknown users take as long as wrong passwords
+    private volatile String dummyHash;
+
+    private AuthService() {
+        AtomicInteger threadCount = new AtomicInteger();
+        pool = new ThreadPoolExecutor(WORKERS, WORKERS, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY), runnable -> {
+                Thread thread = new Thread(runnable, "auth-worker-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        pool.allowCoreThreadTimeOut(true);
+    }
+
+    public static AuthService getInstance() {
+        return instance;
+    }
+
+    /**
+     * Verify cashier credentials in the background
+     */
+    public CompletableFuture<AuthResult> authenticateCashier(String username, String password) {
+        return submit("cashier", username, password, false);
+    }
+
+    /**
+     * Verify admin credentials for a refund authorization in the background
+     */
+    public CompletableFuture<AuthResult> authenticateSupervisor(String username, String password) {
+        return submit("admin", username, password, true);
+    }
+
+    /**
+     * Supervisor id for a still-valid session token, or -1
+     */
+    public int getSupervisorForSession(String token) {
+        if (token == null) {
+            return -1;
+        }
+        SupervisorSession session = sessions.get(token);
+        if (session == null) {
+            return -1;
+        }
+        if (System.currentTimeMillis() > session.expiresAt) {
+            sessions.remove(token);
+            return -1;
+        }
+        return session.supervisorId;
+    }
+
+    public void revokeSession(String token) {
+        if (token != null) {
+            sessions.remove(token);
+        }
+    }
+
+    /**
+     * Drop all supervisor sessions, e.g. when the cashier logs out
+     */
+    public void revokeAllSessions() {
+        sessions.clear();
+    }
+
+    private CompletableFuture<AuthResult> submit(String role, String username, String password, boolean issueSession) {
+        String key = role + ":" + username.toLowerCase(Locale.ROOT);
+        long waitMs = lockedForMs(key);
+        if (waitMs > 0) {
+            return CompletableFuture.completedFuture(AuthResult.failure(
+                "Too many failed attempts. Try again in " + ((waitMs + 999) / 1000) + " seconds."));
+        }
+        try {
+            return CompletableFuture.supplyAsync(() -> verify(role, key, username, password, issueSession), pool);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(AuthResult.failure("Authentication is busy. Please try again."));
+        }
+    }
+
+    private AuthResult verify(String role, String key, String username, String password, boolean issueSession) {
+        CashierDAO.StaffCredentials credentials;
+        try {
+            credentials = CashierDAO.getActiveStaffCredentials(username, role);
+        } catch (Exception e) {
+            return AuthResult.failure("Database error: " + e.getMessage());
+        }
+
+        boolean valid;
+        if (credentials == null) {
+            checkBcrypt(password, getDummyHash());
+            valid = false;
+        } else {
+            valid = passwordMatches(password, credentials.passwordHash, "admin".equals(role));
+        }
+
+        if (!valid) {
+            recordFailure(key);
+            return AuthResult.failure("Invalid username or password.");
+        }
+        throttles.remove(key);
+
+        String fullName = toTitleCase(credentials.firstName) + " " + toTitleCase(credentials.lastName);
+        String token = null;
+        if (issueSession) {
+            token = newToken();
+            sessions.put(token, new SupervisorSession(credentials.staffId, System.currentTimeMillis() + SUPERVISOR_SESSION_MS));
+        }
+        return AuthResult.success(credentials.staffId, fullName, token);
+    }
+
+    private static boolean passwordMatches(String password, String storedHash, boolean allowPlainText) {
+        if (storedHash == null) {
+            return false;
+        }
+        // BCrypt hashes start with $2a$, $2b$ or $2y$
+        if (storedHash.startsWith("$2") && storedHash.length() == 60) {
+            // jBCrypt only understands the $2a$ revision
+            if (storedHash.startsWith("$2y$") || storedHash.startsWith("$2b$")) {
+                storedHash = "$2a$" + storedHash.substring(4);
+            }
+            return checkBcrypt(password, storedHash);
+        }
+        // Legacy admin accounts that were never migrated to hashed passwords
+        return allowPlainText && password.equals(storedHash);
+    }
+
+    private static boolean checkBcrypt(String password, String hash) {
+        try {
+            return BCrypt.checkpw(password, hash);
+        } catch (IllegalArgumentException e) {
+            System.err.println("BCrypt verification failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private String getDummyHash() {
+        String hash = dummyHash;
+        if (hash == null) {
+            hash = BCrypt.hashpw("not-a-password", BCrypt.gensalt());
+            dummyHash = hash;
+        }
+        return hash;
+    }
+
+    private long lockedForMs(String key) {
+        Throttle throttle = throttles.get(key);
+        if (throttle == null) {
+            return 0;
+        }
+        synchronized (throttle) {
+            return Math.max(0, throttle.lockedUntil - System.currentTimeMillis());
+        }
+    }
+
+    private void recordFailure(String key) {
+        Throttle throttle = throttles.computeIfAbsent(key, k -> new Throttle());
+        synchronized (throttle) {
+            throttle.failures++;
+            if (throttle.failures >= MAX_FAILURES) {
+                long lockout = Math.min(MAX_LOCKOUT_MS, LOCKOUT_MS << Math.min(throttle.lockouts, 10));
+                throttle.lockedUntil = System.currentTimeMillis() + lockout;
+                throttle.lockouts++;
+                throttle.failures = 0;
+                System.err.println("Warning: Login for " + key + " locked for " + (lockout / 1000) + " s after repeated failures");
+            }
+        }
+    }
+
+    private String newToken() {
+        byte[] bytes = new byte[24];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static String toTitleCase(String input) {
+        if (input == null || input.isEmpty()) return input;
+        StringBuilder result = new StringBuilder(input.length());
+        boolean capitalize = true;
+        for (char c : input.toCharArray()) {
+            if (Character.isWhitespace(c)) {
+                capitalize = true;
+                result.append(c);
+            } else if (capitalize) {
+                result.append(Character.toUpperCase(c));
+                capitalize = false;
+            } else {
+                result.append(Character.toLowerCase(c));
+            }
+        }
+        return result.toString();
+    }
+}
@@ -14,6 +14,38 @@ public class CashierDAO {
         stmt.setString(1, username);
         return stmt.executeQuery();
     }
+    /**
+     * Login details of an active staff account
+     */
+    public static class StaffCredentials {
+        public final int staffId;
+        public final String passwordHash;
+        public final String firstName;
+        public final String lastName;
+
+        public StaffCredentials(int staffId, String passwordHash, String firstName, String lastName) {
+            this.staffId = staffId;
+            this.passwordHash = passwordHash;
+            this.firstName = firstName;
+            this.lastName = lastName;
+        }
+    }
+    // Fetch login details of an active account with the given role ('cashier' or 'admin'), or null
+    public static StaffCredentials getActiveStaffCredentials(String username, String role) throws SQLException {
+        String sql = "SELECT id, password, first_name, last_name FROM staff_acc WHERE username = ? AND role = ? AND status = 'active'";
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, username);
+            stmt.setString(2, role);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return new StaffCredentials(rs.getInt("id"), rs.getString("password"),
+                                                rs.getString("first_name"), rs.getString("last_name"));
+                }
+            }
+        }
+        return null;
+    }
     // Add more methods for cashier authentication, update, etc. here
     public static void updateLastLogin(String username) throws SQLException {
         Connection conn = DBConnection.getConnection();
@@ -39,15 +71,10 @@ public class CashierDAO {
         conn.close();
         return staffId;
     }
-    public static void logActivity(int staffId, String activityType, String details) throws SQLException {
-        Connection conn = DBConnection.getConnection();
-        String sql = "INSERT INTO activity_log (staff_id, activity_type, details) VALUES (?, ?, ?)";
-        PreparedStatement stmt = conn.prepareStatement(sql);
-        stmt.setInt(1, staffId);
-        stmt.setString(2, activityType);
-        stmt.setString(3, details);
-        stmt.executeUpdate();
-        stmt.close();
-        conn.close();
+    /**
+     * Queue an activity_log entry; it is written in the background by ActivityLogWriter
+     */
+    public static void logActivity(int staffId, String activityType, String details) {
+        ActivityLogWriter.getInstance().log(staffId, activityType, details);
     }
 } 
\ No newline at end of file
@@ -0,0 +1,208 @@
+package pos.db;
+
+import pos.metrics.LatencyHistogram;
+import pos.metrics.Metrics;
+import pos.metrics.PosEvents;
+import pos.model.CartItem;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes one completed sale: the pos_transactions row, its transaction_log entry, the sold lines,
+ * the guarded stock decrement and the release of the cart's stock reservations.
+ * Nothing is committed here - the caller owns the transaction (PaymentSectionView, the group-commit
+ * service, or the load simulator).
+ * Each stage is timed into the metrics registry as checkout.header/lines/stock/release and
+ * recorded as a pos.PaymentStage JFR event.
+ */
+public class CheckoutDAO {
+    private static final LatencyHistogram HEADER_STAGE = Metrics.timer("checkout.header");
+    private static final LatencyHistogram LINES_STAGE = Metrics.timer("checkout.lines");
+    private static final LatencyHistogram STOCK_STAGE = Metrics.timer("checkout.stock");
+    private static final LatencyHistogram RELEASE_STAGE = Metrics.timer("checkout.release");
+
+    /**
+     * Identifiers of a written sale
+     */
+    public static class SaleResult {
+        public final String invoiceNo;
+        public final int posTransactionId;
+        public final int releasedReservations; // -1 if releasing them failed
+
+        public SaleResult(String invoiceNo, int posTransactionId, int releasedReservations) {
+            this.invoiceNo = invoiceNo;
+            this.posTransactionId = posTransactionId;
+            this.releasedReservations = releasedReservations;
+        }
+    }
+
+    private static class InventoryItemData {
+        final String saleChannel;
+        final Integer onlineInventoryItemId;
+        final Integer inStoreInventoryItemId;
+
+        InventoryItemData(String saleChannel, Integer onlineInventoryItemId, Integer inStoreInventoryItemId) {
+            this.saleChannel = saleChannel;
+            this.onlineInventoryItemId = onlineInventoryItemId;
+            this.inStoreInventoryItemId = inStoreInventoryItemId;
+        }
+    }
+
+    /**
+     * Write all rows of one sale on the given connection without committing.
+     * A stock shortfall throws ProductDAO.InsufficientStockException so the caller rolls back the whole sale.
+     * Amounts are in centavos.
+     */
+    public static SaleResult writeSale(Connection conn, List<CartItem> cart, int staffId, long subtotal,
+                                       long discount, long tax, long total, long paid,
+                                       String paymentMethod, String paymentRefNo) throws SQLException {
+        long t = System.nanoTime();
+        PosEvents.PaymentStage stage = PosEvents.PaymentStage.start("header", cart.size());
+        String invoiceNo = PosTransactionDAO.generateNextInvoiceNo(conn);
+
+        int posTransactionId = PosTransactionDAO.insertPosTransaction(
+            conn, invoiceNo, new Timestamp(System.currentTimeMillis()),
+            paymentMethod, staffId, subtotal, discount, tax, total, paid, paymentRefNo
+        );
+
+        String transactionId = PosTransactionDAO.generateNextTransactionId(conn);
+        PosTransactionDAO.insertTransactionLog(
+            conn, transactionId, null, posTransactionId, null, null,
+            "in-store", "sale", "completed"
+        );
+        t = HEADER_STAGE.recordSince(t);
+        stage.finish(invoiceNo, 2, "ok");
+
+        stage = PosEvents.PaymentStage.start("lines", cart.size());
+        PosTransactionDAO.insertPhysicalSaleItems(conn, posTransactionId, prepareSaleItems(conn, cart));
+        t = LINES_STAGE.recordSince(t);
+        stage.finish(invoiceNo, cart.size(), "ok");
+
+        stage = PosEvents.PaymentStage.start("stock", cart.size());
+        updateInventory(conn, cart);
+        t = STOCK_STAGE.recordSince(t);
+        stage.finish(invoiceNo, cart.size(), "ok");
+
+        // Release/confirm reservations after successful sale
+        stage = PosEvents.PaymentStage.start("release", cart.size());
+        int released = releaseReservations(conn, cart);
+        RELEASE_STAGE.recordSince(t);
+        stage.finish(invoiceNo, Math.max(0, released), released >= 0 ? "ok" : "error");
+        return new SaleResult(invoiceNo, posTransactionId, released);
+    }
+
+    private static SaleLineBatch prepareSaleItems(Connection conn, List<CartItem> cart) {
+        SaleLineBatch items = new SaleLineBatch(cart.size());
+        for (CartItem item : cart) {
+            InventoryItemData inventoryData;
+            try {
+                inventoryData = getInventoryItemData(conn, item.getProduct().getSku());
+            } catch (RuntimeException e) {
+                // Re-throw with more context about which item failed
+                throw new RuntimeException("Failed to process item '" + item.getProduct().getDescription() +
+                    "' (SKU: " + item.getProduct().getSku() + "): " + e.getMessage(), e);
+            }
+
+            items.add(
+                item.getProduct().getSku(),
+                item.getQuantity(),
+                item.getProduct().getQuantity(),
+                item.getSubtotalCentavos(),
+                inventoryData.saleChannel,
+                inventoryData.onlineInventoryItemId != null ? inventoryData.onlineInventoryItemId : 0,
+                inventoryData.inStoreInventoryItemId != null ? inventoryData.inStoreInventoryItemId : 0
+            );
+        }
+        return items;
+    }
+
+    private static InventoryItemData getInventoryItemData(Connection conn, String sku) {
+        try {
+            ProductDAO.InventoryItemInfo info = ProductDAO.getInventoryItemInfoBySku(conn, sku);
+            if (info != null) {
+                String saleChannel = info.saleChannel;
+                Integer onlineId = null;
+                Integer inStoreId = null;
+
+                // For 'both' and 'online' products, use online inventory item ID
+                if ("both".equalsIgnoreCase(saleChannel) || "online".equalsIgnoreCase(saleChannel)) {
+                    onlineId = info.inventoryItemId;
+                }
+                // For 'in-store' products, use in-store inventory item ID
+                else if ("in-store".equalsIgnoreCase(saleChannel)) {
+                    inStoreId = info.inventoryItemId;
+                }
+
+                return new InventoryItemData(saleChannel, onlineId, inStoreId);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        return new InventoryItemData("in-store", null, null);
+    }
+
+    /**
+     * Decrement stock with the guarded batch update, per stock table
+     */
+    private static void updateInventory(Connection conn, List<CartItem> cart) throws SQLException {
+        Map<String, Integer> inStoreMap = new HashMap<>();
+        Map<String, Integer> onlineMap = new HashMap<>();
+
+        for (CartItem item : cart) {
+            String sku = item.getProduct().getSku();
+            int quantity = item.getQuantity();
+            String saleChannel = getSaleChannel(conn, sku);
+
+            if ("both".equalsIgnoreCase(saleChannel) || "online".equalsIgnoreCase(saleChannel)) {
+                onlineMap.merge(sku, quantity, Integer::sum);
+            } else {
+                inStoreMap.merge(sku, quantity, Integer::sum);
+            }
+        }
+
+        if (!inStoreMap.isEmpty()) {
+            ProductDAO.batchUpdateInventory(conn, inStoreMap, "in-store");
+        }
+        if (!onlineMap.isEmpty()) {
+            ProductDAO.batchUpdateInventory(conn, onlineMap, "both");
+        }
+    }
+
+    private static String getSaleChannel(Connection conn, String sku) {
+        try {
+            ProductDAO.InventoryInfo info = ProductDAO.getInventoryInfoBySku(conn, sku);
+            return info != null ? info.saleChannel : "in-store";
+        } catch (Exception e) {
+            e.printStackTrace();
+            return "in-store";
+        }
+    }
+
+    /**
+     * Clear the cart's reservations (single or batched DELETE by transaction ID).
+     * A failure doesn't fail the sale - the reservations expire on their own after 15 minutes.
+     */
+    private static int releaseReservations(Connection conn, List<CartItem> cart) {
+        try {
+            List<String> transactionIds = cart.stream()
+                .map(CartItem::getTransactionId)
+                .distinct()
+                .collect(java.util.stream.Collectors.toList());
+
+            if (transactionIds.isEmpty()) {
+                return 0;
+            }
+            return StockReservationDAO.clearReservationsByTransactions(conn, transactionIds);
+        } catch (Exception e) {
+            System.err.println("Warning: Failed to release reservations: " + e.getMessage());
+            e.printStackTrace();
+            return -1;
+        }
+    }
+}
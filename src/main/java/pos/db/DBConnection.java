@@ -1,15 +1,81 @@
 package pos.db;
 
+import pos.metrics.Metrics;
+
+import javax.sql.DataSource;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
+/**
+ * Source of every database connection the POS uses.
+ * By default connections go to the MySQL server in DBCredentials. The profile is picked with
+ * -Dpos.db.profile: "mysql" (default) or "embedded" for the in-process EmbeddedDatabase, which
+ * needs no external services. Benchmarks and tools can also plug in any DataSource with setDataSource().
+ * MySQL connections are kept open for reuse by a PooledDataSource of -Dpos.db.pool.size (default 4)
+ * idle connections; 0 opens a new connection for every request.
+ */
 public class DBConnection {
-    private static final String URL = DBCredentials.URL;
-    private static final String USER = DBCredentials.USER;
-    private static final String PASSWORD = DBCredentials.PASSWORD;
+    public static final String PROFILE_MYSQL = "mysql";
+    public static final String PROFILE_EMBEDDED = "embedded";
+    private static final int POOL_SIZE = Integer.getInteger("pos.db.pool.size", 4);
+
+    private static volatile DataSource dataSource;
 
     public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(URL, USER, PASSWORD);
+        // Statement timings for the metrics registry (unless -Dpos.metrics=false) and slow statement capture
+        return Metrics.isEnabled() || SlowQueryLog.isEnabled()
+            ? InstrumentedConnection.open(getDataSource()) : getDataSource().getConnection();
+    }
+
+    /**
+     * The DataSource in use, created from -Dpos.db.profile on first use
+     */
+    public static DataSource getDataSource() {
+        DataSource ds = dataSource;
+        if (ds == null) {
+            synchronized (DBConnection.class) {
+                if (dataSource == null) {
+                    dataSource = createFromProfile(getProfile());
+                }
+                ds = dataSource;
+            }
+        }
+        return ds;
+    }
+
+    /**
+     * Use a different DataSource for all further connections (null goes back to the configured profile)
+     */
+    public static synchronized void setDataSource(DataSource ds) {
+        dataSource = ds;
+    }
+
+    /**
+     * Close the pooled idle connections, at application exit
+     */
+    public static synchronized void shutdown() {
+        if (dataSource instanceof PooledDataSource) {
+            ((PooledDataSource) dataSource).close();
+        }
+    }
+
+    public static String getProfile() {
+        return System.getProperty("pos.db.profile", PROFILE_MYSQL);
+    }
+
+    public static boolean isEmbedded() {
+        return getDataSource() instanceof EmbeddedDatabase;
+    }
+
+    private static DataSource createFromProfile(String profile) {
+        if (PROFILE_EMBEDDED.equalsIgnoreCase(profile)) {
+            System.out.println("Database profile: embedded (" + EmbeddedDatabase.getInstance().getUrl() + ")");
+            return EmbeddedDatabase.getInstance();
+        }
+        if (!PROFILE_MYSQL.equalsIgnoreCase(profile)) {
+            System.err.println("Warning: Unknown database profile '" + profile + "', using " + PROFILE_MYSQL);
+        }
+        DataSource mysql = new DriverManagerDataSource(DBCredentials.URL, DBCredentials.USER, DBCredentials.PASSWORD);
+        return POOL_SIZE > 0 ? new PooledDataSource(mysql, POOL_SIZE) : mysql;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,158 @@
+package pos.db;
+
+import org.mindrot.jbcrypt.BCrypt;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-process database for running the POS, its DAOs and the benchmarks without a MySQL server.
+ * Uses H2 in MySQL compatibility mode; the H2 driver is only on the classpath when building with
+ * the embedded-db Maven profile (mvn -Pembedded-db package) or from the benchmarks module.
+ *
+ * The schema (embedded_schema.sql) is created on the first connection, and a cashier and an
+ * admin account (password = username) plus VAT settings are added if there are no staff accounts yet.
+ *
+ * URL: -Dpos.db.embedded.url (default: a private in-memory database that lives as long as the JVM).
+ * Point it at a file, e.g. jdbc:h2:./posdb;MODE=MySQL;DATABASE_TO_LOWER=TRUE, to keep data between runs.
+ */
+public class EmbeddedDatabase extends DriverManagerDataSource {
+    private static final String DEFAULT_URL = "jdbc:h2:mem:pos;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    private static final String SCHEMA_RESOURCE = "/embedded_schema.sql";
+
+    private static EmbeddedDatabase instance;
+
+    private volatile boolean initialized;
+
+    private EmbeddedDatabase(String url) {
+        super(url, "sa", "");
+    }
+
+    public static synchronized EmbeddedDatabase getInstance() {
+        if (instance == null) {
+            instance = new EmbeddedDatabase(System.getProperty("pos.db.embedded.url", DEFAULT_URL));
+        }
+        return instance;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!initialized) {
+            initialize();
+        }
+        return super.getConnection();
+    }
+
+    /**
+     * Drop everything and recreate the schema and default accounts, e.g. between benchmark runs
+     */
+    public synchronized void reset() throws SQLException {
+        try (Connection conn = super.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        initialized = false;
+        initialize();
+    }
+
+    private synchronized void initialize() throws SQLException {
+        if (initialized) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try (Connection conn = openConnection()) {
+            List<String> statements = loadSchema();
+            try (Statement stmt = conn.createStatement()) {
+                for (String sql : statements) {
+                    stmt.execute(sql);
+                }
+            }
+            seedDefaults(conn);
+        }
+        initialized = true;
+        System.out.println("Embedded database ready in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private Connection openConnection() throws SQLException {
+        try {
+            return super.getConnection();
+        } catch (SQLException e) {
+            if (getUrl().startsWith("jdbc:h2:") && "08001".equals(e.getSQLState())) {
+                throw new SQLException("H2 driver not found - build with -Pembedded-db to use the embedded database profile", e);
+            }
+            throw e;
+        }
+    }
+
+    private static List<String> loadSchema() throws SQLException {
+        String script;
+        try (InputStream in = EmbeddedDatabase.class.getResourceAsStream(SCHEMA_RESOURCE)) {
+            if (in == null) {
+                throw new SQLException("Schema script " + SCHEMA_RESOURCE + " not found on the classpath");
+            }
+            script = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new SQLException("Could not read " + SCHEMA_RESOURCE, e);
+        }
+
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String line : script.split("\r?\n")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("--")) {
+                continue;
+            }
+            current.append(line).append('\n');
+            if (trimmed.endsWith(";")) {
+                current.setLength(current.lastIndexOf(";"));
+                statements.add(current.toString());
+                current.setLength(0);
+            }
+        }
+        return statements;
+    }
+
+    private static void seedDefaults(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM staff_acc")) {
+            if (rs.next() && rs.getInt(1) > 0) {
+                return;
+            }
+        }
+        String staffSql = "INSERT INTO staff_acc (username, password, first_name, last_name, role, status) VALUES (?, ?, ?, ?, ?, 'active')";
+        try (PreparedStatement stmt = conn.prepareStatement(staffSql)) {
+            addStaff(stmt, "cashier", "Test", "Cashier", "cashier");
+            addStaff(stmt, "admin", "Test", "Supervisor", "admin");
+            stmt.executeBatch();
+        }
+        String settingsSql = "INSERT INTO system_settings (group_name, variable_name, value) VALUES (?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(settingsSql)) {
+            addSetting(stmt, "vat_settings", "vat_enabled", "1");
+            addSetting(stmt, "vat_settings", "vat_rate", "12");
+            stmt.executeBatch();
+        }
+    }
+
+    private static void addStaff(PreparedStatement stmt, String username, String firstName, String lastName, String role) throws SQLException {
+        stmt.setString(1, username);
+        stmt.setString(2, BCrypt.hashpw(username, BCrypt.gensalt()));
+        stmt.setString(3, firstName);
+        stmt.setString(4, lastName);
+        stmt.setString(5, role);
+        stmt.addBatch();
+    }
+
+    private static void addSetting(PreparedStatement stmt, String group, String name, String value) throws SQLException {
+        stmt.setString(1, group);
+        stmt.setString(2, name);
+        stmt.setString(3, value);
+        stmt.addBatch();
+    }
+}
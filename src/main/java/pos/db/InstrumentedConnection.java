@@ -0,0 +1,186 @@
+package pos.db;
+
+import pos.metrics.LatencyHistogram;
+import pos.metrics.Metrics;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Connection wrapper that times every statement execution into the metrics registry, under the
+ * DAO method that ran it ("db.ProductDAO.getAllActiveProducts"), so no DAO method needs its own
+ * timing code. Also records "db.getConnection", "db.commit" and the "db.errors" counter.
+ * The DAO method is found with a StackWalker when the statement is created (the innermost pos.*
+ * frame outside this class), once per statement rather than on every execution.
+ * equals and hashCode of the proxies are identity-based, like the driver objects they wrap.
+ * With -Dpos.db.slowQueryMs set, every execution is also reported to SlowQueryLog with its SQL and
+ * PreparedStatement parameters. Threads marked with Metrics.setDbTracked(false) record neither.
+ */
+final class InstrumentedConnection implements InvocationHandler {
+    private static final LatencyHistogram CONNECT = Metrics.timer("db.getConnection");
+    private static final LatencyHistogram COMMIT = Metrics.timer("db.commit");
+    private static final StackWalker WALKER = StackWalker.getInstance();
+
+    private final Connection target;
+
+    private InstrumentedConnection(Connection target) {
+        this.target = target;
+    }
+
+    static Connection open(DataSource dataSource) throws SQLException {
+        long start = System.nanoTime();
+        Connection conn = dataSource.getConnection();
+        if (recordMetrics()) {
+            CONNECT.recordSince(start);
+        }
+        return (Connection) Proxy.newProxyInstance(InstrumentedConnection.class.getClassLoader(),
+            new Class<?>[] {Connection.class}, new InstrumentedConnection(conn));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            return objectMethod(proxy, target, method, args);
+        }
+        if ("commit".equals(method.getName())) {
+            long start = System.nanoTime();
+            Object result = call(target, method, args);
+            if (recordMetrics()) {
+                COMMIT.recordSince(start);
+            }
+            return result;
+        }
+        Object result = call(target, method, args);
+        if (result instanceof Statement) {
+            Class<?> type = result instanceof CallableStatement ? CallableStatement.class
+                : result instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+            // prepareStatement(sql, ...) and prepareCall(sql, ...): the SQL is known up front
+            String sql = method.getName().startsWith("prepare") && args != null && args[0] instanceof String
+                ? (String) args[0] : null;
+            return Proxy.newProxyInstance(InstrumentedConnection.class.getClassLoader(),
+                new Class<?>[] {type}, new StatementHandler((Statement) result, sql, callerName()));
+        }
+        return result;
+    }
+
+    /**
+     * equals/hashCode on the proxy itself, so a wrapped object equals only itself;
+     * delegating would make the proxy unequal to itself, since the target never equals the proxy
+     */
+    private static Object objectMethod(Object proxy, Object target, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "equals": return proxy == args[0];
+            case "hashCode": return System.identityHashCode(proxy);
+            default: return call(target, method, args);
+        }
+    }
+
+    /**
+     * Metrics on, and not a thread that opted out (the warm-up)
+     */
+    private static boolean recordMetrics() {
+        return Metrics.isEnabled() && Metrics.isDbTracked();
+    }
+
+    private static Object call(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * "db.<Class>.<method>" of the code that is executing a statement
+     */
+    private static String callerName() {
+        Optional<String> name = WALKER.walk(frames -> frames
+            .filter(f -> f.getClassName().startsWith("pos.") && !f.getClassName().startsWith(InstrumentedConnection.class.getName()))
+            .findFirst()
+            .map(f -> {
+                String className = f.getClassName();
+                className = className.substring(className.lastIndexOf('.') + 1);
+                int nested = className.indexOf('$');
+                if (nested > 0) className = className.substring(0, nested);
+                String methodName = f.getMethodName();
+                if (methodName.startsWith("lambda$")) {
+                    // lambda$getAllProducts$3 -> getAllProducts
+                    int end = methodName.indexOf('$', 7);
+                    methodName = end > 7 ? methodName.substring(7, end) : methodName;
+                }
+                return "db." + className + "." + methodName;
+            }));
+        return name.orElse("db.other");
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        private final String sql;
+        private final String caller;
+        private LatencyHistogram timer;
+        private Map<Integer, SlowQueryLog.ParameterSetter> parameters;
+
+        StatementHandler(Statement target, String sql, String caller) {
+            this.target = target;
+            this.sql = sql;
+            this.caller = caller;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                return objectMethod(proxy, target, method, args);
+            }
+            String name = method.getName();
+            if (!name.startsWith("execute")) {
+                if (SlowQueryLog.isEnabled()) {
+                    recordParameter(name, method, args);
+                }
+                return call(target, method, args);
+            }
+            long start = System.nanoTime();
+            try {
+                return call(target, method, args);
+            } catch (SQLException e) {
+                if (recordMetrics()) {
+                    Metrics.increment("db.errors");
+                }
+                throw e;
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                if (recordMetrics()) {
+                    if (timer == null) timer = Metrics.timer(caller);
+                    timer.record(elapsed);
+                }
+                if (SlowQueryLog.isEnabled() && Metrics.isDbTracked()) {
+                    // Statement.execute*(sql): the SQL comes with the call
+                    String executed = sql != null ? sql : args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+                    SlowQueryLog.record(executed, elapsed, caller, parameters);
+                }
+            }
+        }
+
+        /**
+         * Remember set*(index, value...) calls so EXPLAIN can run with the same parameters
+         */
+        private void recordParameter(String name, Method method, Object[] args) {
+            if ("clearParameters".equals(name)) {
+                if (parameters != null) parameters.clear();
+            } else if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                if (parameters == null) parameters = new HashMap<>();
+                parameters.put((Integer) args[0], new SlowQueryLog.ParameterSetter(method, args));
+            }
+        }
+    }
+}
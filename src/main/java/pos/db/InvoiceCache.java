@@ -0,0 +1,284 @@
+package pos.db;
+
+import pos.model.Money;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache of recently looked-up invoices for returns mode.
+ * An invoice's header, age, sold lines and prior returns (count, and quantity already returned
+ * per line) are loaded in a single query and kept for a short time, so validating the invoice,
+ * filling the returns table, showing invoice info and printing the return receipt all share one
+ * round trip.
+ *
+ * A returns lookup always reloads the invoice (reload), so validation and the returnable
+ * quantities include returns made on other terminals. The cached entry then serves the repeated
+ * reads of that returns session (invoice info, the return receipt) and expires after
+ * -Dpos.invoiceCache.ttlSeconds (default 120). Returns processed on this terminal update the
+ * cached entry right away.
+ */
+public class InvoiceCache {
+    private static final int MAX_ENTRIES = 64;
+    private static final long TTL_MS = Long.getLong("pos.invoiceCache.ttlSeconds", 120L) * 1000L;
+
+    // Age is computed by the database so the return window doesn't depend on the terminal's clock.
+    // Returned quantities are summed per line from the covering index
+    // idx_return_items_invoice_item (invoice_item_id, qty_returned), see PARTIAL_RETURNS.md.
+    private static final String LOAD_SQL =
+        "SELECT pt.id AS pos_transaction_id, pt.subtotal, pt.discount, pt.tax, pt.total_amount, " +
+        "pt.customer_name, pt.transaction_date, " +
+        "TIMESTAMPDIFF(DAY, pt.transaction_date, NOW()) AS age_days, " +
+        "(SELECT COUNT(*) FROM pos_returns r WHERE r.invoice_no = pt.invoice_no) AS return_count, " +
+        "psi.id AS invoice_item_id, psi.sku, psi.subtotal AS line_subtotal, psi.order_quantity, " +
+        "psi.online_inventory_item_id, psi.in_store_inventory_item_id, " +
+        "(SELECT COALESCE(SUM(pri.qty_returned), 0) FROM pos_return_items pri " +
+        " WHERE pri.invoice_item_id = psi.id) AS qty_returned " +
+        "FROM pos_transactions pt " +
+        "LEFT JOIN physical_sale_items psi ON psi.pos_transaction_id = pt.id " +
+        "WHERE pt.invoice_no = ? " +
+        "ORDER BY psi.id";
+
+    /**
+     * One sold line of an invoice (amounts in centavos)
+     */
+    public static class InvoiceLine {
+        public final int invoiceItemId;
+        public final String sku;
+        public final int quantity;
+        public final long subtotal;
+        public final int onlineInventoryItemId; // 0 if none
+        public final int inStoreInventoryItemId; // 0 if none
+        public final int returnedQuantity; // already returned on earlier returns
+
+        public InvoiceLine(int invoiceItemId, String sku, int quantity, long subtotal,
+                           int onlineInventoryItemId, int inStoreInventoryItemId, int returnedQuantity) {
+            this.invoiceItemId = invoiceItemId;
+            this.sku = sku;
+            this.quantity = quantity;
+            this.subtotal = subtotal;
+            this.onlineInventoryItemId = onlineInventoryItemId;
+            this.inStoreInventoryItemId = inStoreInventoryItemId;
+            this.returnedQuantity = returnedQuantity;
+        }
+
+        /**
+         * Quantity that can still be returned
+         */
+        public int getReturnableQuantity() {
+            return Math.max(0, quantity - returnedQuantity);
+        }
+
+        /**
+         * Unit price in centavos, rounded half-up; for display. Refunds use refundFor, which
+         * never loses or gains the rounding difference.
+         */
+        public long getUnitPrice() {
+            return quantity > 0 ? Money.allocate(subtotal, 1, quantity) : subtotal;
+        }
+
+        /**
+         * Refund for returning units more of this line out of lineNet (the subtotal less the line's
+         * share of the invoice discount), given the units already returned
+         */
+        public long refundFor(long lineNet, int units) {
+            return quantity > 0 ? Money.allocateRange(lineNet, returnedQuantity, returnedQuantity + units, quantity) : 0L;
+        }
+    }
+
+    /**
+     * Invoice header, lines and prior-return state (amounts in centavos)
+     */
+    public static class CachedInvoice {
+        public final String invoiceNo;
+        public final int posTransactionId;
+        public final Timestamp transactionDate;
+        public final int ageDays; // whole days since the sale, as of loading
+        public final long subtotal;
+        public final long discount;
+        public final long tax;
+        public final long totalAmount;
+        public final String customerName;
+        public final int returnCount;
+        public final List<InvoiceLine> lines;
+        final long loadedAt;
+
+        CachedInvoice(String invoiceNo, int posTransactionId, Timestamp transactionDate, int ageDays, long subtotal,
+                      long discount, long tax, long totalAmount, String customerName, int returnCount,
+                      List<InvoiceLine> lines, long loadedAt) {
+            this.invoiceNo = invoiceNo;
+            this.posTransactionId = posTransactionId;
+            this.transactionDate = transactionDate;
+            this.ageDays = ageDays;
+            this.subtotal = subtotal;
+            this.discount = discount;
+            this.tax = tax;
+            this.totalAmount = totalAmount;
+            this.customerName = customerName;
+            this.returnCount = returnCount;
+            this.lines = lines;
+            this.loadedAt = loadedAt;
+        }
+
+        public ReturnsDAO.InvoiceData toInvoiceData() {
+            return new ReturnsDAO.InvoiceData(subtotal, discount, tax, customerName, transactionDate);
+        }
+
+        CachedInvoice withReturn(List<ReturnsDAO.ReturnItemData> returned) {
+            Map<Integer, Integer> returnedByLine = new java.util.HashMap<>();
+            for (ReturnsDAO.ReturnItemData item : returned) {
+                returnedByLine.merge(item.invoiceItemId, item.qtyReturned, Integer::sum);
+            }
+            List<InvoiceLine> updated = new ArrayList<>(lines.size());
+            for (InvoiceLine line : lines) {
+                int qty = returnedByLine.getOrDefault(line.invoiceItemId, 0);
+                updated.add(qty == 0 ? line : new InvoiceLine(line.invoiceItemId, line.sku, line.quantity, line.subtotal,
+                    line.onlineInventoryItemId, line.inStoreInventoryItemId, line.returnedQuantity + qty));
+            }
+            return new CachedInvoice(invoiceNo, posTransactionId, transactionDate, ageDays, subtotal, discount, tax,
+                                     totalAmount, customerName, returnCount + 1,
+                                     Collections.unmodifiableList(updated), loadedAt);
+        }
+    }
+
+    // Access-ordered so the least recently used invoice is evicted first
+    private static final Map<String, CachedInvoice> cache = new LinkedHashMap<String, CachedInvoice>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedInvoice> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private InvoiceCache() {}
+
+    /**
+     * Get an invoice, loading it if it isn't cached or has expired
+     * @return the invoice, or null if no such invoice exists
+     */
+    public static CachedInvoice get(String invoiceNo) throws SQLException {
+        CachedInvoice cached = getCached(invoiceNo);
+        if (cached != null) {
+            return cached;
+        }
+        try (Connection conn = DBConnection.getConnection()) {
+            return load(conn, invoiceNo);
+        }
+    }
+
+    /**
+     * Load an invoice from the database even if it is cached, e.g. when a returns lookup starts
+     * @return the invoice, or null if no such invoice exists
+     */
+    public static CachedInvoice reload(String invoiceNo) throws SQLException {
+        try (Connection conn = DBConnection.getConnection()) {
+            return load(conn, invoiceNo);
+        }
+    }
+
+    /**
+     * Get an invoice using an existing connection for the load, if one is needed
+     */
+    public static CachedInvoice get(Connection conn, String invoiceNo) throws SQLException {
+        CachedInvoice cached = getCached(invoiceNo);
+        return cached != null ? cached : load(conn, invoiceNo);
+    }
+
+    /**
+     * Load an invoice from the database in one query and cache it
+     * @return the invoice, or null if no such invoice exists
+     */
+    public static CachedInvoice load(Connection conn, String invoiceNo) throws SQLException {
+        CachedInvoice invoice = null;
+        try (PreparedStatement stmt = conn.prepareStatement(LOAD_SQL)) {
+            stmt.setString(1, invoiceNo);
+            try (ResultSet rs = stmt.executeQuery()) {
+                List<InvoiceLine> lines = new ArrayList<>();
+                while (rs.next()) {
+                    if (invoice == null) {
+                        invoice = new CachedInvoice(
+                            invoiceNo,
+                            rs.getInt("pos_transaction_id"),
+                            rs.getTimestamp("transaction_date"),
+                            rs.getInt("age_days"),
+                            Money.ofPesos(rs.getBigDecimal("subtotal")),
+                            Money.ofPesos(rs.getBigDecimal("discount")),
+                            Money.ofPesos(rs.getBigDecimal("tax")),
+                            Money.ofPesos(rs.getBigDecimal("total_amount")),
+                            rs.getString("customer_name"),
+                            rs.getInt("return_count"),
+                            Collections.unmodifiableList(lines),
+                            System.currentTimeMillis()
+                        );
+                    }
+                    int invoiceItemId = rs.getInt("invoice_item_id");
+                    if (rs.wasNull()) {
+                        continue; // invoice without sold lines
+                    }
+                    lines.add(new InvoiceLine(
+                        invoiceItemId,
+                        rs.getString("sku"),
+                        rs.getInt("order_quantity"),
+                        Money.ofPesos(rs.getBigDecimal("line_subtotal")),
+                        rs.getInt("online_inventory_item_id"),
+                        rs.getInt("in_store_inventory_item_id"),
+                        rs.getInt("qty_returned")
+                    ));
+                }
+            }
+        }
+        synchronized (cache) {
+            if (invoice != null) {
+                cache.put(invoiceNo, invoice);
+            } else {
+                cache.remove(invoiceNo);
+            }
+        }
+        return invoice;
+    }
+
+    /**
+     * Note a return committed on this terminal so the cached returned quantities stay accurate
+     */
+    public static void recordReturn(String invoiceNo, List<ReturnsDAO.ReturnItemData> returned) {
+        synchronized (cache) {
+            CachedInvoice cached = cache.get(invoiceNo);
+            if (cached != null) {
+                cache.put(invoiceNo, cached.withReturn(returned));
+            }
+        }
+    }
+
+    public static void invalidate(String invoiceNo) {
+        synchronized (cache) {
+            cache.remove(invoiceNo);
+        }
+    }
+
+    public static void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    private static CachedInvoice getCached(String invoiceNo) {
+        synchronized (cache) {
+            CachedInvoice cached = cache.get(invoiceNo);
+            if (cached == null) {
+                return null;
+            }
+            if (System.currentTimeMillis() - cached.loadedAt > TTL_MS) {
+                cache.remove(invoiceNo);
+                return null;
+            }
+            return cached;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package pos.db;
+
+import pos.log.Log;
+import pos.log.Logger;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * DataSource that keeps up to maxIdle closed-by-the-caller connections open for reuse, so a sale
+ * doesn't pay for driver, TLS and auth setup on every DAO call (and the connections the warm-up
+ * opened are the ones the first sale gets).
+ * close() on a handed-out connection rolls back an open transaction, restores auto-commit and
+ * puts the physical connection back; beyond maxIdle it is really closed. The pool never blocks:
+ * with no idle connection a new one is opened. Idle connections older than VALIDATE_AFTER_MS are
+ * checked with isValid() before reuse, so one dropped by the server (wait_timeout) is replaced.
+ */
+public final class PooledDataSource implements DataSource {
+    private static final Logger log = Log.get(PooledDataSource.class);
+
+    private static final long VALIDATE_AFTER_MS = 30_000;
+    private static final int VALIDATE_TIMEOUT_SECONDS = 2;
+
+    private final DataSource target;
+    private final int maxIdle;
+    private final Deque<Idle> idle = new ArrayDeque<>();
+    private boolean closed;
+
+    public PooledDataSource(DataSource target, int maxIdle) {
+        this.target = target;
+        this.maxIdle = maxIdle;
+    }
+
+    public DataSource getTarget() {
+        return target;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Connection physical = takeIdle();
+        return wrap(physical != null ? physical : target.getConnection());
+    }
+
+    /**
+     * Connections for other credentials bypass the pool
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return target.getConnection(username, password);
+    }
+
+    /**
+     * Close the idle connections; connections still handed out are closed when they are returned
+     */
+    public void close() {
+        List<Connection> toClose;
+        synchronized (idle) {
+            closed = true;
+            toClose = new ArrayList<>(idle.size());
+            for (Idle entry : idle) {
+                toClose.add(entry.connection);
+            }
+            idle.clear();
+        }
+        for (Connection conn : toClose) {
+            closeQuietly(conn);
+        }
+    }
+
+    public int getIdleCount() {
+        synchronized (idle) {
+            return idle.size();
+        }
+    }
+
+    /**
+     * Most recently returned first (the warmest); a stale one that fails isValid() is dropped
+     * and the next one tried. Null when nothing usable is idle.
+     */
+    private Connection takeIdle() {
+        while (true) {
+            Idle entry;
+            synchronized (idle) {
+                entry = idle.pollFirst();
+            }
+            if (entry == null) {
+                return null;
+            }
+            if (System.currentTimeMillis() - entry.returnedAt < VALIDATE_AFTER_MS) {
+                return entry.connection;
+            }
+            try {
+                if (entry.connection.isValid(VALIDATE_TIMEOUT_SECONDS)) {
+                    return entry.connection;
+                }
+            } catch (SQLException e) {
+                log.debug("staleConnection", "error", e.getMessage());
+            }
+            closeQuietly(entry.connection);
+        }
+    }
+
+    private void release(Connection physical) {
+        try {
+            if (physical.isClosed()) {
+                return;
+            }
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            log.warn("resetFailed", e);
+            closeQuietly(physical);
+            return;
+        }
+        synchronized (idle) {
+            if (!closed && idle.size() < maxIdle) {
+                idle.addFirst(new Idle(physical, System.currentTimeMillis()));
+                return;
+            }
+        }
+        closeQuietly(physical);
+    }
+
+    private Connection wrap(Connection physical) {
+        return (Connection) Proxy.newProxyInstance(PooledDataSource.class.getClassLoader(),
+            new Class<?>[] {Connection.class}, new Handle(physical));
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException ignored) {
+            // Already gone
+        }
+    }
+
+    private static final class Idle {
+        final Connection connection;
+        final long returnedAt;
+
+        Idle(Connection connection, long returnedAt) {
+            this.connection = connection;
+            this.returnedAt = returnedAt;
+        }
+    }
+
+    /**
+     * The connection a caller holds: close() hands the physical connection back exactly once,
+     * after which every other call fails like on a closed driver connection
+     */
+    private final class Handle implements InvocationHandler {
+        private volatile Connection physical;
+
+        Handle(Connection physical) {
+            this.physical = physical;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals": return proxy == args[0];
+                case "hashCode": return System.identityHashCode(proxy);
+                case "toString": return "Pooled[" + physical + "]";
+                case "isClosed": return physical == null;
+                case "close":
+                    Connection returned = detach();
+                    if (returned != null) {
+                        release(returned);
+                    }
+                    return null;
+                default:
+                    break;
+            }
+            Connection conn = physical;
+            if (conn == null) {
+                throw new SQLException("Connection is closed");
+            }
+            try {
+                return method.invoke(conn, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private synchronized Connection detach() {
+            Connection conn = physical;
+            physical = null;
+            return conn;
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return target.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        target.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        target.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return target.getLoginTimeout();
+    }
+
+    @Override
+    public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return target.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        return target.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || target.isWrapperFor(iface);
+    }
+}
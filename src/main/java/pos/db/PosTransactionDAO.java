@@ -1,8 +1,7 @@
 package pos.db;
 
 import java.sql.*;
-import java.util.List;
-import java.util.Map;
+import pos.model.Money;
 
 public class PosTransactionDAO {
     // Generate the next invoice number in the format 1-X
@@ -26,7 +25,7 @@ public class PosTransactionDAO {
     public static int insertPosTransaction(
         Connection conn,
         String invoiceNo, java.sql.Timestamp transactionDate, String paymentMethod, int staffId,
-        double subtotal, double discount, double tax, double totalAmount, double receivedAmount,
+        long subtotal, long discount, long tax, long totalAmount, long receivedAmount,
         String paymentRefNo
     ) throws SQLException {
         String sql = "INSERT INTO pos_transactions (transaction_date, payment_method, staff_id, subtotal, discount, tax, total_amount, received_amount, invoice_no, payment_ref_no) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
@@ -34,11 +33,11 @@ public class PosTransactionDAO {
         stmt.setTimestamp(1, transactionDate);
         stmt.setString(2, paymentMethod);
         stmt.setInt(3, staffId);
-        stmt.setDouble(4, subtotal);
-        stmt.setDouble(5, discount);
-        stmt.setDouble(6, tax);
-        stmt.setDouble(7, totalAmount);
-        stmt.setDouble(8, receivedAmount);
+        stmt.setBigDecimal(4, Money.toBigDecimal(subtotal));
+        stmt.setBigDecimal(5, Money.toBigDecimal(discount));
+        stmt.setBigDecimal(6, Money.toBigDecimal(tax));
+        stmt.setBigDecimal(7, Money.toBigDecimal(totalAmount));
+        stmt.setBigDecimal(8, Money.toBigDecimal(receivedAmount));
         stmt.setString(9, invoiceNo);
         stmt.setString(10, paymentRefNo);
         int affectedRows = stmt.executeUpdate();
@@ -52,37 +51,57 @@ public class PosTransactionDAO {
         return id;
     }
 
-    // Insert items into physical_sale_items (with sale_channel and inventory_id)
-    public static void insertPhysicalSaleItems(Connection conn, int posTransactionId, List<Map<String, Object>> items) throws SQLException {
-        String sql = "INSERT INTO physical_sale_items (pos_transaction_id, sku, order_quantity, stock_quantity, subtotal, sale_channel, online_inventory_item_id, in_store_inventory_item_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
-        PreparedStatement stmt = conn.prepareStatement(sql);
-        int batchSize = 100;
-        int count = 0;
-        for (Map<String, Object> item : items) {
-            stmt.setInt(1, posTransactionId);
-            stmt.setString(2, (String) item.get("sku"));
-            stmt.setInt(3, (int) item.get("order_quantity"));
-            stmt.setInt(4, (int) item.get("stock_quantity"));
-            stmt.setDouble(5, (double) item.get("subtotal"));
-            stmt.setString(6, (String) item.get("sale_channel"));
-            if (item.get("online_inventory_item_id") != null) {
-                stmt.setObject(7, item.get("online_inventory_item_id"), java.sql.Types.INTEGER);
-            } else {
-                stmt.setNull(7, java.sql.Types.INTEGER);
-            }
-            if (item.get("in_store_inventory_item_id") != null) {
-                stmt.setObject(8, item.get("in_store_inventory_item_id"), java.sql.Types.INTEGER);
-            } else {
-                stmt.setNull(8, java.sql.Types.INTEGER);
-            }
-            stmt.addBatch();
-            count++;
-            if (count % batchSize == 0) {
-                stmt.executeBatch();
+    // Rows per multi-row INSERT; 8 placeholders per row keeps each statement well under the 65,535 parameter limit
+    private static final int SALE_ITEMS_ROWS_PER_INSERT = 100;
+    private static final String SALE_ITEMS_INSERT_PREFIX = "INSERT INTO physical_sale_items (pos_transaction_id, sku, order_quantity, stock_quantity, subtotal, sale_channel, online_inventory_item_id, in_store_inventory_item_id) VALUES ";
+    private static final String SALE_ITEMS_ROW_PLACEHOLDERS = "(?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String SALE_ITEMS_FULL_INSERT_SQL = buildSaleItemsInsertSql(SALE_ITEMS_ROWS_PER_INSERT);
+
+    /**
+     * Insert items into physical_sale_items (with sale_channel and inventory_id).
+     * Rows are sent as multi-row INSERT statements (up to 100 rows each) instead of one
+     * statement execution per row, so a large cart costs a handful of round trips.
+     */
+    public static void insertPhysicalSaleItems(Connection conn, int posTransactionId, SaleLineBatch items) throws SQLException {
+        if (items == null || items.isEmpty()) return;
+        int offset = 0;
+        while (offset < items.size()) {
+            int rows = Math.min(SALE_ITEMS_ROWS_PER_INSERT, items.size() - offset);
+            String sql = rows == SALE_ITEMS_ROWS_PER_INSERT ? SALE_ITEMS_FULL_INSERT_SQL : buildSaleItemsInsertSql(rows);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                int idx = 1;
+                for (int i = offset; i < offset + rows; i++) {
+                    stmt.setInt(idx++, posTransactionId);
+                    stmt.setString(idx++, items.getSku(i));
+                    stmt.setInt(idx++, items.getOrderQuantity(i));
+                    stmt.setInt(idx++, items.getStockQuantity(i));
+                    stmt.setBigDecimal(idx++, Money.toBigDecimal(items.getSubtotal(i)));
+                    stmt.setString(idx++, items.getSaleChannel(i));
+                    if (items.getOnlineInventoryItemId(i) > 0) {
+                        stmt.setInt(idx++, items.getOnlineInventoryItemId(i));
+                    } else {
+                        stmt.setNull(idx++, java.sql.Types.INTEGER);
+                    }
+                    if (items.getInStoreInventoryItemId(i) > 0) {
+                        stmt.setInt(idx++, items.getInStoreInventoryItemId(i));
+                    } else {
+                        stmt.setNull(idx++, java.sql.Types.INTEGER);
+                    }
+                }
+                stmt.executeUpdate();
             }
+            offset += rows;
         }
-        stmt.executeBatch(); // execute remaining
-        stmt.close();
+    }
+
+    private static String buildSaleItemsInsertSql(int rows) {
+        StringBuilder sql = new StringBuilder(SALE_ITEMS_INSERT_PREFIX.length() + rows * (SALE_ITEMS_ROW_PLACEHOLDERS.length() + 2));
+        sql.append(SALE_ITEMS_INSERT_PREFIX);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) sql.append(", ");
+            sql.append(SALE_ITEMS_ROW_PLACEHOLDERS);
+        }
+        return sql.toString();
     }
 
     // Insert a new record into transaction_log
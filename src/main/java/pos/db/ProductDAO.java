@@ -151,52 +151,158 @@ public class ProductDAO {
         return info;
     }
     /**
-     * Decrease the quantity of multiple products by SKU and sale channel in a batch using the IN keyword.
+     * Result of a guarded stock decrement for one SKU.
+     * available is the stock on hand before the decrement, or -1 if the SKU was not found.
+     */
+    public static class StockDecrementOutcome {
+        public final String sku;
+        public final int requested;
+        public final int available;
+        public final boolean applied;
+        public StockDecrementOutcome(String sku, int requested, int available, boolean applied) {
+            this.sku = sku;
+            this.requested = requested;
+            this.available = available;
+            this.applied = applied;
+        }
+        public boolean isShortfall() {
+            return available < requested;
+        }
+    }
+
+    /**
+     * Thrown when a stock decrement would oversell at least one SKU.
+     * Nothing in the failing batch was written; callers must roll back the sale transaction
+     * to undo batches that were already applied.
+     */
+    public static class InsufficientStockException extends SQLException {
+        public final java.util.List<StockDecrementOutcome> outcomes;
+        public InsufficientStockException(java.util.List<StockDecrementOutcome> outcomes) {
+            super(buildShortfallMessage(outcomes));
+            this.outcomes = outcomes;
+        }
+        public java.util.List<StockDecrementOutcome> getShortfalls() {
+            java.util.List<StockDecrementOutcome> shortfalls = new java.util.ArrayList<>();
+            for (StockDecrementOutcome outcome : outcomes) {
+                if (outcome.isShortfall()) shortfalls.add(outcome);
+            }
+            return shortfalls;
+        }
+        private static String buildShortfallMessage(java.util.List<StockDecrementOutcome> outcomes) {
+            StringBuilder msg = new StringBuilder("Insufficient stock for");
+            for (StockDecrementOutcome outcome : outcomes) {
+                if (!outcome.isShortfall()) continue;
+                msg.append(' ').append(outcome.sku).append(" (requested ").append(outcome.requested)
+                   .append(", available ").append(outcome.available < 0 ? "none" : String.valueOf(outcome.available)).append(')');
+            }
+            return msg.toString();
+        }
+    }
+
+    /**
+     * Decrease the quantity of multiple products by SKU and sale channel, all-or-nothing.
+     * The batch's rows are locked with SELECT ... FOR UPDATE and checked in Java first, so concurrent
+     * sales of the same SKUs wait for this transaction instead of both passing a snapshot check.
+     * If any SKU is missing or has quantity < requested nothing is written; otherwise one guarded
+     * UPDATE decrements every row, and stock can never go negative.
      * @param skuToQty Map of SKU to quantity to decrease.
      * @param saleChannel The sale channel ("in-store", "both", or "online").
+     * @return one outcome per SKU with the pre-decrement stock, all applied unless a shortfall was found.
      * @throws SQLException if a database error occurs.
      */
-    public static void decreaseProductQuantitiesBatch(Connection conn, Map<String, Integer> skuToQty, String saleChannel) throws SQLException {
-        if (skuToQty == null || skuToQty.isEmpty()) return;
-        String table;
-        if ("both".equalsIgnoreCase(saleChannel) || "online".equalsIgnoreCase(saleChannel)) {
-            table = "online_product_variant";
-        } else {
-            table = "in_store_product_details";
+    public static java.util.List<StockDecrementOutcome> decreaseProductQuantitiesBatch(Connection conn, Map<String, Integer> skuToQty, String saleChannel) throws SQLException {
+        java.util.List<StockDecrementOutcome> outcomes = new java.util.ArrayList<>();
+        if (skuToQty == null || skuToQty.isEmpty()) return outcomes;
+        String table = getStockTable(saleChannel);
+        int count = skuToQty.size();
+        String inList = "(" + String.join(",", java.util.Collections.nCopies(count, "?")) + ")";
+
+        // Lock the rows; the quantities read here can't change until this transaction ends
+        Map<String, Integer> available = new java.util.HashMap<>();
+        String lockSql = "SELECT sku, quantity FROM " + table + " WHERE sku IN " + inList + " FOR UPDATE";
+        try (PreparedStatement stmt = conn.prepareStatement(lockSql)) {
+            bindSkuList(stmt, 1, skuToQty);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    available.put(rs.getString("sku"), rs.getInt("quantity"));
+                }
+            }
         }
-        // Build SQL: UPDATE ... SET quantity = CASE sku WHEN ... THEN ... END WHERE sku IN (...)
-        StringBuilder sql = new StringBuilder("UPDATE " + table + " SET quantity = quantity - CASE sku ");
-        for (String sku : skuToQty.keySet()) {
-            sql.append(" WHEN ? THEN ?");
+        boolean shortfall = false;
+        for (Map.Entry<String, Integer> entry : skuToQty.entrySet()) {
+            if (available.getOrDefault(entry.getKey(), -1) < entry.getValue()) {
+                shortfall = true;
+                break;
+            }
         }
-        sql.append(" END WHERE sku IN (");
-        sql.append(String.join(",", java.util.Collections.nCopies(skuToQty.size(), "?")));
-        sql.append(")");
-        try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
-            int idx = 1;
-            // Set WHEN ? THEN ? pairs
-            for (Map.Entry<String, Integer> entry : skuToQty.entrySet()) {
-                stmt.setString(idx++, entry.getKey());
-                stmt.setInt(idx++, entry.getValue());
+        if (!shortfall) {
+            String caseExpr = "CASE sku" + " WHEN ? THEN ?".repeat(count) + " END";
+            // The quantity guard is redundant under the lock but keeps a bad caller from driving stock negative
+            String sql = "UPDATE " + table + " SET quantity = quantity - " + caseExpr +
+                         " WHERE sku IN " + inList + " AND quantity >= " + caseExpr;
+            int updated;
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                int idx = 1;
+                idx = bindSkuQuantityCase(stmt, idx, skuToQty);
+                idx = bindSkuList(stmt, idx, skuToQty);
+                bindSkuQuantityCase(stmt, idx, skuToQty);
+                updated = stmt.executeUpdate();
             }
-            // Set IN (?) list
-            for (String sku : skuToQty.keySet()) {
-                stmt.setString(idx++, sku);
+            if (updated < count) {
+                // Only possible if the rows weren't locked (e.g. autocommit); the caller must roll back
+                throw new SQLException("Stock changed during decrement: updated " + updated + " of " + count + " rows in " + table);
             }
-            stmt.executeUpdate();
         }
+        for (Map.Entry<String, Integer> entry : skuToQty.entrySet()) {
+            outcomes.add(new StockDecrementOutcome(entry.getKey(), entry.getValue(),
+                                                   available.getOrDefault(entry.getKey(), -1), !shortfall));
+        }
+        return outcomes;
     }
 
-    public static void batchUpdateInventory(Connection conn, Map<String, Integer> skuToQty, String saleChannel) throws SQLException {
+    /**
+     * Decrease stock for a whole sale in chunks of 100 SKUs.
+     * @return per-SKU outcomes for every chunk.
+     * @throws InsufficientStockException if any SKU would go below zero; the caller must roll back.
+     */
+    public static java.util.List<StockDecrementOutcome> batchUpdateInventory(Connection conn, Map<String, Integer> skuToQty, String saleChannel) throws SQLException {
         int batchSize = 100;
+        java.util.List<StockDecrementOutcome> outcomes = new java.util.ArrayList<>(skuToQty.size());
         java.util.List<Map.Entry<String, Integer>> entries = new java.util.ArrayList<>(skuToQty.entrySet());
         for (int i = 0; i < entries.size(); i += batchSize) {
-            Map<String, Integer> batch = new java.util.HashMap<>();
+            Map<String, Integer> batch = new java.util.LinkedHashMap<>();
             for (int j = i; j < i + batchSize && j < entries.size(); j++) {
                 batch.put(entries.get(j).getKey(), entries.get(j).getValue());
             }
-            decreaseProductQuantitiesBatch(conn, batch, saleChannel);
+            java.util.List<StockDecrementOutcome> batchOutcomes = decreaseProductQuantitiesBatch(conn, batch, saleChannel);
+            outcomes.addAll(batchOutcomes);
+            if (!batchOutcomes.isEmpty() && !batchOutcomes.get(0).applied) {
+                throw new InsufficientStockException(batchOutcomes);
+            }
+        }
+        return outcomes;
+    }
+
+    private static String getStockTable(String saleChannel) {
+        if ("both".equalsIgnoreCase(saleChannel) || "online".equalsIgnoreCase(saleChannel)) {
+            return "online_product_variant";
+        }
+        return "in_store_product_details";
+    }
+
+    private static int bindSkuQuantityCase(PreparedStatement stmt, int idx, Map<String, Integer> skuToQty) throws SQLException {
+        for (Map.Entry<String, Integer> entry : skuToQty.entrySet()) {
+            stmt.setString(idx++, entry.getKey());
+            stmt.setInt(idx++, entry.getValue());
+        }
+        return idx;
+    }
+
+    private static int bindSkuList(PreparedStatement stmt, int idx, Map<String, Integer> skuToQty) throws SQLException {
+        for (String sku : skuToQty.keySet()) {
+            stmt.setString(idx++, sku);
         }
+        return idx;
     }
 
     // Fetch category_id by SKU
@@ -46,34 +46,4 @@ public class PromotionDao {
         stmt.close();
         return list;
     }
-
-    // Find the best applicable promotion for a cart item
-    public static Promotion getBestPromotionForItem(Connection conn, String sku, int categoryId, double price, int quantity, List<Promotion> promos) {
-        Promotion best = null;
-        double maxDiscount = 0;
-        double lineTotal = price * quantity;
-        for (Promotion p : promos) {
-            boolean applies = false;
-            if ("all".equals(p.appliesToType)) {
-                applies = true;
-            } else if ("category".equals(p.appliesToType) && p.appliesToId != null && p.appliesToId == categoryId) {
-                applies = true;
-            } else if ("product".equals(p.appliesToType) && p.appliesToId != null && p.appliesToId.toString().equals(sku)) {
-                applies = true;
-            }
-            if (!applies) continue;
-            if (lineTotal < p.minPurchase) continue;
-            double discount = 0;
-            if ("percentage".equals(p.type)) {
-                discount = lineTotal * (p.value / 100.0);
-            } else if ("fixed".equals(p.type)) {
-                discount = Math.min(p.value, lineTotal);
-            }
-            if (discount > maxDiscount) {
-                maxDiscount = discount;
-                best = p;
-            }
-        }
-        return best;
-    }
-} 
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,141 @@
+package pos.db;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import pos.model.Money;
+
+/**
+ * Active promotions compiled into lookup buckets (all / by category / by product) with a
+ * precomputed evaluator per promotion. Finding the best promotion for a cart line only
+ * looks at the promotions that can apply to it instead of scanning every cached voucher.
+ * Build once when promotions are (re)loaded; the index is immutable and safe to share.
+ */
+public class PromotionIndex {
+
+    /**
+     * A promotion with its discount rule resolved up front
+     */
+    public static class CompiledPromotion {
+        public final PromotionDao.Promotion promotion;
+        final int order; // position in the source list, used to keep the original tie-breaking
+        final boolean percentage;
+        final double percent; // percentage promotions
+        final long fixedCentavos; // fixed promotions
+        final long minPurchaseCentavos;
+
+        CompiledPromotion(PromotionDao.Promotion promotion, int order) {
+            this.promotion = promotion;
+            this.order = order;
+            this.percentage = "percentage".equals(promotion.type);
+            this.percent = percentage ? promotion.value : 0;
+            this.fixedCentavos = percentage ? 0 : Money.ofPesos(promotion.value);
+            this.minPurchaseCentavos = Money.ofPesos(promotion.minPurchase);
+        }
+
+        /**
+         * Discount in centavos this promotion gives on a line total, or 0 if the minimum purchase isn't met
+         */
+        public long discountFor(long lineTotalCentavos) {
+            if (lineTotalCentavos < minPurchaseCentavos) return 0;
+            return percentage ? Money.percentOf(lineTotalCentavos, percent) : Math.min(fixedCentavos, lineTotalCentavos);
+        }
+    }
+
+    /**
+     * Best promotion for a line together with the discount it gives
+     */
+    public static class Match {
+        public final PromotionDao.Promotion promotion;
+        public final long discount; // centavos
+        Match(PromotionDao.Promotion promotion, long discount) {
+            this.promotion = promotion;
+            this.discount = discount;
+        }
+    }
+
+    private static final PromotionIndex EMPTY = new PromotionIndex(
+        Collections.emptyList(), Collections.emptyMap(), Collections.emptyMap(), 0);
+
+    private final List<CompiledPromotion> storeWide;
+    private final Map<Integer, List<CompiledPromotion>> byCategory;
+    private final Map<String, List<CompiledPromotion>> byProduct;
+    private final int size;
+
+    private PromotionIndex(List<CompiledPromotion> storeWide, Map<Integer, List<CompiledPromotion>> byCategory,
+                           Map<String, List<CompiledPromotion>> byProduct, int size) {
+        this.storeWide = storeWide;
+        this.byCategory = byCategory;
+        this.byProduct = byProduct;
+        this.size = size;
+    }
+
+    public static PromotionIndex empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Compile promotions into an index. Promotions that can never give a discount
+     * (e.g. free_shipping, or targeted ones without a target) are left out.
+     */
+    public static PromotionIndex compile(List<PromotionDao.Promotion> promos) {
+        if (promos == null || promos.isEmpty()) return EMPTY;
+        List<CompiledPromotion> storeWide = new ArrayList<>();
+        Map<Integer, List<CompiledPromotion>> byCategory = new HashMap<>();
+        Map<String, List<CompiledPromotion>> byProduct = new HashMap<>();
+        int size = 0;
+        for (int i = 0; i < promos.size(); i++) {
+            PromotionDao.Promotion p = promos.get(i);
+            if (!"percentage".equals(p.type) && !"fixed".equals(p.type)) continue;
+            CompiledPromotion compiled = new CompiledPromotion(p, i);
+            if ("all".equals(p.appliesToType)) {
+                storeWide.add(compiled);
+            } else if ("category".equals(p.appliesToType) && p.appliesToId != null) {
+                byCategory.computeIfAbsent(p.appliesToId, k -> new ArrayList<>()).add(compiled);
+            } else if ("product".equals(p.appliesToType) && p.appliesToId != null) {
+                // Product promotions are matched against the SKU string, as before
+                byProduct.computeIfAbsent(p.appliesToId.toString(), k -> new ArrayList<>()).add(compiled);
+            } else {
+                continue;
+            }
+            size++;
+        }
+        return new PromotionIndex(storeWide, byCategory, byProduct, size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Find the promotion giving the largest discount on a line.
+     * Ties go to the promotion that came first in the source list.
+     * @return the best match, or null if no promotion gives a discount.
+     */
+    public Match findBest(String sku, int categoryId, long priceCentavos, int quantity) {
+        long lineTotal = Money.times(priceCentavos, quantity);
+        CompiledPromotion best = null;
+        long maxDiscount = 0;
+        for (int bucket = 0; bucket < 3; bucket++) {
+            List<CompiledPromotion> candidates;
+            if (bucket == 0) {
+                candidates = storeWide;
+            } else if (bucket == 1) {
+                candidates = byCategory.get(categoryId);
+            } else {
+                candidates = sku != null ? byProduct.get(sku) : null;
+            }
+            if (candidates == null) continue;
+            for (CompiledPromotion c : candidates) {
+                long discount = c.discountFor(lineTotal);
+                if (discount > maxDiscount || (discount == maxDiscount && best != null && discount > 0 && c.order < best.order)) {
+                    maxDiscount = discount;
+                    best = c;
+                }
+            }
+        }
+        return best == null ? null : new Match(best.promotion, maxDiscount);
+    }
+}
@@ -5,7 +5,8 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.math.BigDecimal;
+import pos.metrics.PosEvents;
+import pos.model.Money;
 import java.util.List;
 import java.util.Map;
 
@@ -26,6 +27,7 @@ import java.util.Map;
  * Provides atomic operations for processing returns with proper error handling
  */
 public class ReturnsDAO {
+    public static final int RETURN_WINDOW_DAYS = 7;
     
     /**
      * Result class for invoice validation
@@ -59,13 +61,14 @@ public class ReturnsDAO {
      * Data class to hold original invoice/transaction data for return receipt generation
      */
     public static class InvoiceData {
-        public final double subtotal;
-        public final double discount;
-        public final double tax;
+        // Amounts in centavos
+        public final long subtotal;
+        public final long discount;
+        public final long tax;
         public final String customerName;
         public final java.sql.Timestamp transactionDate;
         
-        public InvoiceData(double subtotal, double discount, double tax, String customerName, java.sql.Timestamp transactionDate) {
+        public InvoiceData(long subtotal, long discount, long tax, String customerName, java.sql.Timestamp transactionDate) {
             this.subtotal = subtotal;
             this.discount = discount;
             this.tax = tax;
@@ -78,27 +81,8 @@ public class ReturnsDAO {
      * Get original transaction data for return receipt generation
      */
     public static InvoiceData getInvoiceData(Connection conn, String invoiceNo) throws SQLException {
-        String query = "SELECT subtotal, discount, tax, customer_name, transaction_date FROM pos_transactions WHERE invoice_no = ?";
-        PreparedStatement stmt = conn.prepareStatement(query);
-        stmt.setString(1, invoiceNo);
-        ResultSet rs = stmt.executeQuery();
-        
-        if (rs.next()) {
-            InvoiceData data = new InvoiceData(
-                rs.getDouble("subtotal"),
-                rs.getDouble("discount"),
-                rs.getDouble("tax"),
-                rs.getString("customer_name"),
-                rs.getTimestamp("transaction_date")
-            );
-            rs.close();
-            stmt.close();
-            return data;
-        }
-        
-        rs.close();
-        stmt.close();
-        return null;
+        InvoiceCache.CachedInvoice invoice = InvoiceCache.get(conn, invoiceNo);
+        return invoice != null ? invoice.toInvoiceData() : null;
     }
     
     /**
@@ -139,46 +123,36 @@ public class ReturnsDAO {
     }
     
     public static InvoiceValidationResult validateInvoiceForReturns(Connection conn, String invoiceNo) throws SQLException {
-        // 1. Check if invoice exists and get transaction date
-        String checkInvoiceQuery = "SELECT id, transaction_date FROM pos_transactions WHERE invoice_no = ?";
-        PreparedStatement stmt = conn.prepareStatement(checkInvoiceQuery);
-        stmt.setString(1, invoiceNo);
-        ResultSet rs = stmt.executeQuery();
-        
-        if (!rs.next()) {
-            rs.close();
-            stmt.close();
+        return validateInvoiceForReturns(InvoiceCache.load(conn, invoiceNo), invoiceNo);
+    }
+    
+    /**
+     * Validates an already loaded invoice for returns
+     * @param invoice Invoice from InvoiceCache, or null if it was not found
+     * @param invoiceNo Invoice number that was looked up
+     */
+    public static InvoiceValidationResult validateInvoiceForReturns(InvoiceCache.CachedInvoice invoice, String invoiceNo) {
+        // 1. Check if invoice exists
+        if (invoice == null) {
             return InvoiceValidationResult.invalid("Invoice number '" + invoiceNo + "' not found. Please check the invoice number and try again.");
         }
         
-        int posTransactionId = rs.getInt("id");
-        java.sql.Timestamp transactionDate = rs.getTimestamp("transaction_date");
-        rs.close();
-        stmt.close();
-        
         // 2. Check if transaction is not more than 7 days old
-        long currentTime = System.currentTimeMillis();
-        long transactionTime = transactionDate.getTime();
-        long daysDifference = (currentTime - transactionTime) / (1000 * 60 * 60 * 24);
-        
-        if (daysDifference > 7) {
+        if (invoice.ageDays > RETURN_WINDOW_DAYS) {
             return InvoiceValidationResult.invalid("Invoice '" + invoiceNo + "' is more than 7 days old and cannot be returned. Returns are only allowed within 7 days of purchase.");
         }
         
-        // 3. Check if invoice has already been processed for returns
-        String checkReturnsQuery = "SELECT COUNT(*) as return_count FROM pos_returns WHERE invoice_no = ?";
-        PreparedStatement returnsStmt = conn.prepareStatement(checkReturnsQuery);
-        returnsStmt.setString(1, invoiceNo);
-        ResultSet returnsRs = returnsStmt.executeQuery();
-        
-        if (returnsRs.next() && returnsRs.getInt("return_count") > 0) {
-            returnsRs.close();
-            returnsStmt.close();
-            return InvoiceValidationResult.invalid("Invoice '" + invoiceNo + "' has already been processed for returns. Each invoice can only be returned once.");
+        // 3. Check that something is left to return (earlier partial returns are allowed)
+        boolean anyReturnable = false;
+        for (InvoiceCache.InvoiceLine line : invoice.lines) {
+            if (line.getReturnableQuantity() > 0) {
+                anyReturnable = true;
+                break;
+            }
+        }
+        if (!anyReturnable) {
+            return InvoiceValidationResult.invalid("All items on invoice '" + invoiceNo + "' have already been returned.");
         }
-        
-        returnsRs.close();
-        returnsStmt.close();
         
         return InvoiceValidationResult.valid();
     }
@@ -191,10 +165,10 @@ public class ReturnsDAO {
         public final int onlineInventoryItemId; // nullable
         public final int inStoreInventoryId; // nullable  
         public final int qtyReturned;
-        public final BigDecimal refundAmount;
+        public final long refundAmount; // centavos
         
         public ReturnItemData(int invoiceItemId, Integer onlineInventoryItemId, Integer inStoreInventoryId, 
-                            int qtyReturned, BigDecimal refundAmount) {
+                            int qtyReturned, long refundAmount) {
             this.invoiceItemId = invoiceItemId;
             this.onlineInventoryItemId = onlineInventoryItemId != null ? onlineInventoryItemId : 0;
             this.inStoreInventoryId = inStoreInventoryId != null ? inStoreInventoryId : 0;
@@ -210,12 +184,12 @@ public class ReturnsDAO {
         public final String invoiceNo;
         public final int cashierId;
         public final int supervisorId;
-        public final BigDecimal refundTotal;
+        public final long refundTotal; // centavos
         public final String notes;
         public final List<ReturnItemData> returnItems;
         
         public ReturnTransactionData(String invoiceNo, int cashierId, int supervisorId, 
-                                   BigDecimal refundTotal, String notes, List<ReturnItemData> returnItems) {
+                                   long refundTotal, String notes, List<ReturnItemData> returnItems) {
             this.invoiceNo = invoiceNo;
             this.cashierId = cashierId;
             this.supervisorId = supervisorId;
@@ -255,13 +229,18 @@ public class ReturnsDAO {
     public static class ReturnTransactionResult {
         public final int returnId;
         public final String returnNo;
-        public final BigDecimal refundTotal;
+        public final long refundTotal; // centavos
+        public final String refundMethod;
+        public final String notes;
         public final List<ReturnItemData> returnItems;
         
-        public ReturnTransactionResult(int returnId, String returnNo, BigDecimal refundTotal, List<ReturnItemData> returnItems) {
+        public ReturnTransactionResult(int returnId, String returnNo, long refundTotal, String refundMethod,
+                                       String notes, List<ReturnItemData> returnItems) {
             this.returnId = returnId;
             this.returnNo = returnNo;
             this.refundTotal = refundTotal;
+            this.refundMethod = refundMethod;
+            this.notes = notes;
             this.returnItems = returnItems;
         }
     }
@@ -273,15 +252,32 @@ public class ReturnsDAO {
      * @throws SQLException if database operation fails
      */
     public static ReturnTransactionResult processReturnTransactionWithReturnNo(ReturnTransactionData returnData) throws SQLException {
+        PosEvents.Return event = new PosEvents.Return();
+        event.begin();
+        event.invoiceNo = returnData.invoiceNo;
+        event.skuCount = returnData.returnItems.size();
+        for (ReturnItemData item : returnData.returnItems) {
+            event.units += item.qtyReturned;
+        }
+        event.refundCentavos = returnData.refundTotal;
         Connection conn = null;
         try {
             conn = DBConnection.getConnection();
             conn.setAutoCommit(false); // Start transaction
             
-            // 1. Generate return number
+            // 1. Lock the invoice and the lines being returned, and make sure no line is returned beyond
+            //    what is left (another terminal may have returned some). This must be the first read of the
+            //    transaction, so nothing here comes from an older snapshot.
+            Rejection rejection = checkReturnable(conn, returnData.invoiceNo, returnData.returnItems);
+            if (rejection != null) {
+                event.outcome = rejection.outcome;
+                throw new SQLException(rejection.message);
+            }
+            
+            // 2. Generate return number
             String returnNo = generateNextReturnNo(conn);
             
-            // 2. Insert main return record with return number
+            // Insert main return record with return number
             int returnId = insertReturnWithReturnNo(conn, returnData, returnNo);
             if (returnId == -1) {
                 throw new SQLException("Failed to insert return record");
@@ -293,15 +289,7 @@ public class ReturnsDAO {
             // 4. Update inventory quantities (increase stock)
             updateInventoryQuantities(conn, returnData.returnItems);
             
-            // 5. Log supervisor authorization activity
-            logReturnAuthorization(conn, returnData.supervisorId, returnData.invoiceNo, 
-                                 returnData.refundTotal, returnData.cashierId);
-            
-            // 6. Log cashier return processing activity
-            logReturnProcessing(conn, returnData.cashierId, returnData.invoiceNo, 
-                              returnData.refundTotal, returnData.supervisorId);
-            
-            // 7. Insert transaction log for the return
+            // 5. Insert transaction log for the return
             String transactionId = PosTransactionDAO.generateNextTransactionId(conn);
             PosTransactionDAO.insertTransactionLog(
                 conn,
@@ -316,9 +304,22 @@ public class ReturnsDAO {
             );
             
             conn.commit(); // All operations successful
-            return new ReturnTransactionResult(returnId, returnNo, returnData.refundTotal, returnData.returnItems);
+            event.returnNo = returnNo;
+            event.outcome = "ok";
+            
+            // 6. Log supervisor authorization and cashier processing (written in the background)
+            logReturnAuthorization(returnData.supervisorId, returnData.invoiceNo, 
+                                 returnData.refundTotal, returnData.cashierId);
+            logReturnProcessing(returnData.cashierId, returnData.invoiceNo, 
+                              returnData.refundTotal, returnData.supervisorId);
+            InvoiceCache.recordReturn(returnData.invoiceNo, returnData.returnItems);
+            return new ReturnTransactionResult(returnId, returnNo, returnData.refundTotal, "Cash",
+                                               returnData.notes, returnData.returnItems);
             
         } catch (SQLException e) {
+            if (event.outcome == null) {
+                event.outcome = "error";
+            }
             if (conn != null) {
                 try {
                     conn.rollback(); // Rollback on any failure
@@ -328,6 +329,10 @@ public class ReturnsDAO {
             }
             throw new SQLException("Return transaction failed: " + e.getMessage(), e);
         } finally {
+            if (event.outcome == null) {
+                event.outcome = "error"; // unchecked exception
+            }
+            event.commit();
             if (conn != null) {
                 try {
                     conn.setAutoCommit(true); // Restore auto-commit
@@ -340,6 +345,96 @@ public class ReturnsDAO {
         }
     }
     
+    /**
+     * Why a return can't be committed: the Return event outcome and the message for the cashier
+     */
+    private static class Rejection {
+        final String outcome;
+        final String message;
+        
+        Rejection(String outcome, String message) {
+            this.outcome = outcome;
+            this.message = message;
+        }
+    }
+    
+    /**
+     * Lock the invoice and its sold lines being returned, and reject the return if the invoice is past
+     * the return window, a line is not on this invoice, or a line would be returned beyond its purchased
+     * quantity. Every read is a locking read, so it sees returns committed by other terminals even under
+     * REPEATABLE READ, and a concurrent return of the same invoice waits for this transaction.
+     * The returned quantities are summed from the pos_return_items (invoice_item_id, qty_returned) index.
+     * @return the rejection, or null if every line can be returned
+     * @throws SQLException only if a lookup itself fails
+     */
+    private static Rejection checkReturnable(Connection conn, String invoiceNo, List<ReturnItemData> returnItems) throws SQLException {
+        int posTransactionId;
+        String invoiceSql = "SELECT id, TIMESTAMPDIFF(DAY, transaction_date, NOW()) AS age_days " +
+                            "FROM pos_transactions WHERE invoice_no = ? FOR UPDATE";
+        try (PreparedStatement stmt = conn.prepareStatement(invoiceSql)) {
+            stmt.setString(1, invoiceNo);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return new Rejection("invoiceNotFound", "Invoice number '" + invoiceNo + "' not found");
+                }
+                if (rs.getInt("age_days") > RETURN_WINDOW_DAYS) {
+                    return new Rejection("outsideWindow", "Invoice '" + invoiceNo + "' is more than "
+                        + RETURN_WINDOW_DAYS + " days old and cannot be returned");
+                }
+                posTransactionId = rs.getInt("id");
+            }
+        }
+        if (returnItems.isEmpty()) {
+            return null;
+        }
+        Map<Integer, Integer> requested = new java.util.HashMap<>();
+        for (ReturnItemData item : returnItems) {
+            requested.merge(item.invoiceItemId, item.qtyReturned, Integer::sum);
+        }
+        String inList = String.join(", ", java.util.Collections.nCopies(requested.size(), "?"));
+        
+        Map<Integer, Integer> returned = new java.util.HashMap<>();
+        String returnedSql = "SELECT invoice_item_id, qty_returned FROM pos_return_items " +
+                             "WHERE invoice_item_id IN (" + inList + ") FOR UPDATE";
+        try (PreparedStatement stmt = conn.prepareStatement(returnedSql)) {
+            int index = 1;
+            for (Integer invoiceItemId : requested.keySet()) {
+                stmt.setInt(index++, invoiceItemId);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    returned.merge(rs.getInt("invoice_item_id"), rs.getInt("qty_returned"), Integer::sum);
+                }
+            }
+        }
+        
+        String linesSql = "SELECT id, sku, order_quantity FROM physical_sale_items " +
+                          "WHERE pos_transaction_id = ? AND id IN (" + inList + ") FOR UPDATE";
+        try (PreparedStatement stmt = conn.prepareStatement(linesSql)) {
+            int index = 1;
+            stmt.setInt(index++, posTransactionId);
+            for (Integer invoiceItemId : requested.keySet()) {
+                stmt.setInt(index++, invoiceItemId);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                int found = 0;
+                while (rs.next()) {
+                    found++;
+                    int id = rs.getInt("id");
+                    int remaining = rs.getInt("order_quantity") - returned.getOrDefault(id, 0);
+                    if (requested.get(id) > remaining) {
+                        return new Rejection("exceedsReturnable", "Only " + Math.max(0, remaining) + " of "
+                            + rs.getString("sku") + " can still be returned");
+                    }
+                }
+                if (found != requested.size()) {
+                    return new Rejection("notOnInvoice", "Return references an item that is not on invoice '" + invoiceNo + "'");
+                }
+            }
+        }
+        return null;
+    }
+    
     /**
      * Insert main return record with return number
      */
@@ -352,7 +447,7 @@ public class ReturnsDAO {
             stmt.setString(2, returnData.invoiceNo);
             stmt.setInt(3, returnData.cashierId);
             stmt.setInt(4, returnData.supervisorId);
-            stmt.setBigDecimal(5, returnData.refundTotal);
+            stmt.setBigDecimal(5, Money.toBigDecimal(returnData.refundTotal));
             stmt.setString(6, returnData.notes);
             
             int affectedRows = stmt.executeUpdate();
@@ -380,7 +475,7 @@ public class ReturnsDAO {
             stmt.setString(1, returnData.invoiceNo);
             stmt.setInt(2, returnData.cashierId);
             stmt.setInt(3, returnData.supervisorId);
-            stmt.setBigDecimal(4, returnData.refundTotal);
+            stmt.setBigDecimal(4, Money.toBigDecimal(returnData.refundTotal));
             stmt.setString(5, returnData.notes);
             
             int affectedRows = stmt.executeUpdate();
@@ -424,7 +519,7 @@ public class ReturnsDAO {
                 }
                 
                 stmt.setInt(5, item.qtyReturned);
-                stmt.setBigDecimal(6, item.refundAmount);
+                stmt.setBigDecimal(6, Money.toBigDecimal(item.refundAmount));
                 
                 stmt.addBatch();
             }
@@ -480,41 +575,27 @@ public class ReturnsDAO {
     /**
      * Log supervisor authorization activity
      */
-    private static void logReturnAuthorization(Connection conn, int supervisorId, String invoiceNo, 
-                                             BigDecimal refundTotal, int cashierId) throws SQLException {
-        String sql = "INSERT INTO activity_log (staff_id, activity_type, details) VALUES (?, ?, ?)";
-        
+    private static void logReturnAuthorization(int supervisorId, String invoiceNo, 
+                                             long refundTotal, int cashierId) {
         String details = String.format(
-            "Authorized return for Invoice #%s - Refund: ₱%.2f - Processed by Cashier ID: %d",
-            invoiceNo, refundTotal, cashierId
+            "Authorized return for Invoice #%s - Refund: ₱%s - Processed by Cashier ID: %d",
+            invoiceNo, Money.format(refundTotal), cashierId
         );
         
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, supervisorId);
-            stmt.setString(2, "return_authorization");
-            stmt.setString(3, details);
-            stmt.executeUpdate();
-        }
+        ActivityLogWriter.getInstance().log(supervisorId, "return_authorization", details);
     }
     
     /**
      * Log cashier return processing activity
      */
-    private static void logReturnProcessing(Connection conn, int cashierId, String invoiceNo, 
-                                          BigDecimal refundTotal, int supervisorId) throws SQLException {
-        String sql = "INSERT INTO activity_log (staff_id, activity_type, details) VALUES (?, ?, ?)";
-        
+    private static void logReturnProcessing(int cashierId, String invoiceNo, 
+                                          long refundTotal, int supervisorId) {
         String details = String.format(
-            "Processed return for Invoice #%s - Refund: ₱%.2f - Authorized by Supervisor ID: %d",
-            invoiceNo, refundTotal, supervisorId
+            "Processed return for Invoice #%s - Refund: ₱%s - Authorized by Supervisor ID: %d",
+            invoiceNo, Money.format(refundTotal), supervisorId
         );
         
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, cashierId);
-            stmt.setString(2, "returns_refunds");
-            stmt.setString(3, details);
-            stmt.executeUpdate();
-        }
+        ActivityLogWriter.getInstance().log(cashierId, "returns_refunds", details);
     }
     
     /**
@@ -535,7 +616,7 @@ public class ReturnsDAO {
             return "Valid supervisor ID is required";
         }
         
-        if (returnData.refundTotal == null || returnData.refundTotal.compareTo(BigDecimal.ZERO) <= 0) {
+        if (returnData.refundTotal <= 0) {
             return "Refund total must be greater than zero";
         }
         
@@ -553,7 +634,7 @@ public class ReturnsDAO {
                 return "Return quantity must be greater than zero";
             }
             
-            if (item.refundAmount == null || item.refundAmount.compareTo(BigDecimal.ZERO) < 0) {
+            if (item.refundAmount < 0) {
                 return "Refund amount must be non-negative";
             }
             
@@ -572,25 +653,14 @@ public class ReturnsDAO {
      * @return Map with invoice info (exists, total, date) or null if not found
      */
     public static Map<String, Object> getInvoiceInfo(String invoiceNo) throws SQLException {
-        String sql = "SELECT COUNT(*) as exists, COALESCE(SUM(total_amount), 0) as total_amount, " +
-                    "MAX(transaction_date) as transaction_date FROM pos_transactions WHERE invoice_no = ?";
-        
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            stmt.setString(1, invoiceNo);
-            
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next() && rs.getInt("exists") > 0) {
-                    return Map.of(
-                        "exists", true,
-                        "totalAmount", rs.getBigDecimal("total_amount"),
-                        "transactionDate", rs.getTimestamp("transaction_date")
-                    );
-                }
-            }
+        InvoiceCache.CachedInvoice invoice = InvoiceCache.get(invoiceNo);
+        if (invoice == null) {
+            return Map.of("exists", false);
         }
-        
-        return Map.of("exists", false);
+        return Map.of(
+            "exists", true,
+            "totalAmount", Money.toBigDecimal(invoice.totalAmount),
+            "transactionDate", invoice.transactionDate
+        );
     }
 }
\ No newline at end of file
@@ -0,0 +1,228 @@
+package pos.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Store-level group-commit writer for completed sales.
+ * Sales submitted from any lane are queued and written to the database in a single
+ * transaction per group, so the commit (and its log flush) is paid once per group
+ * instead of once per sale. Each sale runs inside its own savepoint: a failing sale
+ * is rolled back on its own while the rest of the group still commits.
+ *
+ * A sale never waits for company: the committer takes whatever is queued when it picks up a
+ * sale, and only waits (up to maxDelayMs) for more while other sales are already queued with it.
+ * A single till, one lane per JVM, therefore commits every sale immediately, exactly like the
+ * direct path; groups only form when several lanes share the JVM (e.g. the load simulator) or
+ * sales queue up while a commit is in progress.
+ *
+ * Disabled by default; start the POS with -Dpos.groupCommit=true to route sales
+ * through this service.
+ */
+public class SaleCommitService {
+
+    private static final int DEFAULT_MAX_BATCH_SIZE = 16;
+    private static final long DEFAULT_MAX_DELAY_MS = 20;
+
+    private static SaleCommitService instance;
+
+    /**
+     * Writes one sale using the group connection. Must not commit, roll back
+     * or close the connection; the service owns the transaction.
+     */
+    public interface SaleWriter<T> {
+        T write(Connection conn) throws Exception;
+    }
+
+    /**
+     * A sale waiting in the queue together with the future handed back to its lane
+     */
+    private static class PendingSale<T> {
+        final SaleWriter<T> writer;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        private T value;
+
+        PendingSale(SaleWriter<T> writer) {
+            this.writer = writer;
+        }
+
+        void write(Connection conn) throws Exception {
+            value = writer.write(conn);
+        }
+
+        void succeed() {
+            result.complete(value);
+        }
+
+        void fail(Throwable cause) {
+            result.completeExceptionally(cause);
+        }
+    }
+
+    private final BlockingQueue<PendingSale<?>> queue = new LinkedBlockingQueue<>();
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final Thread committer;
+    private volatile boolean running = true;
+
+    public SaleCommitService(int maxBatchSize, long maxDelayMs) {
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxDelayMs));
+        this.committer = new Thread(this::runCommitLoop, "sale-group-commit");
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+
+    /**
+     * Whether sales should be routed through the group-commit service
+     */
+    public static boolean isEnabled() {
+        return Boolean.getBoolean("pos.groupCommit");
+    }
+
+    /**
+     * Get the shared service, starting it on first use.
+     * Batch size and delay bound can be tuned with -Dpos.groupCommit.maxBatch
+     * and -Dpos.groupCommit.maxDelayMs.
+     */
+    public static synchronized SaleCommitService getInstance() {
+        if (instance == null) {
+            instance = new SaleCommitService(
+                Integer.getInteger("pos.groupCommit.maxBatch", DEFAULT_MAX_BATCH_SIZE),
+                Long.getLong("pos.groupCommit.maxDelayMs", DEFAULT_MAX_DELAY_MS)
+            );
+        }
+        return instance;
+    }
+
+    /**
+     * Stop the shared service (if it was started) after flushing queued sales
+     */
+    public static synchronized void shutdownShared() {
+        if (instance != null) {
+            instance.shutdown();
+            instance = null;
+        }
+    }
+
+    /**
+     * Queue a sale for the next group commit.
+     * The returned future completes with the writer's result once the group containing
+     * the sale has committed, or exceptionally if the sale (or the group commit) failed.
+     */
+    public <T> CompletableFuture<T> submit(SaleWriter<T> writer) {
+        PendingSale<T> sale = new PendingSale<>(writer);
+        if (!running) {
+            sale.fail(new SQLException("Sale commit service has been shut down"));
+            return sale.result;
+        }
+        queue.add(sale);
+        return sale.result;
+    }
+
+    /**
+     * Stop accepting sales, flush everything already queued and wait for the committer
+     */
+    public void shutdown() {
+        running = false;
+        committer.interrupt();
+        try {
+            committer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runCommitLoop() {
+        List<PendingSale<?>> group = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingSale<?> first = running ? queue.poll(1, TimeUnit.SECONDS) : queue.poll();
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                queue.drainTo(group, maxBatchSize - group.size());
+
+                // Only wait for more when other lanes are submitting; a lone sale commits right away
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (group.size() > 1 && group.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingSale<?> next = remaining > 0 && running
+                        ? queue.poll(remaining, TimeUnit.NANOSECONDS)
+                        : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Shutdown requested - drain whatever is left without waiting
+                queue.drainTo(group, maxBatchSize - group.size());
+            }
+
+            if (!group.isEmpty()) {
+                commitGroup(group);
+                group.clear();
+            }
+        }
+    }
+
+    /**
+     * Write every sale of the group in one transaction, isolating each sale with a savepoint
+     */
+    private void commitGroup(List<PendingSale<?>> group) {
+        List<PendingSale<?>> written = new ArrayList<>(group.size());
+        Connection conn = null;
+        try {
+            conn = DBConnection.getConnection();
+            conn.setAutoCommit(false);
+
+            for (PendingSale<?> sale : group) {
+                Savepoint savepoint = conn.setSavepoint();
+                try {
+                    sale.write(conn);
+                    conn.releaseSavepoint(savepoint);
+                    written.add(sale);
+                } catch (Exception e) {
+                    // Undo only this sale; the others in the group are unaffected
+                    conn.rollback(savepoint);
+                    sale.fail(e);
+                }
+            }
+
+            conn.commit();
+            for (PendingSale<?> sale : written) {
+                sale.succeed();
+            }
+        } catch (SQLException e) {
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                } catch (SQLException rollbackEx) {
+                    e.addSuppressed(rollbackEx);
+                }
+            }
+            SQLException failure = new SQLException("Group commit failed: " + e.getMessage(), e);
+            for (PendingSale<?> sale : group) {
+                sale.fail(failure); // no-op for sales that already failed individually
+            }
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.setAutoCommit(true);
+                    conn.close();
+                } catch (SQLException closeEx) {
+                    System.err.println("Warning: Failed to close connection: " + closeEx.getMessage());
+                }
+            }
+        }
+    }
+}
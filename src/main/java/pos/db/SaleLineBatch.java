@@ -0,0 +1,80 @@
+package pos.db;
+
+import java.util.Arrays;
+
+/**
+ * Typed, array-backed collection of the physical_sale_items rows of one sale.
+ * Columns are kept in parallel primitive arrays so building a large cart does not
+ * allocate a map (and boxed values) per line.
+ * Inventory item IDs use 0 for "no item" and are written as NULL.
+ */
+public class SaleLineBatch {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private String[] skus;
+    private int[] orderQuantities;
+    private int[] stockQuantities;
+    private long[] subtotals; // centavos
+    private String[] saleChannels;
+    private int[] onlineInventoryItemIds;
+    private int[] inStoreInventoryItemIds;
+    private int size;
+
+    public SaleLineBatch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public SaleLineBatch(int expectedLines) {
+        int capacity = Math.max(1, expectedLines);
+        skus = new String[capacity];
+        orderQuantities = new int[capacity];
+        stockQuantities = new int[capacity];
+        subtotals = new long[capacity];
+        saleChannels = new String[capacity];
+        onlineInventoryItemIds = new int[capacity];
+        inStoreInventoryItemIds = new int[capacity];
+    }
+
+    /**
+     * Append one sale line
+     * @param subtotal line subtotal in centavos
+     * @param onlineInventoryItemId online_product_variant.id, or 0 if none
+     * @param inStoreInventoryItemId in_store_product_details.id, or 0 if none
+     */
+    public void add(String sku, int orderQuantity, int stockQuantity, long subtotal, String saleChannel,
+                    int onlineInventoryItemId, int inStoreInventoryItemId) {
+        if (size == skus.length) {
+            grow();
+        }
+        skus[size] = sku;
+        orderQuantities[size] = orderQuantity;
+        stockQuantities[size] = stockQuantity;
+        subtotals[size] = subtotal;
+        saleChannels[size] = saleChannel;
+        onlineInventoryItemIds[size] = onlineInventoryItemId;
+        inStoreInventoryItemIds[size] = inStoreInventoryItemId;
+        size++;
+    }
+
+    private void grow() {
+        int capacity = skus.length * 2;
+        skus = Arrays.copyOf(skus, capacity);
+        orderQuantities = Arrays.copyOf(orderQuantities, capacity);
+        stockQuantities = Arrays.copyOf(stockQuantities, capacity);
+        subtotals = Arrays.copyOf(subtotals, capacity);
+        saleChannels = Arrays.copyOf(saleChannels, capacity);
+        onlineInventoryItemIds = Arrays.copyOf(onlineInventoryItemIds, capacity);
+        inStoreInventoryItemIds = Arrays.copyOf(inStoreInventoryItemIds, capacity);
+    }
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+
+    public String getSku(int i) { return skus[i]; }
+    public int getOrderQuantity(int i) { return orderQuantities[i]; }
+    public int getStockQuantity(int i) { return stockQuantities[i]; }
+    public long getSubtotal(int i) { return subtotals[i]; }
+    public String getSaleChannel(int i) { return saleChannels[i]; }
+    public int getOnlineInventoryItemId(int i) { return onlineInventoryItemIds[i]; }
+    public int getInStoreInventoryItemId(int i) { return inStoreInventoryItemIds[i]; }
+}
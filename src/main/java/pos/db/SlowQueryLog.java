@@ -0,0 +1,334 @@
+package pos.db;
+
+import pos.log.Log;
+import pos.log.Logger;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Slow statement capture for the DAO layer, off unless -Dpos.db.slowQueryMs is set.
+ *
+ * InstrumentedConnection reports every statement execution here with its SQL, time and DAO method.
+ * Executions are aggregated by SQL fingerprint (whitespace collapsed, literals and IN lists replaced
+ * by ?), so "WHERE sku IN (?, ?, ?)" from every cart size ends up in one entry. The first time a
+ * fingerprint takes -Dpos.db.slowQueryMs or longer, its EXPLAIN output is captured with the same
+ * parameters, on a separate connection and a background thread, so the slow caller doesn't wait
+ * for it (-Dpos.db.explain=false turns EXPLAIN off). Only SELECT, UPDATE and DELETE are explained;
+ * EXPLAIN doesn't run or modify anything.
+ *
+ * report() lists the fingerprints with slow executions, worst total first. shutdown() writes it to
+ * -Dpos.db.slowQueryReport (default slow_queries.txt). See SLOW_QUERIES.md and mysql_indexes.sql.
+ */
+public final class SlowQueryLog {
+    private static final Logger log = Log.get(SlowQueryLog.class);
+
+    private static final long THRESHOLD_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("pos.db.slowQueryMs", -1L));
+    private static final boolean ENABLED = THRESHOLD_NANOS >= 0;
+    private static final boolean EXPLAIN = !"false".equalsIgnoreCase(System.getProperty("pos.db.explain"));
+    private static final String REPORT_FILE = System.getProperty("pos.db.slowQueryReport", "slow_queries.txt");
+    private static final int MAX_FINGERPRINT_CACHE = 2000;
+    private static final int MAX_CALLERS = 5;
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^'\\\\]|\\\\.|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.])-?\\d+(?:\\.\\d+)?(?![\\w.])");
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bIN\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern VALUES_LIST = Pattern.compile("(\\([?,\\s]+\\))(?:\\s*,\\s*\\([?,\\s]+\\))+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern FOR_UPDATE = Pattern.compile("(?i)\\s+FOR\\s+UPDATE\\s*$");
+
+    private static final ConcurrentHashMap<String, String> fingerprints = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private static ThreadPoolExecutor explainer;
+
+    /**
+     * Everything recorded for one SQL fingerprint
+     */
+    public static class Entry {
+        public final String fingerprint;
+        final LongAdder executions = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final LongAdder slowExecutions = new LongAdder();
+        final LongAdder slowNanos = new LongAdder();
+        final AtomicLong maxNanos = new AtomicLong();
+        final Set<String> callers = ConcurrentHashMap.newKeySet();
+        final AtomicBoolean explainRequested = new AtomicBoolean();
+        volatile String sampleSql;
+        volatile String plan;
+
+        Entry(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        public long getExecutions() { return executions.sum(); }
+        public long getSlowExecutions() { return slowExecutions.sum(); }
+        public long getSlowNanos() { return slowNanos.sum(); }
+        public long getMaxNanos() { return maxNanos.get(); }
+        public String getPlan() { return plan; }
+    }
+
+    private SlowQueryLog() {}
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * One statement execution
+     * @param parameters PreparedStatement setter calls (setString(1, ...)), replayed for EXPLAIN; may be null
+     */
+    static void record(String sql, long nanos, String caller, Map<Integer, ParameterSetter> parameters) {
+        if (sql == null) {
+            return;
+        }
+        String fingerprint = fingerprint(sql);
+        Entry entry = entries.computeIfAbsent(fingerprint, Entry::new);
+        entry.executions.increment();
+        entry.totalNanos.add(nanos);
+        entry.maxNanos.accumulateAndGet(nanos, Math::max);
+        if (nanos < THRESHOLD_NANOS) {
+            return;
+        }
+        entry.slowExecutions.increment();
+        entry.slowNanos.add(nanos);
+        if (entry.callers.size() < MAX_CALLERS) {
+            entry.callers.add(caller);
+        }
+        if (entry.explainRequested.compareAndSet(false, true)) {
+            entry.sampleSql = sql;
+            log.warn("slowQuery", "caller", caller, "ms", nanos / 1_000_000, "sql", abbreviate(fingerprint, 200));
+            if (EXPLAIN && isExplainable(sql)) {
+                Map<Integer, ParameterSetter> copy = parameters != null ? Map.copyOf(parameters) : Map.of();
+                submitExplain(entry, sql, copy);
+            }
+        } else {
+            log.debug("slowQuery", "caller", caller, "ms", nanos / 1_000_000);
+        }
+    }
+
+    /**
+     * A recorded PreparedStatement setter call
+     */
+    static final class ParameterSetter {
+        final Method method;
+        final Object[] args;
+
+        ParameterSetter(Method method, Object[] args) {
+            this.method = method;
+            this.args = args.clone();
+        }
+
+        void applyTo(PreparedStatement statement) throws SQLException {
+            try {
+                method.invoke(statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause() instanceof SQLException ? (SQLException) e.getCause() : new SQLException(e.getCause());
+            } catch (IllegalAccessException e) {
+                throw new SQLException(e);
+            }
+        }
+    }
+
+    /**
+     * SQL with whitespace collapsed and literals, IN lists and multi-row VALUES replaced
+     */
+    public static String fingerprint(String sql) {
+        String cached = fingerprints.get(sql);
+        if (cached != null) {
+            return cached;
+        }
+        String fp = STRING_LITERAL.matcher(sql).replaceAll("?");
+        fp = NUMBER_LITERAL.matcher(fp).replaceAll("?");
+        fp = WHITESPACE.matcher(fp).replaceAll(" ").trim();
+        fp = IN_LIST.matcher(fp).replaceAll("IN (?+)");
+        fp = VALUES_LIST.matcher(fp).replaceAll("$1, ...");
+        if (fingerprints.size() < MAX_FINGERPRINT_CACHE) {
+            fingerprints.put(sql, fp);
+        }
+        return fp;
+    }
+
+    private static boolean isExplainable(String sql) {
+        String head = sql.stripLeading();
+        while (head.startsWith("(")) {
+            head = head.substring(1).stripLeading();
+        }
+        String keyword = head.length() >= 6 ? head.substring(0, 6).toUpperCase(Locale.ROOT) : "";
+        return keyword.equals("SELECT") || keyword.equals("UPDATE") || keyword.equals("DELETE");
+    }
+
+    private static synchronized void submitExplain(Entry entry, String sql, Map<Integer, ParameterSetter> parameters) {
+        if (explainer == null) {
+            explainer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(64), runnable -> {
+                Thread thread = new Thread(runnable, "slow-query-explain");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }, new ThreadPoolExecutor.DiscardPolicy());
+        }
+        explainer.execute(() -> entry.plan = explain(sql, parameters));
+    }
+
+    /**
+     * EXPLAIN output as text, on a plain (uninstrumented) connection
+     */
+    private static String explain(String sql, Map<Integer, ParameterSetter> parameters) {
+        String explainSql = "EXPLAIN " + FOR_UPDATE.matcher(sql.strip()).replaceFirst("");
+        try (Connection conn = DBConnection.getDataSource().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(explainSql)) {
+            for (ParameterSetter setter : parameters.values()) {
+                setter.applyTo(stmt);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                return formatResultSet(rs);
+            }
+        } catch (SQLException e) {
+            return "EXPLAIN failed: " + e.getMessage();
+        }
+    }
+
+    private static String formatResultSet(ResultSet rs) throws SQLException {
+        ResultSetMetaData meta = rs.getMetaData();
+        int columns = meta.getColumnCount();
+        List<String[]> rows = new ArrayList<>();
+        String[] header = new String[columns];
+        for (int i = 0; i < columns; i++) {
+            header[i] = meta.getColumnLabel(i + 1);
+        }
+        rows.add(header);
+        while (rs.next()) {
+            String[] row = new String[columns];
+            for (int i = 0; i < columns; i++) {
+                row[i] = String.valueOf(rs.getString(i + 1));
+            }
+            rows.add(row);
+        }
+        // Single-column plans (H2) are printed as they are, tables get aligned columns
+        int[] widths = new int[columns];
+        for (String[] row : rows) {
+            for (int i = 0; i < columns; i++) {
+                widths[i] = Math.max(widths[i], row[i].length());
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        for (String[] row : rows) {
+            if (sb.length() > 0) sb.append('\n');
+            for (int i = 0; i < columns; i++) {
+                if (columns == 1) {
+                    sb.append(row[i]);
+                } else {
+                    sb.append(String.format("%-" + widths[i] + "s", row[i]));
+                    if (i < columns - 1) sb.append("  ");
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    public static List<Entry> slowEntries() {
+        List<Entry> slow = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (entry.getSlowExecutions() > 0) {
+                slow.add(entry);
+            }
+        }
+        slow.sort(Comparator.comparingLong(Entry::getSlowNanos).reversed());
+        return slow;
+    }
+
+    /**
+     * Text report of all fingerprints with slow executions, worst total slow time first
+     */
+    public static String report() {
+        List<Entry> slow = slowEntries();
+        StringBuilder sb = new StringBuilder();
+        sb.append("Slow statements (>= ").append(TimeUnit.NANOSECONDS.toMillis(THRESHOLD_NANOS)).append(" ms): ")
+          .append(slow.size()).append(" of ").append(entries.size()).append(" statement fingerprints\n");
+        int rank = 0;
+        for (Entry entry : slow) {
+            long executions = entry.getExecutions();
+            sb.append('\n').append('#').append(++rank).append(' ').append(String.join(", ", entry.callers)).append('\n')
+              .append("  slow ").append(entry.getSlowExecutions()).append(" of ").append(executions).append(" executions")
+              .append(", slow total ").append(millis(entry.getSlowNanos()))
+              .append(", max ").append(millis(entry.getMaxNanos()))
+              .append(", mean ").append(millis(executions == 0 ? 0 : entry.totalNanos.sum() / executions)).append('\n')
+              .append("  ").append(entry.fingerprint).append('\n');
+            String plan = entry.plan;
+            if (plan != null) {
+                sb.append("  EXPLAIN:\n");
+                for (String line : plan.split("\n")) {
+                    sb.append("    ").append(line).append('\n');
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    public static void writeReport(Path file) throws IOException {
+        Files.write(file, report().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Wait briefly for pending EXPLAINs and write the report file, if capture is on and anything was slow
+     */
+    public static void shutdown() {
+        if (!ENABLED) {
+            return;
+        }
+        ThreadPoolExecutor pending;
+        synchronized (SlowQueryLog.class) {
+            pending = explainer;
+            explainer = null;
+        }
+        if (pending != null) {
+            pending.shutdown();
+            try {
+                pending.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (slowEntries().isEmpty()) {
+            return;
+        }
+        try {
+            Path file = Paths.get(REPORT_FILE);
+            writeReport(file);
+            log.info("reportWritten", "file", file.toAbsolutePath(), "statements", slowEntries().size());
+        } catch (IOException e) {
+            log.warn("reportFailed", e, "file", REPORT_FILE);
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.1fms", nanos / 1e6);
+    }
+
+    private static String abbreviate(String text, int max) {
+        return text.length() <= max ? text : text.substring(0, max) + "...";
+    }
+}
@@ -1,5 +1,6 @@
 package pos.db;
 
+import pos.metrics.PosEvents;
 import pos.model.StockReservation;
 import java.sql.*;
 import java.util.ArrayList;
@@ -114,15 +115,31 @@ public class StockReservationDAO {
      */
     public static boolean upsertReservation(Connection conn, String transactionId, String sku, int quantity) 
             throws SQLException {
+        PosEvents.ReservationUpsert event = new PosEvents.ReservationUpsert();
+        event.begin();
+        event.sku = sku;
+        event.quantity = quantity;
+        event.outcome = "error";
+        try {
+            return upsertReservation(conn, transactionId, sku, quantity, event);
+        } finally {
+            event.commit();
+        }
+    }
+
+    private static boolean upsertReservation(Connection conn, String transactionId, String sku, int quantity,
+                                             PosEvents.ReservationUpsert event) throws SQLException {
         // Get inventory item info
         ProductDAO.InventoryItemInfo itemInfo = ProductDAO.getInventoryItemInfoBySku(conn, sku);
         if (itemInfo == null) {
+            event.outcome = "notFound";
             throw new SQLException("Product not found: " + sku);
         }
         
         // Check if stock is available (excluding own transaction)
         StockAvailability availability = checkAvailableStock(conn, sku, quantity, transactionId);
         if (!availability.isAvailable) {
+            event.outcome = "insufficientStock";
             throw new SQLException(availability.message);
         }
         
@@ -155,6 +172,7 @@ public class StockReservationDAO {
             
             // If UPDATE affected rows, we're done
             if (rowsUpdated > 0) {
+                event.outcome = "updated";
                 return true;
             }
         }
@@ -174,7 +192,9 @@ public class StockReservationDAO {
             insertStmt.setTimestamp(6, now);
             insertStmt.setTimestamp(7, expiresAt);
             
-            return insertStmt.executeUpdate() > 0;
+            boolean inserted = insertStmt.executeUpdate() > 0;
+            event.outcome = inserted ? "inserted" : "error";
+            return inserted;
         }
     }
     
@@ -0,0 +1,21 @@
+package pos.log;
+
+/**
+ * Destination for formatted log lines. Appenders are only called from the log writer thread
+ * (and from Log.shutdown() once that thread has stopped), so they need no locking of their own
+ * for append().
+ */
+public interface Appender {
+
+    /**
+     * Lowest level this appender wants
+     */
+    Level getLevel();
+
+    void append(Level level, String line);
+
+    /**
+     * Called after each batch of records
+     */
+    default void flush() {}
+}
@@ -0,0 +1,38 @@
+package pos.log;
+
+import java.io.PrintStream;
+
+/**
+ * Writes to stdout, WARN and ERROR to stderr - where the System.out/err output used to go.
+ */
+public final class ConsoleAppender implements Appender {
+    private final Level level;
+    private final PrintStream out;
+    private final PrintStream err;
+
+    public ConsoleAppender(Level level) {
+        this(level, System.out, System.err);
+    }
+
+    public ConsoleAppender(Level level, PrintStream out, PrintStream err) {
+        this.level = level;
+        this.out = out;
+        this.err = err;
+    }
+
+    @Override
+    public Level getLevel() {
+        return level;
+    }
+
+    @Override
+    public void append(Level level, String line) {
+        (level.ordinal() >= Level.WARN.ordinal() ? err : out).println(line);
+    }
+
+    @Override
+    public void flush() {
+        out.flush();
+        err.flush();
+    }
+}
@@ -0,0 +1,20 @@
+package pos.log;
+
+/**
+ * Log levels, lowest first. OFF is only used as a threshold.
+ */
+public enum Level {
+    TRACE, DEBUG, INFO, WARN, ERROR, OFF;
+
+    static Level parse(String value, Level fallback) {
+        if (value == null || value.isEmpty()) {
+            return fallback;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Warning: Unknown log level '" + value + "', using " + fallback);
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package pos.log;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous, level-filtered logging.
+ *
+ * Logger calls check the level and, if enabled, only queue a record (timestamp, thread, event,
+ * key/value pairs) - no formatting, no I/O and no locks on the caller's thread, so logging from
+ * the FX thread can't stall the UI. A daemon thread formats the records as
+ *
+ *   14:03:07.412 DEBUG [JavaFX Application Thread] POSView productUpdated sku=1000042 stock=7
+ *
+ * and hands them to the console and ring buffer appenders. If the queue is full (-Dpos.log.queueSize,
+ * default 10000) records are dropped and counted instead of blocking; the count is logged later.
+ *
+ * Configuration:
+ *   -Dpos.log.level=INFO              level of all loggers (TRACE, DEBUG, INFO, WARN, ERROR, OFF)
+ *   -Dpos.log.level.POSView=DEBUG     level of one logger (the class's simple name)
+ *   -Dpos.log.consoleLevel=TRACE      lowest level printed to the console
+ *   -Dpos.log.ringLevel=TRACE         lowest level kept in the ring buffer
+ *   -Dpos.log.ringSize=500            lines kept in the ring buffer
+ */
+public final class Log {
+    private static final long FLUSH_INTERVAL_MS = 100;
+    private static final int BATCH_SIZE = 256;
+    private static final int QUEUE_CAPACITY = Integer.getInteger("pos.log.queueSize", 10_000);
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    private static final Level ROOT_LEVEL = Level.parse(System.getProperty("pos.log.level"), Level.INFO);
+    private static final ConsoleAppender CONSOLE = new ConsoleAppender(Level.parse(System.getProperty("pos.log.consoleLevel"), Level.TRACE));
+    private static final RingBufferAppender RING = new RingBufferAppender(Level.parse(System.getProperty("pos.log.ringLevel"), Level.TRACE),
+        Integer.getInteger("pos.log.ringSize", 500));
+
+    private static final ConcurrentHashMap<String, Logger> loggers = new ConcurrentHashMap<>();
+    private static final ConcurrentLinkedQueue<Record> queue = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger queued = new AtomicInteger();
+    private static final AtomicLong dropped = new AtomicLong();
+
+    private static volatile boolean running = true;
+    private static final Thread worker;
+
+    static {
+        worker = new Thread(Log::runLoop, "log-writer");
+        worker.setDaemon(true);
+        worker.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::shutdown, "log-shutdown"));
+    }
+
+    /**
+     * One queued log call; formatted on the writer thread
+     */
+    private static final class Record {
+        final long time;
+        final Level level;
+        final Logger logger;
+        final String thread;
+        final String event;
+        final Throwable error;
+        final Object[] keyValues;
+
+        Record(Level level, Logger logger, String event, Throwable error, Object[] keyValues) {
+            this.time = System.currentTimeMillis();
+            this.level = level;
+            this.logger = logger;
+            this.thread = Thread.currentThread().getName();
+            this.event = event;
+            this.error = error;
+            this.keyValues = keyValues;
+        }
+    }
+
+    private Log() {}
+
+    public static Logger get(Class<?> type) {
+        return get(type.getSimpleName());
+    }
+
+    public static Logger get(String name) {
+        Logger logger = loggers.get(name);
+        return logger != null ? logger : loggers.computeIfAbsent(name, n -> new Logger(n, configuredLevel(n)));
+    }
+
+    /**
+     * Change a logger's level at runtime (null goes back to the configured level)
+     */
+    public static void setLevel(String name, Level level) {
+        get(name).setThreshold(level != null ? level : configuredLevel(name));
+    }
+
+    /**
+     * Contents of the ring buffer, oldest first. Records still queued are not included.
+     */
+    public static List<String> recent() {
+        return RING.recent();
+    }
+
+    public static long droppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Stop the writer thread after writing everything queued; later records are written directly
+     */
+    public static void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(worker);
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(2));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Level configuredLevel(String name) {
+        return Level.parse(System.getProperty("pos.log.level." + name), ROOT_LEVEL);
+    }
+
+    static void enqueue(Logger logger, Level level, String event, Throwable error, Object[] keyValues) {
+        Record record = new Record(level, logger, event, error, keyValues);
+        if (!running) {
+            synchronized (Log.class) {
+                write(record);
+                flushAppenders();
+            }
+            return;
+        }
+        if (queued.incrementAndGet() > QUEUE_CAPACITY) {
+            queued.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+        queue.offer(record);
+        if (level.ordinal() >= Level.WARN.ordinal()) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    private static void runLoop() {
+        long reportedDrops = 0;
+        while (running || !queue.isEmpty()) {
+            if (running && queue.isEmpty()) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MS));
+            }
+            synchronized (Log.class) {
+                Record record;
+                int written = 0;
+                while ((record = queue.poll()) != null) {
+                    queued.decrementAndGet();
+                    write(record);
+                    if (++written >= BATCH_SIZE) {
+                        flushAppenders();
+                        written = 0;
+                    }
+                }
+                long drops = dropped.get();
+                if (drops != reportedDrops) {
+                    write(new Record(Level.WARN, get(Log.class), "log.dropped", null,
+                        new Object[] {"records", drops - reportedDrops, "queueSize", QUEUE_CAPACITY}));
+                    reportedDrops = drops;
+                }
+                flushAppenders();
+            }
+        }
+    }
+
+    private static void write(Record record) {
+        boolean toConsole = record.level.ordinal() >= CONSOLE.getLevel().ordinal();
+        boolean toRing = record.level.ordinal() >= RING.getLevel().ordinal();
+        if (!toConsole && !toRing) {
+            return;
+        }
+        String line;
+        try {
+            line = format(record);
+        } catch (RuntimeException e) {
+            // A toString() that throws must not kill the writer
+            line = TIME.format(Instant.ofEpochMilli(record.time)) + " " + record.level + " " + record.logger.getName()
+                + " " + record.event + " (formatting failed: " + e + ")";
+        }
+        if (toConsole && record.level == Level.ERROR && RING.getLevel().ordinal() < CONSOLE.getLevel().ordinal()) {
+            // Show what led up to the error, which was only kept in memory
+            List<String> context = RING.recent(CONSOLE.getLevel());
+            if (!context.isEmpty()) {
+                CONSOLE.append(Level.ERROR, "---- " + context.size() + " recent log lines before the error ----");
+                for (String previous : context) {
+                    CONSOLE.append(Level.ERROR, "  | " + previous);
+                }
+            }
+        }
+        if (toRing) {
+            RING.append(record.level, line);
+        }
+        if (toConsole) {
+            CONSOLE.append(record.level, line);
+        }
+    }
+
+    private static void flushAppenders() {
+        CONSOLE.flush();
+        RING.flush();
+    }
+
+    static String format(Record record) {
+        StringBuilder sb = new StringBuilder(128);
+        sb.append(TIME.format(Instant.ofEpochMilli(record.time))).append(' ');
+        String level = record.level.name();
+        sb.append(level);
+        for (int i = level.length(); i < 5; i++) sb.append(' ');
+        sb.append(" [").append(record.thread).append("] ")
+          .append(record.logger.getName()).append(' ')
+          .append(record.event);
+        Object[] kv = record.keyValues;
+        if (kv != null) {
+            for (int i = 0; i + 1 < kv.length; i += 2) {
+                sb.append(' ').append(kv[i]).append('=');
+                appendValue(sb, kv[i + 1]);
+            }
+            if (kv.length % 2 != 0) {
+                sb.append(' ');
+                appendValue(sb, kv[kv.length - 1]);
+            }
+        }
+        if (record.error != null) {
+            sb.append(" error=");
+            appendValue(sb, String.valueOf(record.error));
+            if (record.level.ordinal() >= Level.ERROR.ordinal()) {
+                StringWriter trace = new StringWriter();
+                record.error.printStackTrace(new PrintWriter(trace));
+                sb.append(System.lineSeparator()).append(trace.toString().stripTrailing());
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Values with spaces, quotes or '=' are quoted so lines stay splittable on spaces
+     */
+    private static void appendValue(StringBuilder sb, Object value) {
+        String text = String.valueOf(value);
+        boolean quote = text.isEmpty();
+        for (int i = 0; i < text.length() && !quote; i++) {
+            char c = text.charAt(i);
+            quote = c == ' ' || c == '"' || c == '=' || c < 0x20;
+        }
+        if (!quote) {
+            sb.append(text);
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') sb.append('\\').append(c);
+            else if (c == '\n') sb.append("\\n");
+            else if (c < 0x20) sb.append(' ');
+            else sb.append(c);
+        }
+        sb.append('"');
+    }
+}
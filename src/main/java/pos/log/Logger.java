@@ -0,0 +1,131 @@
+package pos.log;
+
+import java.util.function.Supplier;
+
+/**
+ * Named logger; get one with Log.get(SomeClass.class).
+ *
+ * Records are structured: an event name plus key/value pairs, e.g.
+ *   log.debug("productUpdated", "sku", sku, "qty", qty);
+ * The level is checked before anything else, and formatting happens on the log writer thread,
+ * so a disabled call costs one comparison (plus boxing of primitive arguments). The fixed-arity
+ * overloads avoid the varargs array; with more pairs, or with arguments that are expensive to
+ * compute, guard the call with isDebugEnabled() or pass a Supplier.
+ */
+public final class Logger {
+    private final String name;
+    private volatile int threshold;
+
+    Logger(String name, Level threshold) {
+        this.name = name;
+        this.threshold = threshold.ordinal();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    void setThreshold(Level level) {
+        this.threshold = level.ordinal();
+    }
+
+    public boolean isEnabled(Level level) {
+        return level.ordinal() >= threshold;
+    }
+
+    public boolean isTraceEnabled() {
+        return Level.TRACE.ordinal() >= threshold;
+    }
+
+    public boolean isDebugEnabled() {
+        return Level.DEBUG.ordinal() >= threshold;
+    }
+
+    public boolean isInfoEnabled() {
+        return Level.INFO.ordinal() >= threshold;
+    }
+
+    // TRACE
+
+    public void trace(String event) {
+        if (isTraceEnabled()) Log.enqueue(this, Level.TRACE, event, null, null);
+    }
+
+    public void trace(String event, String k1, Object v1) {
+        if (isTraceEnabled()) Log.enqueue(this, Level.TRACE, event, null, new Object[] {k1, v1});
+    }
+
+    public void trace(String event, String k1, Object v1, String k2, Object v2) {
+        if (isTraceEnabled()) Log.enqueue(this, Level.TRACE, event, null, new Object[] {k1, v1, k2, v2});
+    }
+
+    public void trace(Supplier<String> message) {
+        if (isTraceEnabled()) Log.enqueue(this, Level.TRACE, message.get(), null, null);
+    }
+
+    // DEBUG
+
+    public void debug(String event) {
+        if (isDebugEnabled()) Log.enqueue(this, Level.DEBUG, event, null, null);
+    }
+
+    public void debug(String event, String k1, Object v1) {
+        if (isDebugEnabled()) Log.enqueue(this, Level.DEBUG, event, null, new Object[] {k1, v1});
+    }
+
+    public void debug(String event, String k1, Object v1, String k2, Object v2) {
+        if (isDebugEnabled()) Log.enqueue(this, Level.DEBUG, event, null, new Object[] {k1, v1, k2, v2});
+    }
+
+    public void debug(String event, String k1, Object v1, String k2, Object v2, String k3, Object v3) {
+        if (isDebugEnabled()) Log.enqueue(this, Level.DEBUG, event, null, new Object[] {k1, v1, k2, v2, k3, v3});
+    }
+
+    public void debug(String event, Object... keyValues) {
+        if (isDebugEnabled()) Log.enqueue(this, Level.DEBUG, event, null, keyValues);
+    }
+
+    public void debug(Supplier<String> message) {
+        if (isDebugEnabled()) Log.enqueue(this, Level.DEBUG, message.get(), null, null);
+    }
+
+    // INFO
+
+    public void info(String event) {
+        if (isInfoEnabled()) Log.enqueue(this, Level.INFO, event, null, null);
+    }
+
+    public void info(String event, String k1, Object v1) {
+        if (isInfoEnabled()) Log.enqueue(this, Level.INFO, event, null, new Object[] {k1, v1});
+    }
+
+    public void info(String event, String k1, Object v1, String k2, Object v2) {
+        if (isInfoEnabled()) Log.enqueue(this, Level.INFO, event, null, new Object[] {k1, v1, k2, v2});
+    }
+
+    public void info(String event, String k1, Object v1, String k2, Object v2, String k3, Object v3) {
+        if (isInfoEnabled()) Log.enqueue(this, Level.INFO, event, null, new Object[] {k1, v1, k2, v2, k3, v3});
+    }
+
+    public void info(String event, Object... keyValues) {
+        if (isInfoEnabled()) Log.enqueue(this, Level.INFO, event, null, keyValues);
+    }
+
+    // WARN and ERROR are rare enough that varargs don't matter
+
+    public void warn(String event, Object... keyValues) {
+        if (isEnabled(Level.WARN)) Log.enqueue(this, Level.WARN, event, null, keyValues);
+    }
+
+    public void warn(String event, Throwable error, Object... keyValues) {
+        if (isEnabled(Level.WARN)) Log.enqueue(this, Level.WARN, event, error, keyValues);
+    }
+
+    public void error(String event, Object... keyValues) {
+        if (isEnabled(Level.ERROR)) Log.enqueue(this, Level.ERROR, event, null, keyValues);
+    }
+
+    public void error(String event, Throwable error, Object... keyValues) {
+        if (isEnabled(Level.ERROR)) Log.enqueue(this, Level.ERROR, event, error, keyValues);
+    }
+}
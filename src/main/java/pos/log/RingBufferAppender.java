@@ -0,0 +1,64 @@
+package pos.log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps the last N lines in memory. With -Dpos.log.level=DEBUG -Dpos.log.consoleLevel=INFO it holds
+ * the recent debug output that was not printed; Log dumps those lines to stderr when an ERROR is
+ * logged, and Log.recent() returns the whole buffer for support tools.
+ */
+public final class RingBufferAppender implements Appender {
+    private final Level level;
+    private final String[] lines;
+    private final Level[] levels;
+    private long written;
+
+    public RingBufferAppender(Level level, int size) {
+        this.level = level;
+        this.lines = new String[Math.max(1, size)];
+        this.levels = new Level[lines.length];
+    }
+
+    @Override
+    public Level getLevel() {
+        return level;
+    }
+
+    @Override
+    public synchronized void append(Level level, String line) {
+        int slot = (int) (written % lines.length);
+        lines[slot] = line;
+        levels[slot] = level;
+        written++;
+    }
+
+    /**
+     * Buffered lines, oldest first
+     */
+    public List<String> recent() {
+        return recent(Level.OFF);
+    }
+
+    /**
+     * Buffered lines below the given level, oldest first
+     */
+    public synchronized List<String> recent(Level below) {
+        int count = (int) Math.min(written, lines.length);
+        List<String> result = new ArrayList<>(count);
+        for (long i = written - count; i < written; i++) {
+            int slot = (int) (i % lines.length);
+            if (levels[slot].ordinal() < below.ordinal()) {
+                result.add(lines[slot]);
+            }
+        }
+        return result;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(lines, null);
+        Arrays.fill(levels, null);
+        written = 0;
+    }
+}
@@ -0,0 +1,172 @@
+package pos.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with log-linear buckets (the HdrHistogram layout, simplified).
+ * Values are nanoseconds. Below 64 ns every value has its own bucket; above that each power of two
+ * is split into 32 buckets, so any recorded value is reported within about 3%. Values up to about
+ * 18 minutes are kept; longer ones land in the last bucket (the exact maximum is still tracked).
+ *
+ * record() is a couple of atomic increments, cheap enough for every DAO call and every scan.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;      // 32 per power of two
+    private static final int LINEAR_LIMIT = SUB_BUCKETS * 2;          // 0..63 ns one bucket each
+    private static final int MAX_MAGNITUDE = 40;                      // 2^40 ns ~ 18 min
+    private static final int BUCKETS = LINEAR_LIMIT + (MAX_MAGNITUDE - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(bucketOf(nanos));
+        count.incrementAndGet();
+        sum.addAndGet(nanos);
+        long current = max.get();
+        while (nanos > current && !max.compareAndSet(current, nanos)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Record the time since startNanos (from System.nanoTime()) and return the current time,
+     * so consecutive stages can be timed with one variable
+     */
+    public long recordSince(long startNanos) {
+        long now = System.nanoTime();
+        record(now - startNanos);
+        return now;
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new Snapshot(copy, count.get(), sum.get(), max.get());
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    static int bucketOf(long nanos) {
+        if (nanos < LINEAR_LIMIT) {
+            return (int) nanos;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(nanos);
+        if (magnitude >= MAX_MAGNITUDE) {
+            return BUCKETS - 1;
+        }
+        int shift = magnitude - SUB_BUCKET_BITS;
+        int sub = (int) (nanos >>> shift) - SUB_BUCKETS;
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Middle of the value range a bucket covers
+     */
+    static long valueOf(int bucket) {
+        if (bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+        int shift = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+        long sub = (bucket - LINEAR_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+        return (sub << shift) + (1L << (shift - 1));
+    }
+
+    /**
+     * Point-in-time copy of a histogram. Snapshots can be subtracted to get the values recorded
+     * between two points in time (the periodic log line does that).
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max; // exact for a whole-histogram snapshot, bucket-based for a difference
+
+        private Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMaxNanos() {
+            return max;
+        }
+
+        public double getMeanNanos() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * Value at a quantile, e.g. 0.99 for p99; 0 when empty
+         */
+        public long getValueAt(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(valueOf(i), max);
+                }
+            }
+            return max;
+        }
+
+        /**
+         * What was recorded after the earlier snapshot was taken. If the histogram was reset in
+         * between, this snapshot (everything since the reset) is returned, and no bucket, count or
+         * sum ever goes negative.
+         */
+        public Snapshot minus(Snapshot earlier) {
+            if (count < earlier.count) {
+                return this;
+            }
+            long[] diff = new long[counts.length];
+            int highest = -1;
+            for (int i = 0; i < counts.length; i++) {
+                diff[i] = Math.max(0, counts[i] - earlier.counts[i]);
+                if (diff[i] > 0) highest = i;
+            }
+            long intervalMax = highest < 0 ? 0 : Math.min(valueOf(highest), max);
+            return new Snapshot(diff, count - earlier.count, Math.max(0, sum - earlier.sum), intervalMax);
+        }
+
+        static Snapshot empty() {
+            return new Snapshot(new long[BUCKETS], 0, 0, 0);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package pos.metrics;
+
+import pos.log.Log;
+import pos.log.Logger;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide registry of latency histograms and counters.
+ *
+ * Names are dotted: "db.ProductDAO.getAllActiveProducts" (recorded by InstrumentedConnection for
+ * every statement a DAO method runs), "scan.toCart", "checkout.*" stages, "receipt.render",
+ * "poll.products" and so on. Histograms and counters are created on first use and never removed.
+ *
+ * start() registers the JMX MBean pos:type=Metrics (browse it with jconsole/VisualVM) and, every
+ * -Dpos.metrics.logSeconds (default 60, 0 = off), prints one compact line with what was recorded
+ * in that interval. -Dpos.metrics=false turns the DAO instrumentation and the reporter off;
+ * explicit timers still record, they are just never reported.
+ */
+public final class Metrics {
+    private static final Logger log = Log.get(Metrics.class);
+    public static final String JMX_NAME = "pos:type=Metrics";
+
+    private static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("pos.metrics"));
+    private static final long LOG_SECONDS = Long.getLong("pos.metrics.logSeconds", 60L);
+
+    private static final ConcurrentHashMap<String, LatencyHistogram> timers = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Boolean> dbUntracked = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private static ScheduledExecutorService reporter;
+    private static ObjectName registeredName;
+
+    private Metrics() {}
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * False while the current thread is marked with setDbTracked(false)
+     */
+    public static boolean isDbTracked() {
+        return !dbUntracked.get();
+    }
+
+    /**
+     * Keep the current thread's database calls out of the db.* metrics (and the slow query log),
+     * e.g. the warm-up's throw-away queries; pass true again to restore
+     */
+    public static void setDbTracked(boolean tracked) {
+        if (tracked) {
+            dbUntracked.remove();
+        } else {
+            dbUntracked.set(Boolean.TRUE);
+        }
+    }
+
+    public static LatencyHistogram timer(String name) {
+        LatencyHistogram timer = timers.get(name);
+        return timer != null ? timer : timers.computeIfAbsent(name, LatencyHistogram::new);
+    }
+
+    public static LongAdder counter(String name) {
+        LongAdder counter = counters.get(name);
+        return counter != null ? counter : counters.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    /**
+     * Record the time since startNanos (from System.nanoTime()) under name
+     */
+    public static void recordSince(String name, long startNanos) {
+        timer(name).record(System.nanoTime() - startNanos);
+    }
+
+    public static void increment(String name) {
+        counter(name).increment();
+    }
+
+    /**
+     * Register the JMX MBean and start the periodic log line (idempotent)
+     */
+    public static synchronized void start() {
+        if (!ENABLED || reporter != null) {
+            return;
+        }
+        try {
+            ObjectName name = new ObjectName(JMX_NAME);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsJmx(), name);
+            registeredName = name;
+        } catch (Exception e) {
+            log.warn("mbeanRegistrationFailed", e, "name", JMX_NAME);
+        }
+        reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (LOG_SECONDS > 0) {
+            IntervalReport report = new IntervalReport();
+            reporter.scheduleAtFixedRate(() -> {
+                String line = report.next();
+                if (line != null) {
+                    log.info("interval", "seconds", LOG_SECONDS, "metrics", line);
+                }
+            }, LOG_SECONDS, LOG_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Stop the reporter and unregister the MBean; the recorded values are kept
+     */
+    public static synchronized void shutdown() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+        if (registeredName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+            } catch (Exception ignored) {
+                // Already gone
+            }
+            registeredName = null;
+        }
+    }
+
+    static Map<String, LatencyHistogram> timersByName() {
+        return new TreeMap<>(timers);
+    }
+
+    static Map<String, LongAdder> countersByName() {
+        return new TreeMap<>(counters);
+    }
+
+    static void resetAll() {
+        timers.values().forEach(LatencyHistogram::reset);
+        counters.values().forEach(LongAdder::reset);
+    }
+
+    /**
+     * Log the session totals from summary(), one INFO "total" record per timer or counter
+     */
+    public static void logSummary() {
+        for (String line : summary().split("\n")) {
+            if (!line.isEmpty()) {
+                log.info("total", "metric", line);
+            }
+        }
+    }
+
+    /**
+     * Everything recorded so far, one line per histogram/counter, for the MBean and for tools
+     */
+    public static String summary() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, LatencyHistogram> entry : timersByName().entrySet()) {
+            LatencyHistogram.Snapshot s = entry.getValue().snapshot();
+            if (s.getCount() == 0) continue;
+            sb.append(entry.getKey()).append(' ');
+            appendStats(sb, s);
+            sb.append(" mean=").append(formatNanos((long) s.getMeanNanos())).append('\n');
+        }
+        for (Map.Entry<String, LongAdder> entry : countersByName().entrySet()) {
+            sb.append(entry.getKey()).append(' ').append(entry.getValue().sum()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    static void appendStats(StringBuilder sb, LatencyHistogram.Snapshot s) {
+        sb.append("n=").append(s.getCount())
+          .append(" p50=").append(formatNanos(s.getValueAt(0.50)))
+          .append(" p99=").append(formatNanos(s.getValueAt(0.99)))
+          .append(" max=").append(formatNanos(s.getMaxNanos()));
+    }
+
+    static String formatNanos(long nanos) {
+        if (nanos < 1_000_000) {
+            return (nanos / 1000) + "us";
+        }
+        if (nanos < 10_000_000_000L) {
+            return String.format("%.1fms", nanos / 1e6);
+        }
+        return String.format("%.1fs", nanos / 1e9);
+    }
+
+    /**
+     * Differences since the previous call, for the periodic log line
+     */
+    private static final class IntervalReport {
+        private final Map<String, LatencyHistogram.Snapshot> lastTimers = new ConcurrentHashMap<>();
+        private final Map<String, Long> lastCounters = new ConcurrentHashMap<>();
+
+        String next() {
+            StringBuilder sb = new StringBuilder();
+            for (Map.Entry<String, LatencyHistogram> entry : timersByName().entrySet()) {
+                LatencyHistogram.Snapshot now = entry.getValue().snapshot();
+                LatencyHistogram.Snapshot before = lastTimers.getOrDefault(entry.getKey(), LatencyHistogram.Snapshot.empty());
+                lastTimers.put(entry.getKey(), now);
+                LatencyHistogram.Snapshot interval = now.minus(before);
+                if (interval.getCount() <= 0) continue;
+                if (sb.length() > 0) sb.append(" | ");
+                sb.append(entry.getKey()).append(' ');
+                appendStats(sb, interval);
+            }
+            for (Map.Entry<String, LongAdder> entry : countersByName().entrySet()) {
+                long now = entry.getValue().sum();
+                long delta = now - lastCounters.getOrDefault(entry.getKey(), 0L);
+                lastCounters.put(entry.getKey(), now);
+                if (delta == 0) continue;
+                if (sb.length() > 0) sb.append(" | ");
+                sb.append(entry.getKey()).append(" +").append(delta);
+            }
+            return sb.length() == 0 ? null : sb.toString();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package pos.metrics;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.ReflectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * JMX view of the metrics registry (pos:type=Metrics).
+ * Each histogram shows up as <name>.count, .p50Ms, .p99Ms, .p999Ms, .maxMs and .meanMs, each counter
+ * as <name>. The attribute list follows the registry, so reconnect to see metrics created since.
+ * Operations: summary() returns all of it as text, reset() clears everything.
+ */
+final class MetricsJmx implements DynamicMBean {
+    private static final String[] STATS = {"count", "p50Ms", "p99Ms", "p999Ms", "maxMs", "meanMs"};
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        LongAdder counter = Metrics.countersByName().get(attribute);
+        if (counter != null) {
+            return counter.sum();
+        }
+        int dot = attribute.lastIndexOf('.');
+        if (dot > 0) {
+            LatencyHistogram timer = Metrics.timersByName().get(attribute.substring(0, dot));
+            if (timer != null) {
+                LatencyHistogram.Snapshot s = timer.snapshot();
+                switch (attribute.substring(dot + 1)) {
+                    case "count": return s.getCount();
+                    case "p50Ms": return s.getValueAt(0.50) / 1e6;
+                    case "p99Ms": return s.getValueAt(0.99) / 1e6;
+                    case "p999Ms": return s.getValueAt(0.999) / 1e6;
+                    case "maxMs": return s.getMaxNanos() / 1e6;
+                    case "meanMs": return s.getMeanNanos() / 1e6;
+                    default: break;
+                }
+            }
+        }
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for (String name : attributes) {
+            try {
+                list.add(new Attribute(name, getAttribute(name)));
+            } catch (AttributeNotFoundException ignored) {
+                // Left out, as the JMX contract allows
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        switch (actionName) {
+            case "summary":
+                return Metrics.summary();
+            case "reset":
+                Metrics.resetAll();
+                return null;
+            default:
+                throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        for (String name : Metrics.timersByName().keySet()) {
+            for (String stat : STATS) {
+                String type = "count".equals(stat) ? "long" : "double";
+                attributes.add(new MBeanAttributeInfo(name + "." + stat, type, stat + " of " + name, true, false, false));
+            }
+        }
+        for (Map.Entry<String, LongAdder> entry : Metrics.countersByName().entrySet()) {
+            attributes.add(new MBeanAttributeInfo(entry.getKey(), "long", "Counter", true, false, false));
+        }
+        MBeanOperationInfo[] operations = {
+            new MBeanOperationInfo("summary", "All histograms and counters as text",
+                new MBeanParameterInfo[0], "java.lang.String", MBeanOperationInfo.INFO),
+            new MBeanOperationInfo("reset", "Clear all histograms and counters",
+                new MBeanParameterInfo[0], "void", MBeanOperationInfo.ACTION)
+        };
+        return new MBeanInfo(getClass().getName(), "POS latency histograms and counters",
+            attributes.toArray(new MBeanAttributeInfo[0]), null, operations, null);
+    }
+}
@@ -0,0 +1,189 @@
+package pos.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder events for POS operations, so a recording shows scans, reservations,
+ * checkouts, receipts and returns next to GC pauses, JDBC socket reads and thread activity.
+ * They are recorded when a recording is running, e.g.
+ *
+ *   java -XX:StartFlightRecording:filename=pos.jfr,settings=profile ...
+ *   jcmd <pid> JFR.start duration=10m filename=pos.jfr
+ *
+ * and show up under "POS" in JDK Mission Control (or: jfr print --categories POS pos.jfr).
+ * Without a recording, begin()/commit() cost next to nothing. Stack traces are off: the event
+ * name and fields already say where it came from.
+ *
+ * Outcomes are short fixed strings ("ok", "notFound", "insufficientStock", "error", ...) so they
+ * can be grouped on.
+ */
+public final class PosEvents {
+
+    private PosEvents() {}
+
+    @Name("pos.Scan")
+    @Label("Barcode Scan")
+    @Category({"POS", "Cart"})
+    @Description("Barcode or SKU entered in the search field, until the item is in the cart")
+    @StackTrace(false)
+    public static class Scan extends Event {
+        @Label("SKU")
+        public String sku;
+
+        @Label("Outcome")
+        public String outcome;
+    }
+
+    @Name("pos.ReservationUpsert")
+    @Label("Reservation Upsert")
+    @Category({"POS", "Cart"})
+    @Description("Stock check and reservation of a cart line")
+    @StackTrace(false)
+    public static class ReservationUpsert extends Event {
+        @Label("SKU")
+        public String sku;
+
+        @Label("Quantity")
+        public int quantity;
+
+        @Label("Outcome")
+        @Description("updated, inserted, notFound, insufficientStock or error")
+        public String outcome;
+    }
+
+    @Name("pos.CatalogPoll")
+    @Label("Catalog Poll")
+    @Category({"POS", "Catalog"})
+    @Description("Query for products changed since the last poll")
+    @StackTrace(false)
+    public static class CatalogPoll extends Event {
+        @Label("Changed Rows")
+        public int changedRows;
+
+        @Label("Outcome")
+        public String outcome;
+    }
+
+    @Name("pos.CatalogDiff")
+    @Label("Catalog Diff")
+    @Category({"POS", "Catalog"})
+    @Description("Hash-based comparison of polled products with the catalog shown")
+    @StackTrace(false)
+    public static class CatalogDiff extends Event {
+        @Label("Rows Compared")
+        public int rows;
+
+        @Label("New Products")
+        public int newProducts;
+
+        @Label("Modified Products")
+        public int modifiedProducts;
+
+        @Label("Archived Products")
+        public int archivedProducts;
+    }
+
+    @Name("pos.PaymentStage")
+    @Label("Payment Stage")
+    @Category({"POS", "Checkout"})
+    @Description("One stage of writing a sale: header, lines, stock, release, commit, or the whole payment (total)")
+    @StackTrace(false)
+    public static class PaymentStage extends Event {
+        @Label("Stage")
+        public String stage;
+
+        @Label("Invoice")
+        public String invoiceNo;
+
+        @Label("SKU Count")
+        public int skuCount;
+
+        @Label("Rows")
+        @Description("Rows written, updated or deleted by the stage")
+        public int rows;
+
+        @Label("Outcome")
+        public String outcome;
+
+        /**
+         * Start timing a stage
+         */
+        public static PaymentStage start(String stage, int skuCount) {
+            PaymentStage event = new PaymentStage();
+            event.stage = stage;
+            event.skuCount = skuCount;
+            event.begin();
+            return event;
+        }
+
+        /**
+         * End the stage and record it
+         */
+        public void finish(String invoiceNo, int rows, String outcome) {
+            end();
+            if (shouldCommit()) {
+                this.invoiceNo = invoiceNo;
+                this.rows = rows;
+                this.outcome = outcome;
+                commit();
+            }
+        }
+    }
+
+    @Name("pos.Receipt")
+    @Label("Receipt")
+    @Category({"POS", "Receipts"})
+    @Description("Receipt template compile, Jasper fill, ESC/POS render or print")
+    @StackTrace(false)
+    public static class Receipt extends Event {
+        @Label("Phase")
+        @Description("compile, fill, renderEscPos or print")
+        public String phase;
+
+        @Label("Receipt")
+        @Description("Template name or receipt label")
+        public String name;
+
+        @Label("Pages")
+        public int pages;
+
+        @Label("Size")
+        @DataAmount
+        public long bytes;
+
+        @Label("Outcome")
+        public String outcome;
+    }
+
+    @Name("pos.Return")
+    @Label("Return")
+    @Category({"POS", "Returns"})
+    @Description("Processing of a return: validation, return rows, stock increase and commit")
+    @StackTrace(false)
+    public static class Return extends Event {
+        @Label("Invoice")
+        public String invoiceNo;
+
+        @Label("Return Number")
+        public String returnNo;
+
+        @Label("SKU Count")
+        @Description("Invoice lines returned")
+        public int skuCount;
+
+        @Label("Units")
+        public int units;
+
+        @Label("Refund (centavos)")
+        public long refundCentavos;
+
+        @Label("Outcome")
+        public String outcome;
+    }
+}
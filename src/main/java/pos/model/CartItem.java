@@ -6,7 +6,7 @@ import java.util.UUID;
 public class CartItem {
     private Product product;
     private IntegerProperty quantity = new SimpleIntegerProperty(1);
-    private double discount = 0.0;
+    private long discountCentavos = 0L;
     private double discountedTotal = 0.0;
     private String appliedPromo = null;
     private String transactionId; // Shared session transaction ID
@@ -35,9 +35,11 @@ public class CartItem {
     public int getQuantity() { return quantity.get(); }
     public void setQuantity(int qty) { this.quantity.set(qty); }
     public IntegerProperty quantityProperty() { return quantity; }
-    public double getSubtotal() { return product.getPrice() * getQuantity(); }
-    public double getDiscount() { return discount; }
-    public void setDiscount(double discount) { this.discount = discount; }
+    public double getSubtotal() { return Money.toPesos(getSubtotalCentavos()); }
+    public long getSubtotalCentavos() { return Money.times(product.getPriceCentavos(), getQuantity()); }
+    public double getDiscount() { return Money.toPesos(discountCentavos); }
+    public long getDiscountCentavos() { return discountCentavos; }
+    public void setDiscountCentavos(long discountCentavos) { this.discountCentavos = discountCentavos; }
     public double getDiscountedTotal() { return discountedTotal; }
     public void setDiscountedTotal(double discountedTotal) { this.discountedTotal = discountedTotal; }
     public String getAppliedPromo() { return appliedPromo; }
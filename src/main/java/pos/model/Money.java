@@ -0,0 +1,113 @@
+package pos.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point peso amounts stored as a primitive long number of centavos.
+ * All arithmetic is exact integer math (rounding half-up only where a rate is applied),
+ * so totals never drift and the pricing path does not allocate. Convert to double or
+ * BigDecimal only at the edges (JDBC, JavaFX cells, Jasper parameters).
+ */
+public final class Money {
+    public static final long ZERO = 0L;
+    private static final long CENTAVOS_PER_PESO = 100L;
+    /** Largest peso amount that fits in a long of centavos */
+    private static final BigDecimal MAX_PESOS = BigDecimal.valueOf(Long.MAX_VALUE, 2);
+
+    private Money() {}
+
+    /**
+     * Centavos from a peso amount held in a double (e.g. DECIMAL read via getDouble)
+     */
+    public static long ofPesos(double pesos) {
+        return Math.round(pesos * CENTAVOS_PER_PESO);
+    }
+
+    /**
+     * Centavos from a BigDecimal peso amount, rounding half-up to 2 decimals
+     * @throws ArithmeticException if the amount does not fit in a long of centavos.
+     */
+    public static long ofPesos(BigDecimal pesos) {
+        if (pesos == null) return ZERO;
+        if (!fits(pesos)) throw new ArithmeticException("Amount out of range: " + pesos);
+        return pesos.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static double toPesos(long centavos) {
+        return centavos / (double) CENTAVOS_PER_PESO;
+    }
+
+    public static BigDecimal toBigDecimal(long centavos) {
+        return BigDecimal.valueOf(centavos, 2);
+    }
+
+    /**
+     * Line amount: unit price times quantity
+     */
+    public static long times(long unitCentavos, int quantity) {
+        return Math.multiplyExact(unitCentavos, (long) quantity);
+    }
+
+    /**
+     * percent% of an amount, rounded half-up to the centavo
+     */
+    public static long percentOf(long centavos, double percent) {
+        return Math.round(centavos * percent / 100.0);
+    }
+
+    /**
+     * amount * numerator / denominator, rounded half-up, computed exactly in integer math.
+     * Used to allocate a cart-level amount (discount, tax) over part of the cart.
+     */
+    public static long allocate(long centavos, long numerator, long denominator) {
+        if (denominator == 0) return ZERO;
+        long product = Math.multiplyExact(centavos, numerator);
+        long half = Math.abs(denominator) / 2;
+        return (product >= 0) == (denominator > 0)
+            ? (Math.abs(product) + half) / Math.abs(denominator)
+            : -((Math.abs(product) + half) / Math.abs(denominator));
+    }
+
+    /**
+     * The share of an amount split over units that falls to units from (exclusive) to to (inclusive):
+     * allocate(total, to, units) - allocate(total, from, units). Consecutive ranges add up to exactly
+     * total, so rounding never makes the parts differ from the whole; the last range gets the remainder.
+     */
+    public static long allocateRange(long centavos, int from, int to, int units) {
+        return allocate(centavos, to, units) - allocate(centavos, from, units);
+    }
+
+    /**
+     * Parse a cashier-entered peso amount such as "500", "500.5" or "1,250.75".
+     * @throws NumberFormatException if the text is not a valid amount.
+     */
+    public static long parse(String text) {
+        String cleaned = text.trim().replace(",", "");
+        if (cleaned.isEmpty()) throw new NumberFormatException("Empty amount");
+        BigDecimal pesos = new BigDecimal(cleaned);
+        if (!fits(pesos)) throw new NumberFormatException("Amount out of range: " + text.trim());
+        return ofPesos(pesos);
+    }
+
+    // Checked before setScale, which would otherwise expand an exponent like 1E999999999
+    private static boolean fits(BigDecimal pesos) {
+        return pesos.abs().compareTo(MAX_PESOS) <= 0;
+    }
+
+    /**
+     * Format as a plain 2-decimal amount ("1234.50"), same output as String.format("%.2f")
+     */
+    public static String format(long centavos) {
+        StringBuilder sb = new StringBuilder(16);
+        if (centavos < 0) {
+            sb.append('-');
+        }
+        long abs = Math.abs(centavos);
+        long cents = abs % CENTAVOS_PER_PESO;
+        sb.append(abs / CENTAVOS_PER_PESO).append('.');
+        if (cents < 10) sb.append('0');
+        sb.append(cents);
+        return sb.toString();
+    }
+}
@@ -2,7 +2,7 @@ package pos.model;
 
 public class Product {
     private String sku;
-    private double price;
+    private long priceCentavos;
     private String description;
     private String imagePath;
     private int quantity;
@@ -13,7 +13,7 @@ public class Product {
 
     public Product(String sku, double price, String description, String imagePath, int quantity, int categoryId) {
         this.sku = sku;
-        this.price = price;
+        this.priceCentavos = Money.ofPesos(price);
         this.description = description;
         this.imagePath = imagePath;
         this.quantity = quantity;
@@ -31,7 +31,7 @@ public class Product {
     public Product(String sku, double price, String description, String imagePath,
                    int quantity, int categoryId, String itemName, String colorName) {
         this.sku = sku;
-        this.price = price;
+        this.priceCentavos = Money.ofPesos(price);
         this.description = description;
         this.imagePath = imagePath;
         this.quantity = quantity;
@@ -41,7 +41,8 @@ public class Product {
     }
 
     public String getSku() { return sku; }
-    public double getPrice() { return price; }
+    public double getPrice() { return Money.toPesos(priceCentavos); }
+    public long getPriceCentavos() { return priceCentavos; }
     public String getDescription() { return description; }
     public String getImagePath() { return imagePath; }
     public int getQuantity() { return quantity; }
@@ -6,10 +6,16 @@ public class ReturnItem {
     private final StringProperty productName = new SimpleStringProperty();
     private final DoubleProperty price = new SimpleDoubleProperty();
     private final IntegerProperty qtyPurchased = new SimpleIntegerProperty();
+    private final IntegerProperty qtyReturnable = new SimpleIntegerProperty(); // purchased minus already returned
     private final DoubleProperty discount = new SimpleDoubleProperty();
     private final IntegerProperty qtyToReturn = new SimpleIntegerProperty(0);
     private final DoubleProperty refundAmount = new SimpleDoubleProperty();
     private final StringProperty productSku = new SimpleStringProperty();
+    // Exact amounts in centavos; the double properties above mirror them for table display
+    private long priceCentavos;
+    private long discountCentavos; // per unit, rounded; for display
+    private long lineNetCentavos; // what was paid for the whole line, after its share of the discount
+    private long refundCentavos;
     
     // Database IDs for processing returns
     private final IntegerProperty invoiceItemId = new SimpleIntegerProperty();
@@ -18,35 +24,44 @@ public class ReturnItem {
     
     public ReturnItem() {}
     
-    public ReturnItem(String productName, String productSku, double price, int qtyPurchased, double discount) {
+    /**
+     * @param priceCentavos unit price in centavos
+     * @param discountCentavos per-unit discount in centavos
+     */
+    public ReturnItem(String productName, String productSku, long priceCentavos, int qtyPurchased, long discountCentavos) {
         this.productName.set(productName);
         this.productSku.set(productSku);
-        this.price.set(price);
         this.qtyPurchased.set(qtyPurchased);
-        this.discount.set(discount);
-        updateRefundAmount();
+        this.qtyReturnable.set(qtyPurchased);
+        this.priceCentavos = priceCentavos;
+        this.price.set(Money.toPesos(priceCentavos));
+        this.discountCentavos = discountCentavos;
+        this.discount.set(Money.toPesos(discountCentavos));
+        setLineNetCentavos(Money.times(priceCentavos - discountCentavos, qtyPurchased));
         
         // Add listener to automatically calculate refund amount when quantity changes
         this.qtyToReturn.addListener((obs, oldVal, newVal) -> updateRefundAmount());
     }
     
     // Constructor with database IDs
-    public ReturnItem(String productName, String productSku, double price, int qtyPurchased, double discount,
+    public ReturnItem(String productName, String productSku, long priceCentavos, int qtyPurchased, long discountCentavos,
                      int invoiceItemId, int onlineInventoryItemId, int inStoreInventoryId) {
-        this(productName, productSku, price, qtyPurchased, discount);
+        this(productName, productSku, priceCentavos, qtyPurchased, discountCentavos);
         this.invoiceItemId.set(invoiceItemId);
         this.onlineInventoryItemId.set(onlineInventoryItemId);
         this.inStoreInventoryId.set(inStoreInventoryId);
     }
     
     private void updateRefundAmount() {
-        double itemPrice = price.get();
-        double itemDiscount = discount.get();
-        int returnQty = qtyToReturn.get();
+        int purchased = qtyPurchased.get();
+        int returnedBefore = purchased - qtyReturnable.get();
         
-        // Calculate refund amount: (price - discount) * qty to return
-        double refund = (itemPrice - itemDiscount) * returnQty;
-        refundAmount.set(Math.max(0, refund));
+        // Share of the line net for the units returned now; all returns of a line add up to the line net exactly
+        long refund = purchased > 0
+            ? Money.allocateRange(lineNetCentavos, returnedBefore, returnedBefore + qtyToReturn.get(), purchased)
+            : 0L;
+        refundCentavos = Math.max(0, refund);
+        refundAmount.set(Money.toPesos(refundCentavos));
     }
     
     // Property getters
@@ -54,6 +69,7 @@ public class ReturnItem {
     public StringProperty productSkuProperty() { return productSku; }
     public DoubleProperty priceProperty() { return price; }
     public IntegerProperty qtyPurchasedProperty() { return qtyPurchased; }
+    public IntegerProperty qtyReturnableProperty() { return qtyReturnable; }
     public DoubleProperty discountProperty() { return discount; }
     public IntegerProperty qtyToReturnProperty() { return qtyToReturn; }
     public DoubleProperty refundAmountProperty() { return refundAmount; }
@@ -63,9 +79,14 @@ public class ReturnItem {
     public String getProductSku() { return productSku.get(); }
     public double getPrice() { return price.get(); }
     public int getQtyPurchased() { return qtyPurchased.get(); }
+    public int getQtyReturnable() { return qtyReturnable.get(); }
     public double getDiscount() { return discount.get(); }
     public int getQtyToReturn() { return qtyToReturn.get(); }
     public double getRefundAmount() { return refundAmount.get(); }
+    public long getPriceCentavos() { return priceCentavos; }
+    public long getDiscountCentavos() { return discountCentavos; }
+    public long getLineNetCentavos() { return lineNetCentavos; }
+    public long getRefundCentavos() { return refundCentavos; }
     
     // Database ID getters
     public int getInvoiceItemId() { return invoiceItemId.get(); }
@@ -80,18 +101,39 @@ public class ReturnItem {
     // Value setters
     public void setProductName(String productName) { this.productName.set(productName); }
     public void setProductSku(String productSku) { this.productSku.set(productSku); }
-    public void setPrice(double price) { this.price.set(price); updateRefundAmount(); }
+    public void setPriceCentavos(long priceCentavos) {
+        this.priceCentavos = priceCentavos;
+        this.price.set(Money.toPesos(priceCentavos));
+        updateRefundAmount();
+    }
     public void setQtyPurchased(int qtyPurchased) { this.qtyPurchased.set(qtyPurchased); }
-    public void setDiscount(double discount) { this.discount.set(discount); updateRefundAmount(); }
+    public void setQtyReturnable(int qtyReturnable) {
+        this.qtyReturnable.set(Math.max(0, Math.min(qtyReturnable, this.qtyPurchased.get())));
+        setQtyToReturn(this.qtyToReturn.get());
+        updateRefundAmount();
+    }
+    /**
+     * Amount paid for the whole line (subtotal less its share of the invoice discount); refunds are
+     * allocated from it rather than from the rounded per-unit price and discount
+     */
+    public void setLineNetCentavos(long lineNetCentavos) {
+        this.lineNetCentavos = lineNetCentavos;
+        updateRefundAmount();
+    }
+    public void setDiscountCentavos(long discountCentavos) {
+        this.discountCentavos = discountCentavos;
+        this.discount.set(Money.toPesos(discountCentavos));
+        updateRefundAmount();
+    }
     public void setQtyToReturn(int qtyToReturn) { 
-        // Ensure we don't return more than purchased
-        int maxReturn = Math.min(qtyToReturn, this.qtyPurchased.get());
+        // Ensure we don't return more than is still returnable
+        int maxReturn = Math.min(qtyToReturn, this.qtyReturnable.get());
         this.qtyToReturn.set(Math.max(0, maxReturn)); 
     }
     
     public void incrementQtyToReturn() {
         int current = qtyToReturn.get();
-        int max = qtyPurchased.get();
+        int max = qtyReturnable.get();
         if (current < max) {
             setQtyToReturn(current + 1);
         }
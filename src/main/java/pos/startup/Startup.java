@@ -0,0 +1,242 @@
+package pos.startup;
+
+import pos.log.Log;
+import pos.log.Logger;
+import pos.metrics.Metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.CodeSource;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+/**
+ * Startup phase timings and the work deferred until after login.
+ *
+ * phase(name) marks the end of a startup phase; report() logs each phase's duration since the
+ * previous one, counting from JVM start:
+ *
+ *   Startup startup jvm->main=240ms main->fxStart=310ms fxStart->loginShown=420ms ...
+ *
+ * Each phase is also recorded as a "startup.<phase>" timer.
+ *
+ * Subsystems that the login screen doesn't need (Jasper template compilation, the metrics MBean)
+ * are registered with deferUntilLogin() instead of starting in App.start(); runDeferred() runs
+ * them one after another on a low-priority daemon thread once the catalog is on screen, so they
+ * compete neither with the login screen nor with the catalog load.
+ *
+ * -Dpos.startup.training=true is the AppCDS training run (see STARTUP.md): the deferred work runs
+ * right after the login screen is shown, all application classes are loaded, and the POS exits.
+ */
+public final class Startup {
+    private static final Logger log = Log.get(Startup.class);
+
+    private static final boolean TRAINING = Boolean.getBoolean("pos.startup.training");
+    private static final long JVM_START_MS = ProcessHandle.current().info().startInstant()
+        .map(Instant::toEpochMilli).orElse(System.currentTimeMillis());
+    private static final String[] APP_PACKAGES = {"pos/", "com/mycompany/"};
+
+    private static final Map<String, Long> phases = new LinkedHashMap<>();
+    private static final List<Deferred> deferred = new ArrayList<>();
+    private static boolean reported;
+    private static boolean deferredStarted;
+
+    /**
+     * A subsystem initialization that waits for the login
+     */
+    private static final class Deferred {
+        final String name;
+        final Runnable task;
+
+        Deferred(String name, Runnable task) {
+            this.name = name;
+            this.task = task;
+        }
+    }
+
+    private Startup() {}
+
+    public static boolean isTraining() {
+        return TRAINING;
+    }
+
+    /**
+     * Mark the end of a startup phase. Only the first mark of each phase counts, so a second
+     * login after a logout doesn't change the report.
+     */
+    public static synchronized void phase(String name) {
+        if (phases.containsKey(name)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long previous = phases.isEmpty() ? JVM_START_MS : lastPhaseTime();
+        phases.put(name, now);
+        Metrics.timer("startup." + name).record(Math.max(0, now - previous) * 1_000_000L);
+    }
+
+    /**
+     * Log the phase durations (once)
+     */
+    public static synchronized void report() {
+        if (reported || phases.isEmpty()) {
+            return;
+        }
+        reported = true;
+        log.info("startup", "phases", summary());
+    }
+
+    /**
+     * "jvm->main=240ms main->fxStart=310ms ..." for the phases marked so far
+     */
+    public static synchronized String summary() {
+        StringBuilder sb = new StringBuilder();
+        String previousName = "jvm";
+        long previous = JVM_START_MS;
+        for (Map.Entry<String, Long> entry : phases.entrySet()) {
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(previousName).append("->").append(entry.getKey()).append('=')
+              .append(entry.getValue() - previous).append("ms");
+            previousName = entry.getKey();
+            previous = entry.getValue();
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Run task after login, on the deferred-init thread (right away if that has already run)
+     */
+    public static void deferUntilLogin(String name, Runnable task) {
+        synchronized (Startup.class) {
+            if (!deferredStarted) {
+                deferred.add(new Deferred(name, task));
+                return;
+            }
+        }
+        startThread(List.of(new Deferred(name, task)), null);
+    }
+
+    /**
+     * The catalog is on screen: report the startup phases and start the deferred work
+     */
+    public static void catalogShown() {
+        phase("catalogShown");
+        report();
+        runDeferred(null);
+    }
+
+    /**
+     * Run everything registered with deferUntilLogin() (once), then whenDone if not null
+     */
+    public static void runDeferred(Runnable whenDone) {
+        List<Deferred> tasks;
+        synchronized (Startup.class) {
+            if (deferredStarted) {
+                return;
+            }
+            deferredStarted = true;
+            tasks = new ArrayList<>(deferred);
+            deferred.clear();
+        }
+        startThread(tasks, whenDone);
+    }
+
+    private static void startThread(List<Deferred> tasks, Runnable whenDone) {
+        Thread worker = new Thread(() -> {
+            for (Deferred task : tasks) {
+                long start = System.nanoTime();
+                try {
+                    task.task.run();
+                    log.info("deferredInit", "task", task.name, "ms", (System.nanoTime() - start) / 1_000_000);
+                } catch (RuntimeException e) {
+                    log.warn("deferredInitFailed", e, "task", task.name);
+                }
+                Metrics.recordSince("startup.deferred." + task.name, start);
+            }
+            if (whenDone != null) {
+                whenDone.run();
+            }
+        }, "deferred-init");
+        worker.setDaemon(true);
+        worker.setPriority(Thread.MIN_PRIORITY);
+        worker.start();
+    }
+
+    /**
+     * Load (without initializing) every application class, so the training run puts all of them
+     * and the JavaFX/JDK classes they extend into the archive. Returns the number loaded.
+     * Only a classes directory or a jar can be scanned; anything else (a jrt:/ module in a jlink
+     * image) loads nothing and is reported with a warning.
+     */
+    public static int loadApplicationClasses() {
+        List<String> names = new ArrayList<>();
+        try {
+            CodeSource source = Startup.class.getProtectionDomain().getCodeSource();
+            if (source == null) {
+                return 0;
+            }
+            File location = new File(source.getLocation().toURI());
+            if (location.isDirectory()) {
+                Path root = location.toPath();
+                try (Stream<Path> files = Files.walk(root)) {
+                    files.map(p -> root.relativize(p).toString().replace(File.separatorChar, '/'))
+                         .forEach(name -> addClassName(names, name));
+                }
+            } else {
+                try (JarFile jar = new JarFile(location)) {
+                    Enumeration<JarEntry> entries = jar.entries();
+                    while (entries.hasMoreElements()) {
+                        addClassName(names, entries.nextElement().getName());
+                    }
+                }
+            }
+        } catch (IOException | URISyntaxException | IllegalArgumentException e) {
+            log.warn("classScanFailed", e);
+        }
+        ClassLoader loader = Startup.class.getClassLoader();
+        int loaded = 0;
+        for (String name : names) {
+            try {
+                Class.forName(name, false, loader);
+                loaded++;
+            } catch (ClassNotFoundException | LinkageError e) {
+                log.debug("classNotLoaded", "class", name, "reason", e);
+            }
+        }
+        if (loaded == 0) {
+            CodeSource source = Startup.class.getProtectionDomain().getCodeSource();
+            log.warn("noApplicationClassesLoaded", "found", names.size(),
+                     "location", source != null ? source.getLocation() : "unknown");
+        }
+        return loaded;
+    }
+
+    private static void addClassName(List<String> names, String path) {
+        if (!path.endsWith(".class") || path.endsWith("module-info.class")) {
+            return;
+        }
+        for (String prefix : APP_PACKAGES) {
+            if (path.startsWith(prefix)) {
+                names.add(path.substring(0, path.length() - ".class".length()).replace('/', '.'));
+                return;
+            }
+        }
+    }
+
+    private static long lastPhaseTime() {
+        long last = JVM_START_MS;
+        for (long time : phases.values()) {
+            last = time;
+        }
+        return last;
+    }
+}
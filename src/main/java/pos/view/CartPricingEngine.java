@@ -0,0 +1,166 @@
+package pos.view;
+
+import javafx.beans.value.ChangeListener;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import pos.db.PromotionIndex;
+import pos.model.CartItem;
+import pos.model.Money;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps running subtotal/discount/tax totals (in centavos) for a cart.
+ * Only the line that changed is repriced (its subtotal and best promotion); cart-level
+ * values such as VAT are derived from the running sums. A promotion or VAT refresh
+ * reprices everything once. All updates must happen on the FX thread; getTotals() can
+ * be read from any thread.
+ */
+public class CartPricingEngine {
+
+    /**
+     * Immutable snapshot of the cart totals, in centavos
+     */
+    public static class Totals {
+        public final long subtotal;
+        public final long discount;
+        public final long tax;
+        public final long total;
+
+        Totals(long subtotal, long discount, long tax, long total) {
+            this.subtotal = subtotal;
+            this.discount = discount;
+            this.tax = tax;
+            this.total = total;
+        }
+    }
+
+    private static final Totals EMPTY_TOTALS = new Totals(0, 0, 0, 0);
+
+    /**
+     * Last priced values of one cart line and the listener attached to its quantity
+     */
+    private static class LinePrice {
+        ChangeListener<Number> quantityListener;
+        long subtotal;
+        long discount;
+    }
+
+    private final Map<CartItem, LinePrice> lines = new IdentityHashMap<>();
+    private final List<Runnable> listeners = new ArrayList<>();
+    private PromotionIndex promotionIndex = PromotionIndex.empty();
+    private int vatRate = 0;
+    private long subtotal = 0;
+    private long discount = 0;
+    private volatile Totals totals = EMPTY_TOTALS;
+
+    public CartPricingEngine(ObservableList<CartItem> cart) {
+        for (CartItem item : cart) {
+            attach(item);
+        }
+        cart.addListener((ListChangeListener<CartItem>) this::onCartChanged);
+        publish();
+    }
+
+    /**
+     * Run an action (on the FX thread) whenever the totals change
+     */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    public Totals getTotals() {
+        return totals;
+    }
+
+    public int getVatRate() {
+        return vatRate;
+    }
+
+    /**
+     * Switch to a freshly loaded promotion set and reprice every line
+     */
+    public void setPromotionIndex(PromotionIndex promotionIndex) {
+        this.promotionIndex = promotionIndex != null ? promotionIndex : PromotionIndex.empty();
+        repriceAll();
+    }
+
+    /**
+     * Set the VAT percentage (0 when VAT is disabled)
+     */
+    public void setVatRate(int vatRate) {
+        if (this.vatRate == vatRate) return;
+        this.vatRate = vatRate;
+        publish();
+    }
+
+    private void onCartChanged(ListChangeListener.Change<? extends CartItem> change) {
+        while (change.next()) {
+            if (change.wasRemoved()) {
+                for (CartItem item : change.getRemoved()) {
+                    detach(item);
+                }
+            }
+            if (change.wasAdded()) {
+                for (CartItem item : change.getAddedSubList()) {
+                    attach(item);
+                }
+            }
+        }
+        publish();
+    }
+
+    private void attach(CartItem item) {
+        if (lines.containsKey(item)) return;
+        LinePrice line = new LinePrice();
+        line.quantityListener = (obs, oldVal, newVal) -> {
+            reprice(item, line);
+            publish();
+        };
+        item.quantityProperty().addListener(line.quantityListener);
+        lines.put(item, line);
+        reprice(item, line);
+    }
+
+    private void detach(CartItem item) {
+        LinePrice line = lines.remove(item);
+        if (line == null) return;
+        item.quantityProperty().removeListener(line.quantityListener);
+        subtotal -= line.subtotal;
+        discount -= line.discount;
+    }
+
+    private void reprice(CartItem item, LinePrice line) {
+        long lineSubtotal = item.getSubtotalCentavos();
+        PromotionIndex.Match best = promotionIndex.findBest(
+            item.getProduct().getSku(), item.getProduct().getCategoryId(),
+            item.getProduct().getPriceCentavos(), item.getQuantity()
+        );
+        long lineDiscount = best != null ? best.discount : Money.ZERO;
+        item.setDiscountCentavos(lineDiscount);
+
+        subtotal += lineSubtotal - line.subtotal;
+        discount += lineDiscount - line.discount;
+        line.subtotal = lineSubtotal;
+        line.discount = lineDiscount;
+    }
+
+    private void repriceAll() {
+        for (Map.Entry<CartItem, LinePrice> entry : lines.entrySet()) {
+            reprice(entry.getKey(), entry.getValue());
+        }
+        publish();
+    }
+
+    private void publish() {
+        long taxable = subtotal - discount;
+        long tax = vatRate > 0 ? Money.percentOf(taxable, vatRate) : Money.ZERO;
+        totals = new Totals(subtotal, discount, tax, taxable + tax);
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package pos.view;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Sends raw ESC/POS bytes to a thermal printer device, or to files as a stand-in.
+ *
+ * Selected per terminal with system properties:
+ *   -Dpos.receipt.backend=escpos          use this backend instead of Jasper for sale receipts
+ *   -Dpos.receipt.escpos.device=PATH      printer device (e.g. /dev/usb/lp0) or a plain file that
+ *                                         receipts are appended to; if PATH is a directory each
+ *                                         receipt is written to its own RECEIPT_NO.bin file
+ */
+public class EscPosPrinter {
+    private static final String DEFAULT_DEVICE = "receipts";
+
+    private final File device;
+
+    public EscPosPrinter(File device) {
+        this.device = device;
+    }
+
+    /**
+     * Whether this terminal prints sale receipts through ESC/POS
+     */
+    public static boolean isEnabled() {
+        return "escpos".equalsIgnoreCase(System.getProperty("pos.receipt.backend", "jasper"));
+    }
+
+    /**
+     * Printer for the device configured with -Dpos.receipt.escpos.device (default: ./receipts directory)
+     */
+    public static EscPosPrinter fromSystemProperties() {
+        return new EscPosPrinter(new File(System.getProperty("pos.receipt.escpos.device", DEFAULT_DEVICE)));
+    }
+
+    /**
+     * Write one receipt
+     * @param label receipt number, used as the file name in directory mode
+     */
+    public void print(String label, byte[] data) throws IOException {
+        if (DEFAULT_DEVICE.equals(device.getPath()) && !device.exists() && !device.mkdirs()) {
+            throw new IOException("Cannot create receipt directory " + device.getAbsolutePath());
+        }
+        File target = device.isDirectory()
+            ? new File(device, label.replaceAll("[^A-Za-z0-9_-]", "_") + ".bin")
+            : device;
+        // Devices and stand-in files are appended to, like a printer's paper roll
+        try (OutputStream out = new FileOutputStream(target, !device.isDirectory())) {
+            out.write(data);
+            out.flush();
+        }
+    }
+
+    public File getDevice() {
+        return device;
+    }
+}
@@ -0,0 +1,173 @@
+package pos.view;
+
+import pos.model.Money;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Renders a sale receipt straight to an ESC/POS byte stream for thermal printers.
+ * Prints the same content as receipt_template.jrxml without going through a Jasper
+ * fill, so a receipt is a few hundred bytes built in well under a millisecond.
+ * Text is plain ASCII (the peso sign is printed as "PHP") so it works on the
+ * printer's default code page.
+ */
+public class EscPosReceiptRenderer {
+    private static final byte ESC = 0x1B;
+    private static final byte GS = 0x1D;
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final int columns;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+
+    /**
+     * @param columns characters per line (32 for 58mm paper, 42-48 for 80mm)
+     */
+    public EscPosReceiptRenderer(int columns) {
+        this.columns = Math.max(24, columns);
+    }
+
+    /**
+     * Render with the column count configured by -Dpos.receipt.escpos.columns (default 42)
+     */
+    public static byte[] render(ReceiptSnapshot receipt) {
+        return new EscPosReceiptRenderer(Integer.getInteger("pos.receipt.escpos.columns", 42)).renderReceipt(receipt);
+    }
+
+    public byte[] renderReceipt(ReceiptSnapshot receipt) {
+        out.reset();
+        command(ESC, '@'); // initialize
+
+        // Store header
+        align(1);
+        bold(true);
+        size(true);
+        line("DREAMS FASHION SHOP");
+        size(false);
+        bold(false);
+        line("ANDREA A. MARASIGAN - Prop.");
+        line("Dinglasan Building Quezon Avenue Brgy. 1 (Pob.) 4301");
+        line("Lucena City (CAPITAL) Quezon Philippines");
+        line("Non-VAT Reg.TIN No. 484-537-143-00000");
+        divider();
+        bold(true);
+        size(true);
+        line("INVOICE");
+        size(false);
+        bold(false);
+
+        // Invoice details
+        align(0);
+        String receiptNo = receipt.receiptNumber.replaceFirst("^0+", "");
+        if (receiptNo.isEmpty()) receiptNo = "0";
+        line("Sales invoice: " + String.format("%07d", Integer.parseInt(receiptNo)));
+        line(receipt.issuedAt.format(DATE_TIME));
+        line("Cashier: " + receipt.cashierName);
+        divider();
+
+        // Items
+        int qtyWidth = 4;
+        int amountWidth = 10;
+        int itemWidth = columns - qtyWidth - 2 * amountWidth;
+        bold(true);
+        line(padRight("Item", itemWidth) + padLeft("Qty", qtyWidth) + padLeft("Price", amountWidth) + padLeft("Total", amountWidth));
+        bold(false);
+        for (ReceiptSnapshot.Line item : receipt.lines) {
+            String figures = padLeft(String.valueOf(item.quantity), qtyWidth)
+                             + padLeft(Money.format(item.unitPrice), amountWidth)
+                             + padLeft(Money.format(item.lineTotal), amountWidth);
+            if (figures.length() <= columns - itemWidth) {
+                line(padRight(item.sku, itemWidth) + figures);
+            } else {
+                // Amounts too wide for their columns: SKU on its own line, figures right-aligned below
+                line(item.sku);
+                line(padLeft(figures, columns));
+            }
+        }
+        divider();
+
+        // Totals
+        labelValue("Subtotal:", "PHP " + Money.format(receipt.subtotal));
+        labelValue("Discount:", "PHP " + Money.format(receipt.discount));
+        labelValue("Tax (" + receipt.vatRate + "%):", "PHP " + Money.format(receipt.tax));
+        bold(true);
+        labelValue("Total:", "PHP " + Money.format(receipt.total));
+        bold(false);
+        labelValue("Paid:", "PHP " + Money.format(receipt.paid));
+        labelValue("Payment Method:", receipt.paymentMethod);
+        labelValue("Change:", "PHP " + Money.format(receipt.change));
+
+        // Footer
+        align(1);
+        command(ESC, 'd', 1);
+        line("Thank you for shopping!");
+        line("This receipt is valid for returns within 7 days");
+        line("Powered by Dream Fashion POS System");
+
+        command(ESC, 'd', 4); // feed past the cutter
+        command(GS, 'V', 66, 0); // partial cut
+        return out.toByteArray();
+    }
+
+    private void labelValue(String label, String value) {
+        int gap = Math.max(1, columns - label.length() - value.length());
+        line(label + " ".repeat(gap) + value);
+    }
+
+    private void divider() {
+        line("-".repeat(columns));
+    }
+
+    private void line(String text) {
+        byte[] bytes = ascii(text).getBytes(StandardCharsets.US_ASCII);
+        out.write(bytes, 0, bytes.length);
+        out.write('\n');
+    }
+
+    private void align(int mode) {
+        command(ESC, 'a', mode);
+    }
+
+    private void bold(boolean on) {
+        command(ESC, 'E', on ? 1 : 0);
+    }
+
+    private void size(boolean doubled) {
+        command(GS, '!', doubled ? 0x11 : 0x00);
+    }
+
+    private void command(int... bytes) {
+        for (int b : bytes) {
+            out.write(b);
+        }
+    }
+
+    private static String ascii(String text) {
+        if (text == null) return "";
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '₱') {
+                sb.append("PHP");
+            } else {
+                sb.append(c >= 0x20 && c < 0x7F ? c : '?');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String padRight(String text, int width) {
+        String value = text == null ? "" : text;
+        if (value.length() >= width) return value.substring(0, width - 1) + " ";
+        return value + " ".repeat(width - value.length());
+    }
+
+    /**
+     * Right-align text in width columns; text that doesn't fit is kept whole behind one space
+     */
+    private static String padLeft(String text, int width) {
+        if (text.length() >= width) return " " + text;
+        return " ".repeat(width - text.length()) + text;
+    }
+}
@@ -5,13 +5,13 @@ import javafx.scene.control.*;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.*;
 import javafx.scene.shape.Line;
-import pos.db.CashierDAO;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import org.mindrot.jbcrypt.BCrypt;
+import pos.db.AuthService;
+import pos.log.Log;
+import pos.log.Logger;
 import javafx.application.Platform;
 
 public class LoginView extends VBox {
+    private static final Logger log = Log.get(LoginView.class);
     private final TextField usernameField;
     private final PasswordField passwordField;
     private final Label errorLabel;
@@ -96,48 +96,20 @@ public class LoginView extends VBox {
         String user = usernameField.getText();
         String pass = passwordField.getText();
         errorLabel.setText("");
-        Platform.runLater(() -> loader.setVisible(true));
-        // Run DB check in background thread
-        new Thread(() -> {
-            try {
-                ResultSet rs = CashierDAO.getActiveCashierByUsername(user);
-                if (rs.next()) {
-                    String hash = rs.getString("password");
-                    if (hash.startsWith("$2y$")) {
-                        hash = "$2a$" + hash.substring(4);
-                    }
-                    if (BCrypt.checkpw(pass, hash)) {
-                        String firstName = rs.getString("first_name");
-                        String lastName = rs.getString("last_name");
-                        // Proper title casing for full name
-                        firstName = toTitleCase(firstName);
-                        lastName = toTitleCase(lastName);
-                        String fullName = firstName + " " + lastName;
-                        Platform.runLater(() -> {
-                            loader.setVisible(false);
-                            errorLabel.setText("");
-                            if (onLoginSuccess != null) onLoginSuccess.onLoginSuccess(fullName, user);
-                        });
-                    } else {
-                        Platform.runLater(() -> {
-                            loader.setVisible(false);
-                            errorLabel.setText("Invalid username or password.");
-                        });
-                    }
-                } else {
-                    Platform.runLater(() -> {
-                        loader.setVisible(false);
-                        errorLabel.setText("Invalid username or password.");
-                    });
-                }
-                rs.getStatement().getConnection().close();
-            } catch (SQLException ex) {
-                Platform.runLater(() -> {
-                    loader.setVisible(false);
-                    errorLabel.setText("Database error: " + ex.getMessage());
-                });
+        loader.setVisible(true);
+        // Lookup and BCrypt check run on the auth worker pool
+        AuthService.getInstance().authenticateCashier(user, pass).whenComplete((result, error) -> Platform.runLater(() -> {
+            loader.setVisible(false);
+            if (error != null) {
+                log.error("loginFailed", error.getCause() != null ? error.getCause() : error, "user", user);
+                errorLabel.setText("Login failed due to a system error. Please try again.");
+            } else if (result.success) {
+                errorLabel.setText("");
+                if (onLoginSuccess != null) onLoginSuccess.onLoginSuccess(result.fullName, user);
+            } else {
+                errorLabel.setText(result.errorMessage);
             }
-        }).start();
+        }));
     }
 
     public void setOnLoginSuccess(OnLoginSuccessListener callback) {
@@ -150,25 +122,6 @@ public class LoginView extends VBox {
         errorLabel.setText("");
     }
 
-    // Add a helper for title case
-    private static String toTitleCase(String input) {
-        if (input == null || input.isEmpty()) return input;
-        StringBuilder result = new StringBuilder(input.length());
-        boolean capitalize = true;
-        for (char c : input.toCharArray()) {
-            if (Character.isWhitespace(c)) {
-                capitalize = true;
-                result.append(c);
-            } else if (capitalize) {
-                result.append(Character.toUpperCase(c));
-                capitalize = false;
-            } else {
-                result.append(Character.toLowerCase(c));
-            }
-        }
-        return result.toString();
-    }
-
     public void hideLoader() {
         loader.setVisible(false);
     }
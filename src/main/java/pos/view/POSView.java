@@ -12,10 +12,13 @@ import pos.model.CartItem;
 import pos.model.Product;
 import pos.db.DBCredentials;
 import pos.db.ProductDAO;
+import pos.log.Log;
+import pos.log.Logger;
+import pos.startup.Startup;
+import pos.metrics.Metrics;
+import pos.metrics.PosEvents;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.HashMap;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import javafx.animation.KeyFrame;
@@ -28,6 +31,7 @@ import java.sql.SQLException;
 import javafx.application.Platform;
 
 public class POSView extends BorderPane {
+    private static final Logger log = Log.get(POSView.class);
     // Barcode scanning constants
     private static final int BARCODE_MIN_LENGTH = 8;
     private static final int BARCODE_MAX_LENGTH = 20;
@@ -39,6 +43,7 @@ public class POSView extends BorderPane {
     private final ObservableList<CartItem> cart = FXCollections.observableArrayList();
     private final Label dateLabel = new Label();
     private final Label timeLabel = new Label();
+    private final Label warmUpLabel = new Label();
     private final Runnable onLogout;
     private final String cashierName;
     private final int staffId;
@@ -59,9 +64,7 @@ public class POSView extends BorderPane {
     // Product polling fields
     private Timestamp lastProductCheck;
     private Timeline productUpdateTimeline;
-    private Map<String, Product> lastKnownProducts = new HashMap<>(); // Cache to prevent infinite loops
-    private Map<String, String> lastKnownHashes = new HashMap<>(); // Cache product hashes for efficient comparison
-    private int debugCounter = 0; // Limit debug output frequency
+    private final ProductChangeDetector changeDetector = new ProductChangeDetector();
     private int connectionErrorCount = 0; // Track consecutive connection errors
     
     /**
@@ -89,7 +92,7 @@ public class POSView extends BorderPane {
      */
     public void resetTransactionId() {
         this.currentTransactionId = generateReadableTransactionId();
-        System.out.println("New transaction ID generated: " + currentTransactionId);
+        log.debug("transactionIdGenerated", "transactionId", currentTransactionId);
     }
     
     /**
@@ -110,11 +113,10 @@ public class POSView extends BorderPane {
             
             if (!transactionIds.isEmpty()) {
                 int released = pos.db.StockReservationDAO.clearReservationsByTransactions(conn, transactionIds);
-                System.out.println("Released " + released + " stock reservations for " + transactionIds.size() + " transaction(s)");
+                log.info("reservationsReleased", "reservations", released, "transactions", transactionIds.size());
             }
         } catch (Exception e) {
-            System.err.println("Error releasing cart reservations: " + e.getMessage());
-            e.printStackTrace();
+            log.error("reservationReleaseFailed", e);
         }
     }
 
@@ -165,7 +167,7 @@ public class POSView extends BorderPane {
                 lastProductCheck = ProductDAO.getCurrentDatabaseTimestamp();
             } catch (Exception e) {
                 lastProductCheck = new Timestamp(System.currentTimeMillis());
-                System.err.println("Could not get DB timestamp, using system time: " + e.getMessage());
+                log.warn("dbTimestampUnavailable", e, "using", "systemTime");
             }
             
             // Build main content
@@ -194,9 +196,17 @@ public class POSView extends BorderPane {
             
             // Setup product polling after UI is ready
             setupProductPolling();
+            
+            // Startup report, then the initialization that was deferred until now
+            Startup.catalogShown();
         });
         new Thread(loadProductsTask).start();
 
+        // Warm up scan, pricing and receipt paths while the catalog loads
+        if (WarmUp.isEnabled()) {
+            WarmUp.start(this::onWarmUpProgress);
+        }
+
         dateLabel.setFont(new Font(24));
         dateLabel.setStyle("-fx-text-fill: #1976d2; -fx-font-weight: bold;");
         dateLabel.getStyleClass().add("date-time");
@@ -243,7 +253,14 @@ public class POSView extends BorderPane {
             releaseAllCartReservations();
             if (onLogout != null) onLogout.run();
         });
-        HBox rightBox = new HBox(15, cashier, logoutBtn);
+        Button reprintBtn = new Button("Reprint Receipt");
+        reprintBtn.setStyle("-fx-background-color: #1976d2; -fx-text-fill: white; -fx-font-size: 14px; -fx-background-radius: 5;");
+        reprintBtn.setOnAction(e -> showReprintDialog());
+        warmUpLabel.setText("Warming up...");
+        warmUpLabel.setStyle("-fx-text-fill: #888; -fx-font-size: 12px;");
+        warmUpLabel.setVisible(WarmUp.isEnabled());
+        warmUpLabel.managedProperty().bind(warmUpLabel.visibleProperty());
+        HBox rightBox = new HBox(15, warmUpLabel, cashier, reprintBtn, logoutBtn);
         rightBox.setAlignment(Pos.CENTER_RIGHT);
         HBox.setHgrow(rightBox, Priority.ALWAYS);
         HBox header = new HBox(30, logo, title, rightBox);
@@ -252,6 +269,46 @@ public class POSView extends BorderPane {
         return header;
     }
 
+    /**
+     * Show warm-up progress in the header; the label goes away once everything is warm
+     */
+    private void onWarmUpProgress(WarmUp.Progress progress) {
+        if (!progress.isReady()) {
+            warmUpLabel.setText("Warming up " + progress.completed + "/" + progress.total + "...");
+            return;
+        }
+        warmUpLabel.setVisible(false);
+    }
+
+    /**
+     * Reprint a sale or return receipt from the local receipt archive
+     */
+    private void showReprintDialog() {
+        TextInputDialog dialog = new TextInputDialog();
+        dialog.setTitle("Reprint Receipt");
+        dialog.setHeaderText("Enter Invoice or Return Number");
+        dialog.setContentText("Number:");
+        dialog.getDialogPane().setStyle("-fx-font-family: 'Segoe UI'; -fx-font-size: 14px;");
+        dialog.showAndWait().ifPresent(number -> {
+            if (number.trim().isEmpty()) {
+                return;
+            }
+            ReceiptQueue.getInstance().reprint(number.trim()).thenAccept(found -> {
+                if (found) {
+                    return;
+                }
+                Platform.runLater(() -> {
+                    Alert alert = new Alert(Alert.AlertType.WARNING);
+                    alert.setTitle("Reprint Receipt");
+                    alert.setHeaderText(null);
+                    alert.setContentText("No archived receipt was found for '" + number.trim() + "'.");
+                    alert.getDialogPane().setStyle("-fx-font-family: 'Segoe UI'; -fx-font-size: 14px;");
+                    alert.showAndWait();
+                });
+            });
+        });
+    }
+
     @Override
     public void layoutChildren() {
         super.layoutChildren();
@@ -406,7 +463,7 @@ public class POSView extends BorderPane {
             switch (result) {
                 case SUCCESS:
                     // Optional: Show success feedback (could add a toast/notification here)
-                    System.out.println("Item " + potentialBarcode + " added to returns");
+                    log.debug("returnScanned", "barcode", potentialBarcode);
                     break;
                     
                 case ALREADY_AT_MAX:
@@ -496,8 +553,11 @@ public class POSView extends BorderPane {
             Task<Integer> cleanupTask = new Task<>() {
                 @Override
                 protected Integer call() throws Exception {
+                    long start = System.nanoTime();
                     try (java.sql.Connection conn = pos.db.DBConnection.getConnection()) {
                         return pos.db.StockReservationDAO.cleanupExpiredReservations(conn);
+                    } finally {
+                        Metrics.recordSince("poll.reservationCleanup", start);
                     }
                 }
             };
@@ -505,14 +565,13 @@ public class POSView extends BorderPane {
             cleanupTask.setOnSucceeded(e -> {
                 Integer cleaned = cleanupTask.getValue();
                 if (cleaned != null && cleaned > 0) {
-                    System.out.println("Cleaned up " + cleaned + " expired stock reservations");
+                    log.info("expiredReservationsCleaned", "reservations", cleaned);
                 }
             });
             
             cleanupTask.setOnFailed(e -> {
                 Throwable exception = cleanupTask.getException();
-                System.err.println("Failed to cleanup expired reservations: " + exception.getMessage());
-                exception.printStackTrace();
+                log.error("reservationCleanupFailed", exception);
             });
             
             new Thread(cleanupTask).start();
@@ -534,7 +593,7 @@ public class POSView extends BorderPane {
         initialCleanupTask.setOnSucceeded(e -> {
             Integer cleaned = initialCleanupTask.getValue();
             if (cleaned != null && cleaned > 0) {
-                System.out.println("Initial cleanup: Removed " + cleaned + " expired reservations");
+                log.info("expiredReservationsCleaned", "reservations", cleaned, "initial", true);
             }
         });
         
@@ -546,34 +605,35 @@ public class POSView extends BorderPane {
      */
     private void setupProductPolling() {
         // Initialize the cache with current products AND their hashes
-        for (Product product : products) {
-            lastKnownProducts.put(product.getSku(), new Product(
-                product.getSku(), product.getPrice(), product.getDescription(),
-                product.getImagePath(), product.getQuantity(), product.getCategoryId()
-            ));
-            
-            // Create initial hash for each product to prevent false "new product" detection
-            String initialHash = product.getSku() + "|" + product.getPrice() + "|" + 
-                                product.getQuantity() + "|" + "active";
-            lastKnownHashes.put(product.getSku(), initialHash);
-        }
+        changeDetector.prime(products);
         
-        System.out.println("🔄 Product polling initialized with " + products.length + " products and their hashes");
+        log.info("pollingInitialized", "products", products.length);
         
         productUpdateTimeline = new Timeline(new KeyFrame(Duration.seconds(20), event -> {
             // Skip polling if too many consecutive connection errors
             if (connectionErrorCount >= 3) {
-                System.err.println("Product polling temporarily disabled due to connection issues. Will retry in next cycle.");
+                log.warn("pollingSkipped", "reason", "connectionErrors");
                 connectionErrorCount = 0; // Reset counter to try again
                 return;
             }
             
             // Run in background thread to avoid blocking UI
+            long pollStart = System.nanoTime();
             Task<List<ProductDAO.ProductWithStatus>> checkUpdatesTask = new Task<>() {
                 @Override
                 protected List<ProductDAO.ProductWithStatus> call() throws Exception {
-                    // Use optimized query to get only changed products
-                    return ProductDAO.getChangedProductsSince(lastProductCheck);
+                    PosEvents.CatalogPoll pollEvent = new PosEvents.CatalogPoll();
+                    pollEvent.begin();
+                    pollEvent.outcome = "error";
+                    try {
+                        // Use optimized query to get only changed products
+                        List<ProductDAO.ProductWithStatus> changed = ProductDAO.getChangedProductsSince(lastProductCheck);
+                        pollEvent.changedRows = changed == null ? 0 : changed.size();
+                        pollEvent.outcome = "ok";
+                        return changed;
+                    } finally {
+                        pollEvent.commit();
+                    }
                 }
             };
             
@@ -585,14 +645,14 @@ public class POSView extends BorderPane {
                 
                 // Only process if there are actual changes
                 if (changedProducts != null && !changedProducts.isEmpty()) {
-                    System.out.println("Detected " + changedProducts.size() + " product changes");
+                    log.debug("productChangesDetected", "rows", changedProducts.size());
                     analyzeProductChanges(changedProducts);
                     
                     // Update timestamp for next check
                     try {
                         lastProductCheck = ProductDAO.getCurrentDatabaseTimestamp();
                     } catch (SQLException ex) {
-                        System.err.println("Could not update polling timestamp: " + ex.getMessage());
+                        log.warn("pollingTimestampFailed", ex);
                     }
                 } else {
                     // No changes detected - just update timestamp quietly
@@ -602,15 +662,18 @@ public class POSView extends BorderPane {
                         // Ignore timestamp update errors when no changes detected
                     }
                 }
+                // Whole cycle: query, change detection and catalog update
+                Metrics.recordSince("poll.products", pollStart);
             });
             
             checkUpdatesTask.setOnFailed(e -> {
                 connectionErrorCount++;
+                Metrics.increment("poll.products.failed");
                 Throwable exception = checkUpdatesTask.getException();
-                System.err.println("Product update check failed (attempt " + connectionErrorCount + "/3): " + exception.getMessage());
+                log.warn("pollingFailed", exception, "attempt", connectionErrorCount, "maxAttempts", 3);
                 
                 if (connectionErrorCount >= 3) {
-                    System.err.println("Too many connection failures. Product polling will pause for one cycle.");
+                    log.warn("pollingPaused", "cycles", 1);
                 }
             });
             
@@ -619,69 +682,27 @@ public class POSView extends BorderPane {
         
         productUpdateTimeline.setCycleCount(Timeline.INDEFINITE);
         productUpdateTimeline.play();
-        System.out.println("OPTIMIZED product polling started - checking every 20 seconds for database-level changes");
+        log.info("pollingStarted", "intervalSeconds", 20);
     }
     
     /**
      * OPTIMIZED: Analyze products using hash-based change detection (no timestamp dependency)
      */
     private void analyzeProductChanges(List<ProductDAO.ProductWithStatus> currentProducts) {
-        debugCounter++;
-        boolean showDetailedDebug = debugCounter % 5 == 1; // Reduced debug frequency
-        
-        List<Product> newProducts = new ArrayList<>();
-        List<Product> modifiedProducts = new ArrayList<>();
-        List<String> archivedSkus = new ArrayList<>();
-        
-        // Track current products by SKU for efficient lookup
-        Map<String, ProductDAO.ProductWithStatus> currentProductMap = new HashMap<>();
-        for (ProductDAO.ProductWithStatus product : currentProducts) {
-            currentProductMap.put(product.getSku(), product);
-        }
-        
-        // Process current products for new/modified detection
-        for (ProductDAO.ProductWithStatus currentProduct : currentProducts) {
-            String sku = currentProduct.getSku();
-            String currentHash = currentProduct.getDataHash();
-            String cachedHash = lastKnownHashes.get(sku);
-            
-            if (currentProduct.isArchived()) {
-                // Product was archived
-                if (lastKnownProducts.containsKey(sku)) {
-                    archivedSkus.add(sku);
-                    lastKnownProducts.remove(sku);
-                    lastKnownHashes.remove(sku);
-                }
-            } else if (currentProduct.isActive()) {
-                // Product is active
-                if (cachedHash == null) {
-                    // New product (not in cache)
-                    Product newProduct = convertToProduct(currentProduct);
-                    newProducts.add(newProduct);
-                    lastKnownProducts.put(sku, newProduct);
-                    lastKnownHashes.put(sku, currentHash);
-                } else if (!cachedHash.equals(currentHash)) {
-                    // Modified product (hash changed)
-                    Product modifiedProduct = convertToProduct(currentProduct);
-                    modifiedProducts.add(modifiedProduct);
-                    lastKnownProducts.put(sku, modifiedProduct);
-                    lastKnownHashes.put(sku, currentHash);
-                }
-                // If hash matches, no change - skip processing
-            }
-        }
-        
-        // Check for products that are no longer in database (deleted/archived)
-        for (String cachedSku : new ArrayList<>(lastKnownProducts.keySet())) {
-            if (!currentProductMap.containsKey(cachedSku)) {
-                archivedSkus.add(cachedSku);
-                lastKnownProducts.remove(cachedSku);
-                lastKnownHashes.remove(cachedSku);
-            }
-        }
+        PosEvents.CatalogDiff diffEvent = new PosEvents.CatalogDiff();
+        diffEvent.begin();
+        ProductChangeDetector.Changes changes = changeDetector.analyze(currentProducts, this::convertToProduct);
+        diffEvent.rows = currentProducts.size();
+        diffEvent.newProducts = changes.newProducts.size();
+        diffEvent.modifiedProducts = changes.modifiedProducts.size();
+        diffEvent.archivedProducts = changes.archivedSkus.size();
+        diffEvent.commit();
+        List<Product> newProducts = changes.newProducts;
+        List<Product> modifiedProducts = changes.modifiedProducts;
+        List<String> archivedSkus = changes.archivedSkus;
         
         // Batch UI updates for better performance
-        if (!newProducts.isEmpty() || !modifiedProducts.isEmpty() || !archivedSkus.isEmpty()) {
+        if (!changes.isEmpty()) {
             Platform.runLater(() -> {
                 if (!newProducts.isEmpty()) {
                     handleNewProducts(newProducts);
@@ -693,23 +714,7 @@ public class POSView extends BorderPane {
                     handleArchivedProducts(archivedSkus);
                 }
                 
-                // Single debug output for all changes
-                if (showDetailedDebug) {
-                    System.out.println("═══ HASH-BASED CHANGE DETECTION ═══");
-                    if (!newProducts.isEmpty()) {
-                        System.out.println("➕ " + newProducts.size() + " new products added");
-                    }
-                    if (!modifiedProducts.isEmpty()) {
-                        System.out.println("📝 " + modifiedProducts.size() + " products updated");
-                    }
-                    if (!archivedSkus.isEmpty()) {
-                        System.out.println("🗄️ " + archivedSkus.size() + " products archived");
-                    }
-                    System.out.println("═══════════════════════════════════");
-                } else {
-                    System.out.println("Hash-based changes: +" + newProducts.size() + " new, ~" + 
-                                     modifiedProducts.size() + " updated, -" + archivedSkus.size() + " archived");
-                }
+                log.info("catalogChanged", "added", newProducts.size(), "updated", modifiedProducts.size(), "archived", archivedSkus.size());
             });
         }
     }
@@ -739,31 +744,15 @@ public class POSView extends BorderPane {
      * Handle new products by expanding the products array and updating UI
      */
     private void handleNewProducts(List<Product> newProducts) {
-        debugCounter++;
-        boolean showDetailedDebug = debugCounter % 3 == 1;
-        
-        if (showDetailedDebug) {
-            System.out.println("Adding " + newProducts.size() + " new products to catalog");
-        }
-        
         // Expand the products array to include new products
         Product[] expandedProducts = new Product[products.length + newProducts.size()];
         System.arraycopy(products, 0, expandedProducts, 0, products.length);
         
         for (int i = 0; i < newProducts.size(); i++) {
             Product newProduct = newProducts.get(i);
-            
-            // Print debug information for new products
-            if (showDetailedDebug) {
-                System.out.println("╔═══ NEW PRODUCT DETECTED ═══");
-                System.out.println("║ SKU: " + newProduct.getSku());
-                System.out.println("║ Description: " + newProduct.getDescription());
-                System.out.println("║ Price: ₱" + String.format("%.2f", newProduct.getPrice()));
-                System.out.println("║ Quantity: " + newProduct.getQuantity());
-                System.out.println("║ Category ID: " + newProduct.getCategoryId());
-                System.out.println("╚════════════════════════════");
-            } else {
-                System.out.println("New product added: " + newProduct.getSku() + " - " + newProduct.getDescription());
+            if (log.isDebugEnabled()) {
+                log.debug("productAdded", "sku", newProduct.getSku(), "description", newProduct.getDescription(),
+                    "price", newProduct.getPrice(), "qty", newProduct.getQuantity(), "categoryId", newProduct.getCategoryId());
             }
             
             expandedProducts[products.length + i] = newProduct;
@@ -782,13 +771,6 @@ public class POSView extends BorderPane {
      * Handle archived products by removing them from the products array and UI
      */
     private void handleArchivedProducts(List<String> archivedSkus) {
-        debugCounter++;
-        boolean showDetailedDebug = debugCounter % 3 == 1;
-        
-        if (showDetailedDebug) {
-            System.out.println("Removing " + archivedSkus.size() + " archived products from catalog");
-        }
-        
         // Remove archived products from the products array
         List<Product> activeProducts = new ArrayList<>();
         for (Product product : products) {
@@ -805,13 +787,9 @@ public class POSView extends BorderPane {
             productCatalog.handleArchivedProducts(archivedSkus);
         }
         
-        if (showDetailedDebug) {
+        if (log.isDebugEnabled()) {
             for (String sku : archivedSkus) {
-                System.out.println("╔═══ PRODUCT ARCHIVED ═══");
-                System.out.println("║ SKU: " + sku);
-                System.out.println("║ Status: Removed from catalog");
-                System.out.println("║ Action: No longer available for sale");
-                System.out.println("╚════════════════════════");
+                log.debug("productArchived", "sku", sku);
             }
         }
     }
@@ -820,20 +798,11 @@ public class POSView extends BorderPane {
      * Handle product updates by refreshing the products array and UI
      */
     private void handleProductUpdates(List<Product> modifiedProducts) {
-        debugCounter++;
-        
-        // Only show detailed debug every 3rd update to reduce console spam
-        boolean showDetailedDebug = debugCounter % 3 == 1;
-        
-        if (showDetailedDebug) {
-            System.out.println("Found " + modifiedProducts.size() + " modified products");
-        }
-        
         // Update the products array
         for (Product modifiedProduct : modifiedProducts) {
             for (int i = 0; i < products.length; i++) {
                 if (products[i].getSku().equals(modifiedProduct.getSku())) {
-                    // Store old values for debugging
+                    // Old values for the log
                     Product oldProduct = products[i];
                     
                     // Update image path if needed
@@ -850,31 +819,13 @@ public class POSView extends BorderPane {
                         );
                     }
                     
-                    // Print detailed update information for debugging (limited frequency)
-                    if (showDetailedDebug) {
-                        System.out.println("╔═══ PRODUCT UPDATE DEBUG ═══");
-                        System.out.println("║ SKU: " + modifiedProduct.getSku());
-                        System.out.println("║ Description: " + modifiedProduct.getDescription());
-                        System.out.println("║ Old Quantity: " + oldProduct.getQuantity() + " → New Quantity: " + modifiedProduct.getQuantity());
-                        System.out.println("║ Old Price: $" + String.format("%.2f", oldProduct.getPrice()) + " → New Price: $" + String.format("%.2f", modifiedProduct.getPrice()));
-                        
-                        if (oldProduct.getQuantity() != modifiedProduct.getQuantity()) {
-                            int quantityChange = modifiedProduct.getQuantity() - oldProduct.getQuantity();
-                            System.out.println("║ Quantity Change: " + (quantityChange > 0 ? "+" : "") + quantityChange);
-                            if (modifiedProduct.getQuantity() <= 0) {
-                                System.out.println("║ ⚠️  WARNING: Product is now OUT OF STOCK!");
-                            } else if (modifiedProduct.getQuantity() <= 5) {
-                                System.out.println("║ ⚠️  WARNING: Low stock level!");
-                            }
-                        }
-                        if (Math.abs(oldProduct.getPrice() - modifiedProduct.getPrice()) > 0.01) {
-                            double priceChange = modifiedProduct.getPrice() - oldProduct.getPrice();
-                            System.out.println("║ Price Change: " + (priceChange > 0 ? "+$" : "-$") + String.format("%.2f", Math.abs(priceChange)));
-                        }
-                        System.out.println("╚═══════════════════════════");
-                    } else {
-                        // Simplified output for frequent updates
-                        System.out.println("Product update: " + modifiedProduct.getSku() + " (Qty: " + modifiedProduct.getQuantity() + ", Price: $" + String.format("%.2f", modifiedProduct.getPrice()) + ")");
+                    if (log.isDebugEnabled()) {
+                        log.debug("productUpdated", "sku", modifiedProduct.getSku(),
+                            "qty", oldProduct.getQuantity() + "->" + modifiedProduct.getQuantity(),
+                            "price", oldProduct.getPrice() + "->" + modifiedProduct.getPrice());
+                    }
+                    if (modifiedProduct.getQuantity() <= 0 && oldProduct.getQuantity() > 0) {
+                        log.info("productOutOfStock", "sku", modifiedProduct.getSku());
                     }
                     
                     products[i] = modifiedProduct;
@@ -895,7 +846,7 @@ public class POSView extends BorderPane {
     public void dispose() {
         if (productUpdateTimeline != null) {
             productUpdateTimeline.stop();
-            System.out.println("Product polling timeline stopped");
+            log.debug("pollingStopped");
         }
     }
 } 
\ No newline at end of file
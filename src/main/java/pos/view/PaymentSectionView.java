@@ -6,17 +6,15 @@ import javafx.scene.layout.*;
 import javafx.scene.text.Font;
 import javafx.geometry.Pos;
 import pos.model.CartItem;
+import pos.model.Money;
 import pos.model.Product;
 import pos.model.ReturnItem;
 import javafx.geometry.Insets;
-import javafx.collections.ListChangeListener;
 import javafx.stage.Modality;
-import pos.db.PosTransactionDAO;
-import java.sql.Timestamp;
+import pos.db.AuthService;
+import pos.db.CheckoutDAO;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import pos.db.ProductDAO;
 import javafx.application.Platform;
 import java.util.concurrent.CountDownLatch;
@@ -24,8 +22,13 @@ import javafx.concurrent.Task;
 import pos.db.PromotionDao;
 import javafx.animation.Timeline;
 import pos.db.SystemSettingsDAO;
+import pos.metrics.Metrics;
+import pos.metrics.PosEvents;
+import pos.log.Log;
+import pos.log.Logger;
 
 public class PaymentSectionView extends VBox {
+    private static final Logger log = Log.get(PaymentSectionView.class);
     
     // Constants
     private static final int DEFAULT_PADDING = 10;
@@ -62,6 +65,7 @@ public class PaymentSectionView extends VBox {
     private final TextField refNoField = new TextField();
     private final VBox refNoBox = new VBox();
     private List<pos.db.PromotionDao.Promotion> cachedPromotions = null;
+    private CartPricingEngine pricingEngine;
     private final Label discountSummary = new Label("Discount: ₱0.00");
     private final Label taxSummary = new Label("Tax: ₱0.00");
     private int cachedVatRate = 0;
@@ -71,6 +75,7 @@ public class PaymentSectionView extends VBox {
     private boolean isReturnsMode = false;
     private ReturnsManager returnsManager = new ReturnsManager();
     private int lastAuthenticatedSupervisorId = -1;
+    private String supervisorSessionToken; // lets the same supervisor re-authorize refunds within one returns session
     private Runnable onReturnsModeToggle;
     private VBox normalPaymentSummary;
     private VBox returnsSummary;
@@ -92,6 +97,7 @@ public class PaymentSectionView extends VBox {
         this.cashierName = cashierName;
         this.returnsManager = new ReturnsManager();
         this.posView = posView; // Store POSView reference
+        this.pricingEngine = new CartPricingEngine(cart);
         
         initializeComponent();
         initializePromotionsAndVAT();
@@ -158,14 +164,16 @@ public class PaymentSectionView extends VBox {
             e.printStackTrace();
             cachedPromotions = new java.util.ArrayList<>();
         }
+        pricingEngine.setPromotionIndex(pos.db.PromotionIndex.compile(cachedPromotions));
     }
 
     private void logLoadedPromotions() {
-        System.out.println("Loaded promotions:");
-        for (PromotionDao.Promotion p : cachedPromotions) {
-            System.out.println(p.title + " | " + p.type + " | " + p.value + " | " + 
-                             p.appliesToType + " | " + p.saleChannel + " | " + 
-                             p.activationDate + " - " + p.expirationDate);
+        log.info("promotionsLoaded", "count", cachedPromotions.size());
+        if (log.isDebugEnabled()) {
+            for (PromotionDao.Promotion p : cachedPromotions) {
+                log.debug("promotion", "title", p.title, "type", p.type, "value", p.value, "appliesTo", p.appliesToType,
+                    "channel", p.saleChannel, "from", p.activationDate, "until", p.expirationDate);
+            }
         }
     }
 
@@ -332,6 +340,7 @@ public class PaymentSectionView extends VBox {
     
     private void exitReturnsMode() {
         isReturnsMode = false;
+        endSupervisorSession();
 
         // Hide the original invoice label
         originalInvoiceLabel.setVisible(false);
@@ -382,12 +391,11 @@ public class PaymentSectionView extends VBox {
     
     private void updateButtonsForReturnsMode() {
         // Update the process returns button directly using reference
-        System.out.println("Updating buttons for returns mode. isReturnsMode: " + isReturnsMode);
+        log.debug("returnsModeButtons", "returnsMode", isReturnsMode);
         
         if (processReturnsButton != null) {
             String newText = isReturnsMode ? "Cancel Returns Mode" : "Process Returns";
             processReturnsButton.setText(newText);
-            System.out.println("Updated button text to: " + newText);
             
             // Update color - orange for cancel, red for process
             if (isReturnsMode) {
@@ -400,7 +408,7 @@ public class PaymentSectionView extends VBox {
             processReturnsButton.setVisible(true);
             processReturnsButton.setManaged(true);
         } else {
-            System.out.println("Warning: processReturnsButton reference is null!");
+            log.warn("processReturnsButtonMissing");
         }
         
         // Update the complete payment button
@@ -497,9 +505,7 @@ public class PaymentSectionView extends VBox {
         
         amountField.textProperty().addListener((obs, old, val) -> updateChange.run());
         paymentMethod.valueProperty().addListener((obs, old, val) -> updateChange.run());
-        cart.addListener((ListChangeListener<CartItem>) c -> updateChange.run());
-        
-        setupCartItemQuantityListeners(cart, updateChange);
+        pricingEngine.addListener(updateChange);
     }
 
     private Runnable createChangeCalculator(ObservableList<CartItem> cart, TextField amountField, Label changeLabel) {
@@ -513,33 +519,15 @@ public class PaymentSectionView extends VBox {
             }
             
             try {
-                double paid = Double.parseDouble(amountText);
-                double change = Math.max(0, paid - calculation.total);
-                changeLabel.setText("Change: ₱" + String.format("%.2f", change));
+                long paid = Money.parse(amountText);
+                long change = Math.max(0, paid - calculation.total);
+                changeLabel.setText("Change: ₱" + Money.format(change));
             } catch (NumberFormatException ex) {
                 changeLabel.setText("");
             }
         };
     }
 
-    private void setupCartItemQuantityListeners(ObservableList<CartItem> cart, Runnable updateAction) {
-        // Add listeners to existing items
-        for (CartItem item : cart) {
-            item.quantityProperty().addListener((obs, oldVal, newVal) -> updateAction.run());
-        }
-        
-        // Add listeners to new items
-        cart.addListener((ListChangeListener<CartItem>) c -> {
-            while (c.next()) {
-                if (c.wasAdded()) {
-                    for (CartItem item : c.getAddedSubList()) {
-                        item.quantityProperty().addListener((obs, oldVal, newVal) -> updateAction.run());
-                    }
-                }
-            }
-        });
-    }
-
     private void setupPaymentHandling(ObservableList<CartItem> cart, Product[] products, 
                                     Runnable onPaymentCompleted, ComboBox<String> paymentMethod, 
                                     TextField amountField, Label errorLabel, Button payBtn) {
@@ -600,16 +588,25 @@ public class PaymentSectionView extends VBox {
     
     private boolean requestSupervisorAuthorization() {
         SupervisorAuthDialog.SupervisorAuthResult result = 
-            SupervisorAuthDialog.requestSupervisorAuthorizationWithId();
+            SupervisorAuthDialog.requestSupervisorAuthorizationWithId(supervisorSessionToken);
         
         if (result.isSuccessful()) {
             lastAuthenticatedSupervisorId = result.getSupervisorId();
+            supervisorSessionToken = result.getSessionToken();
             return true;
         }
         
         return false;
     }
     
+    /**
+     * Revoke the supervisor's approval; the next returns session asks for it again
+     */
+    private void endSupervisorSession() {
+        AuthService.getInstance().revokeSession(supervisorSessionToken);
+        supervisorSessionToken = null;
+    }
+    
     private boolean showRefundConfirmation() {
         ReturnsManager.ReturnsSummary summary = returnsManager.calculateReturnsSummary();
         
@@ -623,7 +620,7 @@ public class PaymentSectionView extends VBox {
             "• Total Refund: ₱%.2f\n\n" +
             "The refund will be processed as CASH.\n\n" +
             "Do you want to proceed with this refund?",
-            summary.refundItems, summary.refundTotal
+            Money.toPesos(summary.refundItems), Money.toPesos(summary.refundTotal)
         );
         
         confirmationDialog.setContentText(confirmationText);
@@ -678,7 +675,7 @@ public class PaymentSectionView extends VBox {
                                 item.getOnlineInventoryItemId() > 0 ? item.getOnlineInventoryItemId() : null,
                                 item.getInStoreInventoryId() > 0 ? item.getInStoreInventoryId() : null,
                                 item.getQtyToReturn(),
-                                java.math.BigDecimal.valueOf(item.getRefundAmount())
+                                item.getRefundCentavos()
                             ));
                         }
                     }
@@ -694,7 +691,7 @@ public class PaymentSectionView extends VBox {
                             invoiceNo,
                             currentCashierId,
                             supervisorId,
-                            java.math.BigDecimal.valueOf(summary.refundTotal),
+                            summary.refundTotal,
                             "Customer return processed via POS system",
                             returnItemsData
                         );
@@ -729,6 +726,7 @@ public class PaymentSectionView extends VBox {
                 Platform.runLater(() -> {
                     overlay.setVisible(false);
                     if (getValue()) {
+                        endSupervisorSession();
                         // Success - show return receipt and confirmation
                         ReturnsManager.ReturnsSummary summary = returnsManager.calculateReturnsSummary();
                         String originalInvoiceNo = returnsManager.getInvoiceNumber();
@@ -830,14 +828,12 @@ public class PaymentSectionView extends VBox {
                 node instanceof Button && node != processReturnsButton && 
                 ((Button) node).getText().equals("Cancel Returns Mode")
             );
-            
-            System.out.println("Updated payment content layout. Cancel Returns Mode button should be visible.");
         }
     }
     
     private void restoreNormalLayout() {
         // Restore the normal layout: Payment & Summary label at top, then Process Returns button below
-        System.out.println("Restoring normal payment layout.");
+        log.debug("paymentLayoutRestored");
         
         // Find and replace the header box with just the label
         for (int i = 0; i < paymentContent.getChildren().size(); i++) {
@@ -889,14 +885,14 @@ public class PaymentSectionView extends VBox {
         promoRefreshTimer.play();
     }
 
-    // Helper class for payment calculations
+    // Helper class for payment calculations (amounts in centavos)
     private static class PaymentCalculation {
-        final double subtotal;
-        final double discount;
-        final double tax;
-        final double total;
+        final long subtotal;
+        final long discount;
+        final long tax;
+        final long total;
         
-        PaymentCalculation(double subtotal, double discount, double tax, double total) {
+        PaymentCalculation(long subtotal, long discount, long tax, long total) {
             this.subtotal = subtotal;
             this.discount = discount;
             this.tax = tax;
@@ -904,21 +900,12 @@ public class PaymentSectionView extends VBox {
         }
     }
 
+    /**
+     * Current cart totals, kept up to date incrementally by the pricing engine
+     */
     private PaymentCalculation calculatePaymentTotals(ObservableList<CartItem> cart) {
-        applyDiscountsToCart(cart);
-        double subtotal = cart.stream().mapToDouble(CartItem::getSubtotal).sum();
-        double totalDiscount = getCurrentTotalDiscount(cart);
-        double tax = calculateTax(subtotal - totalDiscount);
-        double total = subtotal - totalDiscount + tax;
-        
-        return new PaymentCalculation(subtotal, totalDiscount, tax, total);
-    }
-
-    private double calculateTax(double taxableAmount) {
-        if (!cachedVatEnabled || cachedVatRate <= 0) {
-            return 0.0;
-        }
-        return taxableAmount * cachedVatRate / 100.0;
+        CartPricingEngine.Totals totals = pricingEngine.getTotals();
+        return new PaymentCalculation(totals.subtotal, totals.discount, totals.tax, totals.total);
     }
 
     private void setupCartListeners(VBox summaryBox, ObservableList<CartItem> cart, Label changeLabel) {
@@ -931,8 +918,7 @@ public class PaymentSectionView extends VBox {
         changeSummary.textProperty().bind(changeLabel.textProperty());
         
         Runnable updateSummaries = createSummaryUpdater(subtotalSummary, totalSummary, cart);
-        cart.addListener((ListChangeListener<CartItem>) c -> updateSummaries.run());
-        setupCartItemQuantityListeners(cart, updateSummaries);
+        pricingEngine.addListener(updateSummaries);
         updateSummaries.run();
     }
 
@@ -940,23 +926,15 @@ public class PaymentSectionView extends VBox {
         return () -> {
             PaymentCalculation calculation = calculatePaymentTotals(cart);
             
-            subtotalSummary.setText("Subtotal: ₱" + String.format("%.2f", calculation.subtotal));
-            discountSummary.setText("Discount: -₱" + String.format("%.2f", calculation.discount));
+            subtotalSummary.setText("Subtotal: ₱" + Money.format(calculation.subtotal));
+            discountSummary.setText("Discount: -₱" + Money.format(calculation.discount));
             
-            int vatRate = cachedVatEnabled ? cachedVatRate : 0;
-            taxSummary.setText("Tax (" + vatRate + "%): +₱" + String.format("%.2f", calculation.tax));
-            totalSummary.setText("Total: ₱" + String.format("%.2f", calculation.total));
+            int vatRate = pricingEngine.getVatRate();
+            taxSummary.setText("Tax (" + vatRate + "%): +₱" + Money.format(calculation.tax));
+            totalSummary.setText("Total: ₱" + Money.format(calculation.total));
         };
     }
 
-    private double getCurrentTotalDiscount(ObservableList<CartItem> cart) {
-        double totalDiscount = 0;
-        for (CartItem item : cart) {
-            totalDiscount += item.getDiscount();
-        }
-        return totalDiscount;
-    }
-
     private void runPaymentTask(ObservableList<CartItem> cart, Product[] products, Runnable onPaymentCompleted, 
                                int staffId, String cashierName, ComboBox<String> paymentMethod, 
                                TextField amountField, Label errorLabel, Label changeLabel, Button payBtn) {
@@ -1029,7 +1007,7 @@ public class PaymentSectionView extends VBox {
         }
         
         try {
-            double paidAmount = Double.parseDouble(amountText);
+            long paidAmount = Money.parse(amountText);
             
             if (paidAmount < calculation.total) {
                 String paymentType = PAYMENT_METHOD_CASH.equals(paymentMethod.getValue()) ? "cash" : "amount";
@@ -1093,12 +1071,12 @@ public class PaymentSectionView extends VBox {
         final boolean isValid;
         final String errorMessage;
         final PaymentCalculation calculation;
-        final double paidAmount;
+        final long paidAmount;
         final boolean isEwallet;
         final String referenceNumber;
         
         private PaymentValidationResult(boolean isValid, String errorMessage, PaymentCalculation calculation, 
-                                      double paidAmount, boolean isEwallet, String referenceNumber) {
+                                      long paidAmount, boolean isEwallet, String referenceNumber) {
             this.isValid = isValid;
             this.errorMessage = errorMessage;
             this.calculation = calculation;
@@ -1111,205 +1089,110 @@ public class PaymentSectionView extends VBox {
             return new PaymentValidationResult(false, errorMessage, null, 0, false, null);
         }
         
-        static PaymentValidationResult valid(PaymentCalculation calculation, double paidAmount, 
+        static PaymentValidationResult valid(PaymentCalculation calculation, long paidAmount, 
                                            boolean isEwallet, String referenceNumber) {
             return new PaymentValidationResult(true, null, calculation, paidAmount, isEwallet, referenceNumber);
         }
     }
 
-    private void processPayment(ObservableList<CartItem> cart, double subtotal, double discount, double tax, 
-                               double total, double paid, boolean isEwallet, String refNo, Runnable onPaymentCompleted, 
+    private void processPayment(ObservableList<CartItem> cart, long subtotal, long discount, long tax, 
+                               long total, long paid, boolean isEwallet, String refNo, Runnable onPaymentCompleted, 
                                TextField amountField, Label changeLabel, ComboBox<String> paymentMethod, 
                                String cashierName, Button payBtn, Label errorLabel) {
+        String paymentMethodValue = paymentMethod.getValue();
+        if (pos.db.SaleCommitService.isEnabled()) {
+            processPaymentGrouped(cart, subtotal, discount, tax, total, paid, isEwallet, refNo, onPaymentCompleted,
+                                  amountField, changeLabel, paymentMethod, paymentMethodValue, cashierName, errorLabel);
+            return;
+        }
+
         java.sql.Connection conn = null;
+        long start = System.nanoTime();
+        PosEvents.PaymentStage payment = PosEvents.PaymentStage.start("total", cart.size());
         try {
             conn = pos.db.DBConnection.getConnection();
             conn.setAutoCommit(false);
-            
-            TransactionData transactionData = createTransaction(conn, subtotal, discount, tax, total, paid, 
-                                                              paymentMethod.getValue(), isEwallet, refNo);
-            insertSaleItems(conn, cart, transactionData.posTransactionId);
-            updateInventory(conn, cart);
-            
-            // Release/confirm reservations after successful sale
-            confirmCartReservations(conn, cart);
-            
+
+            TransactionData transactionData = writeSale(conn, cart, subtotal, discount, tax, total, paid,
+                                                        paymentMethodValue, isEwallet, refNo);
+
+            PosEvents.PaymentStage commit = PosEvents.PaymentStage.start("commit", cart.size());
             conn.commit();
-            
-            showSuccessAndReset(cart, paid, total, paymentMethod.getValue(), onPaymentCompleted, 
-                              amountField, changeLabel, paymentMethod, cashierName, 
+            commit.finish(transactionData.receiptNumber, 0, "ok");
+            Metrics.recordSince("checkout.total", start);
+            payment.finish(transactionData.receiptNumber, 0, "ok");
+
+            showSuccessAndReset(cart, paid, total, paymentMethodValue, onPaymentCompleted,
+                              amountField, changeLabel, paymentMethod, cashierName,
                               transactionData.receiptNumber, discount, tax);
-            
+
         } catch (Exception ex) {
+            payment.finish(null, 0, failureOutcome(ex));
             rollbackTransaction(conn, ex, errorLabel);
         } finally {
             closeConnection(conn);
         }
     }
 
-    private TransactionData createTransaction(java.sql.Connection conn, double subtotal, double discount, 
-                                            double tax, double total, double paid, String paymentMethodValue, 
-                                            boolean isEwallet, String refNo) throws Exception {
-        String receiptNumber = PosTransactionDAO.generateNextInvoiceNo(conn);
-        
-        int posTransactionId = PosTransactionDAO.insertPosTransaction(
-            conn, receiptNumber, new Timestamp(System.currentTimeMillis()),
-            paymentMethodValue, staffId, subtotal, discount, tax, total, paid,
-            isEwallet ? refNo : null
-        );
-        
-        String transactionId = PosTransactionDAO.generateNextTransactionId(conn);
-        PosTransactionDAO.insertTransactionLog(
-            conn, transactionId, null, posTransactionId, null, null,
-            "in-store", "sale", "completed"
-        );
-        
-        return new TransactionData(receiptNumber, posTransactionId);
-    }
-
-    private void insertSaleItems(java.sql.Connection conn, ObservableList<CartItem> cart, int posTransactionId) throws Exception {
-        List<Map<String, Object>> items = prepareSaleItems(conn, cart);
-        PosTransactionDAO.insertPhysicalSaleItems(conn, posTransactionId, items);
-    }
-
-    private List<Map<String, Object>> prepareSaleItems(java.sql.Connection conn, ObservableList<CartItem> cart) {
-        List<Map<String, Object>> items = new ArrayList<>();
-        
-        for (CartItem item : cart) {
-            Map<String, Object> saleItem = createSaleItemData(conn, item);
-            items.add(saleItem);
-        }
-        
-        return items;
-    }
-
-    private Map<String, Object> createSaleItemData(java.sql.Connection conn, CartItem item) {
-        Map<String, Object> row = new HashMap<>();
-        row.put("sku", item.getProduct().getSku());
-        row.put("order_quantity", item.getQuantity());
-        row.put("stock_quantity", item.getProduct().getQuantity());
-        row.put("subtotal", item.getSubtotal());
-        
-        try {
-            InventoryItemData inventoryData = getInventoryItemData(conn, item.getProduct().getSku());
-            row.put("sale_channel", inventoryData.saleChannel);
-            row.put("online_inventory_item_id", inventoryData.onlineInventoryItemId);
-            row.put("in_store_inventory_item_id", inventoryData.inStoreInventoryItemId);
-        } catch (RuntimeException e) {
-            // Re-throw with more context about which item failed
-            throw new RuntimeException("Failed to process item '" + item.getProduct().getDescription() + 
-                "' (SKU: " + item.getProduct().getSku() + "): " + e.getMessage(), e);
-        }
-        
-        return row;
-    }
-
-    private InventoryItemData getInventoryItemData(java.sql.Connection conn, String sku) {
+    /**
+     * Hand the sale to the store-level group-commit service and wait for its group to commit.
+     * The sale is still all-or-nothing: it runs in its own savepoint inside the group transaction.
+     */
+    private void processPaymentGrouped(ObservableList<CartItem> cart, long subtotal, long discount, long tax,
+                                       long total, long paid, boolean isEwallet, String refNo, Runnable onPaymentCompleted,
+                                       TextField amountField, Label changeLabel, ComboBox<String> paymentMethod,
+                                       String paymentMethodValue, String cashierName, Label errorLabel) {
+        long start = System.nanoTime();
+        PosEvents.PaymentStage payment = PosEvents.PaymentStage.start("total", cart.size());
         try {
-            ProductDAO.InventoryItemInfo info = ProductDAO.getInventoryItemInfoBySku(conn, sku);
-            if (info != null) {
-                String saleChannel = info.saleChannel;
-                Integer onlineId = null;
-                Integer inStoreId = null;
-                
-                // For 'both' and 'online' products, use online inventory item ID
-                if ("both".equalsIgnoreCase(saleChannel) || "online".equalsIgnoreCase(saleChannel)) {
-                    onlineId = info.inventoryItemId;
-                }
-                // For 'in-store' products, use in-store inventory item ID  
-                else if ("in-store".equalsIgnoreCase(saleChannel)) {
-                    inStoreId = info.inventoryItemId;
-                }
-                
-                return new InventoryItemData(saleChannel, onlineId, inStoreId);
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        
-        return new InventoryItemData("in-store", null, null);
-    }
-
-    private void updateInventory(java.sql.Connection conn, ObservableList<CartItem> cart) {
-        Map<String, Integer> inStoreMap = new HashMap<>();
-        Map<String, Integer> onlineMap = new HashMap<>();
-        
-        categorizeInventoryUpdates(conn, cart, inStoreMap, onlineMap);
-        executeInventoryUpdates(conn, inStoreMap, onlineMap);
-    }
-
-    private void categorizeInventoryUpdates(java.sql.Connection conn, ObservableList<CartItem> cart,
-                                          Map<String, Integer> inStoreMap, Map<String, Integer> onlineMap) {
-        for (CartItem item : cart) {
-            String sku = item.getProduct().getSku();
-            int quantity = item.getQuantity();
-            String saleChannel = getSaleChannel(conn, sku);
-            
-            if ("both".equalsIgnoreCase(saleChannel) || "online".equalsIgnoreCase(saleChannel)) {
-                onlineMap.put(sku, quantity);
-            } else {
-                inStoreMap.put(sku, quantity);
-            }
+            // The committer thread must not touch the FX cart list; it gets a snapshot of the lines
+            List<CartItem> lines = List.copyOf(cart);
+            pos.db.SaleCommitService.SaleWriter<TransactionData> sale = conn -> writeSale(
+                conn, lines, subtotal, discount, tax, total, paid, paymentMethodValue, isEwallet, refNo);
+            TransactionData transactionData = pos.db.SaleCommitService.getInstance().submit(sale).get();
+            Metrics.recordSince("checkout.total", start);
+            payment.finish(transactionData.receiptNumber, 0, "ok");
+
+            showSuccessAndReset(cart, paid, total, paymentMethodValue, onPaymentCompleted,
+                              amountField, changeLabel, paymentMethod, cashierName,
+                              transactionData.receiptNumber, discount, tax);
+        } catch (java.util.concurrent.ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            Exception failure = cause instanceof Exception ? (Exception) cause : ex;
+            payment.finish(null, 0, failureOutcome(failure));
+            rollbackTransaction(null, failure, errorLabel);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            payment.finish(null, 0, "interrupted");
+            rollbackTransaction(null, ex, errorLabel);
         }
     }
 
-    private String getSaleChannel(java.sql.Connection conn, String sku) {
-        try {
-            ProductDAO.InventoryInfo info = ProductDAO.getInventoryInfoBySku(conn, sku);
-            return info != null ? info.saleChannel : "in-store";
-        } catch (Exception e) {
-            e.printStackTrace();
-            return "in-store";
-        }
+    private static String failureOutcome(Exception ex) {
+        return ex instanceof ProductDAO.InsufficientStockException ? "insufficientStock" : "error";
     }
 
-    private void executeInventoryUpdates(java.sql.Connection conn, Map<String, Integer> inStoreMap, Map<String, Integer> onlineMap) {
-        try {
-            if (!inStoreMap.isEmpty()) {
-                ProductDAO.batchUpdateInventory(conn, inStoreMap, "in-store");
-            }
-            if (!onlineMap.isEmpty()) {
-                ProductDAO.batchUpdateInventory(conn, onlineMap, "both");
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-    }
-    
     /**
-     * OPTIMIZED: Clear all cart reservations after successful checkout using transaction IDs.
-     * Single or batched DELETE query based on number of unique transaction IDs.
+     * Write all rows of one sale on the given connection without committing
      */
-    private void confirmCartReservations(java.sql.Connection conn, ObservableList<CartItem> cart) {
-        try {
-            // Collect unique transaction IDs from cart
-            List<String> transactionIds = cart.stream()
-                .map(CartItem::getTransactionId)
-                .distinct()
-                .collect(java.util.stream.Collectors.toList());
-            
-            if (transactionIds.isEmpty()) {
-                return;
-            }
-            
-            // Single optimized query to clear all reservations
-            int releasedCount = pos.db.StockReservationDAO.clearReservationsByTransactions(conn, transactionIds);
-            System.out.println("Released " + releasedCount + " stock reservations after checkout");
-            
-        } catch (Exception e) {
-            // Log error but don't fail the transaction
-            // Reservations will expire automatically after 15 minutes
-            System.err.println("Warning: Failed to release reservations: " + e.getMessage());
-            e.printStackTrace();
+    private TransactionData writeSale(java.sql.Connection conn, List<CartItem> cart, long subtotal,
+                                      long discount, long tax, long total, long paid,
+                                      String paymentMethodValue, boolean isEwallet, String refNo) throws Exception {
+        CheckoutDAO.SaleResult sale = CheckoutDAO.writeSale(conn, cart, staffId, subtotal, discount, tax, total, paid,
+                                                            paymentMethodValue, isEwallet ? refNo : null);
+        if (sale.releasedReservations >= 0) {
+            log.debug("reservationsReleased", "invoiceNo", sale.invoiceNo, "reservations", sale.releasedReservations);
         }
+        return new TransactionData(sale.invoiceNo, sale.posTransactionId);
     }
 
-    private void showSuccessAndReset(ObservableList<CartItem> cart, double paid, double total, String paymentMethodValue,
+    private void showSuccessAndReset(ObservableList<CartItem> cart, long paid, long total, String paymentMethodValue,
                                    Runnable onPaymentCompleted, TextField amountField, Label changeLabel,
                                    ComboBox<String> paymentMethod, String cashierName, String receiptNumber,
-                                   double discount, double tax) {
+                                   long discount, long tax) {
         javafx.application.Platform.runLater(() -> {
-            ReceiptDialog.show(cart, paid, total, paymentMethodValue, paid - total, () -> {
+            // Receipt is rendered and printed in the background; the form resets immediately
+            ReceiptDialog.show(cart, paid, total, paymentMethodValue, () -> {
                 onPaymentCompleted.run();
                 resetPaymentForm(cart, amountField, paymentMethod);
             }, cashierName, receiptNumber, discount, tax);
@@ -1330,12 +1213,18 @@ public class PaymentSectionView extends VBox {
     }
 
     private void rollbackTransaction(java.sql.Connection conn, Exception ex, Label errorLabel) {
+        Metrics.increment("checkout.failed");
         if (conn != null) {
             try { 
                 conn.rollback(); 
             } catch (Exception ignore) {}
         }
         ex.printStackTrace();
+        if (ex instanceof ProductDAO.InsufficientStockException) {
+            String message = ex.getMessage();
+            javafx.application.Platform.runLater(() -> errorLabel.setText(message));
+            return;
+        }
         javafx.application.Platform.runLater(() -> errorLabel.setText("Error processing transaction."));
     }
 
@@ -1358,18 +1247,6 @@ public class PaymentSectionView extends VBox {
         }
     }
 
-    private static class InventoryItemData {
-        final String saleChannel;
-        final Integer onlineInventoryItemId;
-        final Integer inStoreInventoryItemId;
-        
-        InventoryItemData(String saleChannel, Integer onlineInventoryItemId, Integer inStoreInventoryItemId) {
-            this.saleChannel = saleChannel;
-            this.onlineInventoryItemId = onlineInventoryItemId;
-            this.inStoreInventoryItemId = inStoreInventoryItemId;
-        }
-    }
-
     private void refreshPromotions() {
         loadPromotions();
     }
@@ -1382,34 +1259,6 @@ public class PaymentSectionView extends VBox {
             cachedVatRate = 0;
             cachedVatEnabled = false;
         }
+        pricingEngine.setVatRate(cachedVatEnabled ? cachedVatRate : 0);
     }
-
-    private void applyDiscountsToCart(ObservableList<CartItem> cart) {
-        for (CartItem item : cart) {
-            double discount = calculateItemDiscount(item);
-            item.setDiscount(discount);
-        }
-    }
-
-    private double calculateItemDiscount(CartItem item) {
-        double price = item.getProduct().getPrice();
-        int quantity = item.getQuantity();
-        int categoryId = item.getProduct().getCategoryId();
-        
-        pos.db.PromotionDao.Promotion bestPromo = pos.db.PromotionDao.getBestPromotionForItem(
-            null, item.getProduct().getSku(), categoryId, price, quantity, cachedPromotions
-        );
-        
-        if (bestPromo == null) {
-            return 0.0;
-        }
-        
-        if ("percentage".equals(bestPromo.type)) {
-            return price * quantity * (bestPromo.value / 100.0);
-        } else if ("fixed".equals(bestPromo.type)) {
-            return Math.min(bestPromo.value, price * quantity);
-        }
-        
-        return 0.0;
-    }
-} 
\ No newline at end of file
+}
\ No newline at end of file
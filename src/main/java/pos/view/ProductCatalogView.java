@@ -11,6 +11,8 @@ import javafx.scene.layout.*;
 import javafx.scene.text.Font;
 import pos.model.CartItem;
 import pos.model.Product;
+import pos.metrics.Metrics;
+import pos.metrics.PosEvents;
 import java.util.*;
 import java.util.stream.Collectors;
 import javafx.animation.PauseTransition;
@@ -218,11 +220,7 @@ public class ProductCatalogView extends VBox {
     }
 
     private void performSearch(Product[] products, String searchValue) {
-        filteredProducts.setAll(
-            Arrays.stream(products)
-                .filter(p -> p.getSku().toLowerCase().contains(searchValue.toLowerCase()) && p.getQuantity() > 0)
-                .collect(Collectors.toList())
-        );
+        filteredProducts.setAll(ProductSearch.filterInStock(products, searchValue));
         currentPage = 1;
         updateProductGridResponsive(filteredProducts, getWidth());
     }
@@ -233,25 +231,35 @@ public class ProductCatalogView extends VBox {
             return; // Don't process empty search
         }
         
-        String searchLower = search.toLowerCase();
-        
         // First, search in ALL products for exact SKU match (for barcode scanning)
-        Optional<Product> exactMatch = Arrays.stream(allProducts)
-            .filter(p -> p.getSku().toLowerCase().equals(searchLower))
-            .findFirst();
+        long start = System.nanoTime();
+        PosEvents.Scan scanEvent = new PosEvents.Scan();
+        scanEvent.begin();
+        scanEvent.sku = search;
+        Product product = ProductSearch.findBySku(allProducts, search);
         
-        if (exactMatch.isPresent()) {
-            Product product = exactMatch.get();
+        if (product != null) {
             if (product.getQuantity() > 0) {
-                addProductToCart(product);
+                boolean added = addProductToCart(product);
                 searchField.clear();
+                if (added) {
+                    Metrics.recordSince("scan.toCart", start);
+                }
+                scanEvent.outcome = added ? "added" : "rejected";
+                scanEvent.commit();
             } else {
                 // Product found but out of stock
+                Metrics.increment("scan.outOfStock");
+                scanEvent.outcome = "outOfStock";
+                scanEvent.commit();
                 showOutOfStockDialog(product);
                 searchField.clear();
             }
         } else {
             // No exact match found - show error dialog
+            Metrics.increment("scan.notFound");
+            scanEvent.outcome = "notFound";
+            scanEvent.commit();
             showProductNotFoundDialog(search);
             searchField.clear();
         }
@@ -275,7 +283,12 @@ public class ProductCatalogView extends VBox {
         });
     }
 
-    private void addProductToCart(Product product) {
+    /**
+     * Reserve one more of the product and add it to the cart
+     * @return false if it couldn't be reserved (the cashier has been shown why)
+     */
+    private boolean addProductToCart(Product product) {
+        boolean success = false;
         try (java.sql.Connection conn = pos.db.DBConnection.getConnection()) {
             // Find if product already exists in cart
             CartItem found = cart.stream()
@@ -288,7 +301,7 @@ public class ProductCatalogView extends VBox {
                 int newQty = found.getQuantity() + 1;
                 
                 // Single optimized query: check stock and upsert reservation
-                boolean success = pos.db.StockReservationDAO.upsertReservation(
+                success = pos.db.StockReservationDAO.upsertReservation(
                     conn, found.getTransactionId(), product.getSku(), newQty);
                 
                 if (success) {
@@ -302,7 +315,7 @@ public class ProductCatalogView extends VBox {
                 CartItem newItem = new CartItem(product, 1, sessionTransactionId);
                 
                 // Single optimized query: check stock and create reservation
-                boolean success = pos.db.StockReservationDAO.upsertReservation(
+                success = pos.db.StockReservationDAO.upsertReservation(
                     conn, sessionTransactionId, product.getSku(), 1);
                 
                 if (success) {
@@ -318,6 +331,7 @@ public class ProductCatalogView extends VBox {
             e.printStackTrace();
             showErrorDialog("Failed to add product to cart: " + e.getMessage());
         }
+        return success;
     }
 
     private void updateQuantityLabel(Product product) {
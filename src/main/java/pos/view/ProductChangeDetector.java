@@ -0,0 +1,112 @@
+package pos.view;
+
+import pos.db.ProductDAO;
+import pos.model.Product;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Hash-based detection of new, modified and archived products between polls.
+ * Keeps the last known product and data hash per SKU; analyze() compares a poll result
+ * against them and updates them. Not thread-safe - POSView only calls it from the FX thread.
+ */
+public class ProductChangeDetector {
+
+    /**
+     * Result of one poll
+     */
+    public static class Changes {
+        public final List<Product> newProducts = new ArrayList<>();
+        public final List<Product> modifiedProducts = new ArrayList<>();
+        public final List<String> archivedSkus = new ArrayList<>();
+
+        public boolean isEmpty() {
+            return newProducts.isEmpty() && modifiedProducts.isEmpty() && archivedSkus.isEmpty();
+        }
+    }
+
+    private final Map<String, Product> lastKnownProducts = new HashMap<>(); // Cache to prevent infinite loops
+    private final Map<String, String> lastKnownHashes = new HashMap<>(); // Cache product hashes for efficient comparison
+
+    /**
+     * Seed the cache with the products already shown, so they aren't reported as new
+     */
+    public void prime(Product[] products) {
+        for (Product product : products) {
+            lastKnownProducts.put(product.getSku(), new Product(
+                product.getSku(), product.getPrice(), product.getDescription(),
+                product.getImagePath(), product.getQuantity(), product.getCategoryId()
+            ));
+
+            // Same format as ProductWithStatus.generateCurrentHash() for an active product
+            String initialHash = product.getSku() + "|" + product.getPrice() + "|" +
+                                product.getQuantity() + "|" + "active";
+            lastKnownHashes.put(product.getSku(), initialHash);
+        }
+    }
+
+    public int size() {
+        return lastKnownProducts.size();
+    }
+
+    /**
+     * Compare a poll result with the cache and update the cache
+     * @param converter builds the Product shown in the catalog for a new or modified row
+     */
+    public Changes analyze(List<ProductDAO.ProductWithStatus> currentProducts,
+                           Function<ProductDAO.ProductWithStatus, Product> converter) {
+        Changes changes = new Changes();
+
+        // Track current products by SKU for efficient lookup
+        Map<String, ProductDAO.ProductWithStatus> currentProductMap = new HashMap<>();
+        for (ProductDAO.ProductWithStatus product : currentProducts) {
+            currentProductMap.put(product.getSku(), product);
+        }
+
+        // Process current products for new/modified detection
+        for (ProductDAO.ProductWithStatus currentProduct : currentProducts) {
+            String sku = currentProduct.getSku();
+            String currentHash = currentProduct.getDataHash();
+            String cachedHash = lastKnownHashes.get(sku);
+
+            if (currentProduct.isArchived()) {
+                // Product was archived
+                if (lastKnownProducts.containsKey(sku)) {
+                    changes.archivedSkus.add(sku);
+                    lastKnownProducts.remove(sku);
+                    lastKnownHashes.remove(sku);
+                }
+            } else if (currentProduct.isActive()) {
+                // Product is active
+                if (cachedHash == null) {
+                    // New product (not in cache)
+                    Product newProduct = converter.apply(currentProduct);
+                    changes.newProducts.add(newProduct);
+                    lastKnownProducts.put(sku, newProduct);
+                    lastKnownHashes.put(sku, currentHash);
+                } else if (!cachedHash.equals(currentHash)) {
+                    // Modified product (hash changed)
+                    Product modifiedProduct = converter.apply(currentProduct);
+                    changes.modifiedProducts.add(modifiedProduct);
+                    lastKnownProducts.put(sku, modifiedProduct);
+                    lastKnownHashes.put(sku, currentHash);
+                }
+                // If hash matches, no change - skip processing
+            }
+        }
+
+        // Check for products that are no longer in database (deleted/archived)
+        for (String cachedSku : new ArrayList<>(lastKnownProducts.keySet())) {
+            if (!currentProductMap.containsKey(cachedSku)) {
+                changes.archivedSkus.add(cachedSku);
+                lastKnownProducts.remove(cachedSku);
+                lastKnownHashes.remove(cachedSku);
+            }
+        }
+        return changes;
+    }
+}
@@ -0,0 +1,41 @@
+package pos.view;
+
+import pos.model.Product;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * SKU search over the catalog, kept free of UI code so it can be benchmarked on its own.
+ */
+public final class ProductSearch {
+
+    private ProductSearch() {}
+
+    /**
+     * In-stock products whose SKU contains the query (case-insensitive)
+     */
+    public static List<Product> filterInStock(Product[] products, String query) {
+        String needle = query.toLowerCase(Locale.ROOT);
+        List<Product> matches = new ArrayList<>();
+        for (Product p : products) {
+            if (p.getQuantity() > 0 && p.getSku().toLowerCase(Locale.ROOT).contains(needle)) {
+                matches.add(p);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Product with exactly this SKU (case-insensitive), in stock or not, or null
+     */
+    public static Product findBySku(Product[] products, String sku) {
+        for (Product p : products) {
+            if (p.getSku().equalsIgnoreCase(sku)) {
+                return p;
+            }
+        }
+        return null;
+    }
+}
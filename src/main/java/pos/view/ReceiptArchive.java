@@ -0,0 +1,315 @@
+package pos.view;
+
+import net.sf.jasperreports.engine.JasperPrint;
+import pos.log.Log;
+import pos.log.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local append-only archive of every receipt that was printed, indexed by invoice / return number.
+ * Reprints read the stored receipt back instead of re-querying the sale and refilling the template.
+ *
+ * Each record is a small header followed by the gzipped receipt:
+ *   int magic, byte kind, byte format, short numberLength, number (UTF-8), long createdAt,
+ *   int payloadLength, int payloadCrc32, payload
+ * Jasper receipts are stored as a serialized JasperPrint, ESC/POS receipts as the raw bytes.
+ * The index is rebuilt from the headers when the archive is opened; a record cut short by a
+ * crash is dropped from the end of the file.
+ *
+ * Location: -Dpos.receipt.archive=PATH (default: receipt_archive.dat in the working directory)
+ */
+public class ReceiptArchive {
+    private static final Logger log = Log.get(ReceiptArchive.class);
+    private static final int MAGIC = 0x52435054; // "RCPT"
+    private static final int FIXED_HEADER = 4 + 1 + 1 + 2 + 8 + 4 + 4;
+    /** Longest receipt number (UTF-8 bytes) the writer accepts; a longer length in a header means corruption */
+    private static final int MAX_NUMBER_BYTES = 256;
+
+    public enum Kind {
+        SALE('S'), RETURN('R');
+
+        final byte code;
+
+        Kind(char code) {
+            this.code = (byte) code;
+        }
+
+        static Kind of(byte code) {
+            for (Kind kind : values()) {
+                if (kind.code == code) return kind;
+            }
+            return null;
+        }
+    }
+
+    public enum Format {
+        JASPER('J'), ESCPOS('E');
+
+        final byte code;
+
+        Format(char code) {
+            this.code = (byte) code;
+        }
+
+        static Format of(byte code) {
+            for (Format format : values()) {
+                if (format.code == code) return format;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Index entry for one archived receipt
+     */
+    public static class Entry {
+        public final Kind kind;
+        public final Format format;
+        public final String number;
+        public final long createdAt;
+        final long payloadOffset;
+        final int payloadLength;
+        final int payloadCrc;
+
+        Entry(Kind kind, Format format, String number, long createdAt, long payloadOffset, int payloadLength, int payloadCrc) {
+            this.kind = kind;
+            this.format = format;
+            this.number = number;
+            this.createdAt = createdAt;
+            this.payloadOffset = payloadOffset;
+            this.payloadLength = payloadLength;
+            this.payloadCrc = payloadCrc;
+        }
+    }
+
+    private final File file;
+    private final Map<String, Entry> index = new HashMap<>();
+    private FileChannel channel;
+
+    public ReceiptArchive(File file) {
+        this.file = file;
+    }
+
+    public static ReceiptArchive fromSystemProperties() {
+        return new ReceiptArchive(new File(System.getProperty("pos.receipt.archive", "receipt_archive.dat")));
+    }
+
+    /**
+     * Open the archive file and build the index (done on first use if not called explicitly)
+     */
+    public synchronized void open() throws IOException {
+        if (channel != null) {
+            return;
+        }
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Cannot create directory " + parent.getAbsolutePath());
+        }
+        long start = System.currentTimeMillis();
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long validEnd = buildIndex();
+        if (validEnd < channel.size()) {
+            log.warn("droppingIncompleteData", "bytes", channel.size() - validEnd, "file", file.getAbsolutePath());
+            channel.truncate(validEnd);
+        }
+        log.debug("indexed", "file", file.getName(), "receipts", index.size(), "ms", System.currentTimeMillis() - start);
+    }
+
+    public synchronized void close() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("closeFailed", e);
+        }
+        channel = null;
+        index.clear();
+    }
+
+    /**
+     * Store a filled Jasper receipt
+     */
+    public void appendJasper(Kind kind, String number, JasperPrint print) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(16 * 1024);
+        try (ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(buffer))) {
+            out.writeObject(print);
+        }
+        append(kind, Format.JASPER, number, buffer.toByteArray());
+    }
+
+    /**
+     * Store a raw ESC/POS receipt
+     */
+    public void appendRaw(Kind kind, String number, byte[] data) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(data.length / 2 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(buffer)) {
+            out.write(data);
+        }
+        append(kind, Format.ESCPOS, number, buffer.toByteArray());
+    }
+
+    /**
+     * Latest archived receipt for a number, or null if it was never archived
+     */
+    public synchronized Entry find(Kind kind, String number) throws IOException {
+        open();
+        return index.get(key(kind, number));
+    }
+
+    public synchronized int size() throws IOException {
+        open();
+        return index.size();
+    }
+
+    /**
+     * Read back a Jasper receipt
+     */
+    public JasperPrint readJasperPrint(Entry entry) throws IOException {
+        if (entry.format != Format.JASPER) {
+            throw new IOException("Receipt " + entry.number + " is not a Jasper receipt");
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new GZIPInputStream(new ByteArrayInputStream(readPayload(entry))))) {
+            return (JasperPrint) in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Cannot read archived receipt " + entry.number, e);
+        }
+    }
+
+    /**
+     * Read back a raw ESC/POS receipt
+     */
+    public byte[] readRaw(Entry entry) throws IOException {
+        if (entry.format != Format.ESCPOS) {
+            throw new IOException("Receipt " + entry.number + " is not an ESC/POS receipt");
+        }
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(readPayload(entry)))) {
+            return in.readAllBytes();
+        }
+    }
+
+    private synchronized void append(Kind kind, Format format, String number, byte[] payload) throws IOException {
+        open();
+        byte[] numberBytes = number.getBytes(StandardCharsets.UTF_8);
+        if (numberBytes.length > MAX_NUMBER_BYTES) {
+            throw new IOException("Receipt number too long to archive: " + number);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        long createdAt = System.currentTimeMillis();
+
+        ByteArrayOutputStream record = new ByteArrayOutputStream(FIXED_HEADER + numberBytes.length + payload.length);
+        DataOutputStream out = new DataOutputStream(record);
+        out.writeInt(MAGIC);
+        out.writeByte(kind.code);
+        out.writeByte(format.code);
+        out.writeShort(numberBytes.length);
+        out.write(numberBytes);
+        out.writeLong(createdAt);
+        out.writeInt(payload.length);
+        out.writeInt((int) crc.getValue());
+        out.write(payload);
+        out.flush();
+
+        long recordStart = channel.size();
+        ByteBuffer buffer = ByteBuffer.wrap(record.toByteArray());
+        long position = recordStart;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        channel.force(false);
+
+        long payloadOffset = recordStart + FIXED_HEADER + numberBytes.length;
+        index.put(key(kind, number), new Entry(kind, format, number, createdAt, payloadOffset, payload.length, (int) crc.getValue()));
+    }
+
+    private byte[] readPayload(Entry entry) throws IOException {
+        FileChannel ch;
+        synchronized (this) {
+            open();
+            ch = channel;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(entry.payloadLength);
+        long position = entry.payloadOffset;
+        while (buffer.hasRemaining()) {
+            int read = ch.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Archived receipt " + entry.number + " is truncated");
+            }
+            position += read;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array());
+        if ((int) crc.getValue() != entry.payloadCrc) {
+            throw new IOException("Archived receipt " + entry.number + " is corrupt");
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Scan the record headers, skipping payloads
+     * @return end of the last complete record
+     */
+    private long buildIndex() throws IOException {
+        long size = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(FIXED_HEADER + MAX_NUMBER_BYTES);
+        while (position + FIXED_HEADER <= size) {
+            header.clear().limit(8);
+            if (!readFully(header, position)) break;
+            header.flip();
+            if (header.getInt() != MAGIC) break;
+            Kind kind = Kind.of(header.get());
+            Format format = Format.of(header.get());
+            int numberLength = header.getShort() & 0xFFFF;
+            if (kind == null || format == null || numberLength > MAX_NUMBER_BYTES) break;
+
+            header.clear().limit(numberLength + 16);
+            if (!readFully(header, position + 8)) break;
+            header.flip();
+            byte[] numberBytes = new byte[numberLength];
+            header.get(numberBytes);
+            long createdAt = header.getLong();
+            int payloadLength = header.getInt();
+            int payloadCrc = header.getInt();
+
+            long payloadOffset = position + FIXED_HEADER + numberLength;
+            if (payloadLength < 0 || payloadOffset + payloadLength > size) break;
+
+            String number = new String(numberBytes, StandardCharsets.UTF_8);
+            index.put(key(kind, number), new Entry(kind, format, number, createdAt, payloadOffset, payloadLength, payloadCrc));
+            position = payloadOffset + payloadLength;
+        }
+        return position;
+    }
+
+    private boolean readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) return false;
+            position += read;
+        }
+        return true;
+    }
+
+    private static String key(Kind kind, String number) {
+        return kind.name() + ":" + number;
+    }
+}
@@ -2,6 +2,7 @@ package pos.view;
 
 import javafx.collections.ObservableList;
 import pos.model.CartItem;
+import pos.model.Money;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import javafx.scene.text.Font;
@@ -29,76 +30,68 @@ import net.sf.jasperreports.engine.JasperPrintManager;
 import javafx.application.Platform;
 
 public class ReceiptDialog {
-    public static void show(ObservableList<CartItem> cartSnapshot, double paid, double total, String paymentType, double change, Runnable afterPrint, String cashierName, String receiptNumber, double discount, double tax) {
-        int vatRate = 0;
-        if (total - discount > 0.01) {
-            vatRate = (int)Math.round((tax / (total - discount)) * 100);
-        }
+    /**
+     * Queue the receipt for a completed sale and return immediately.
+     * The cart is copied into a snapshot first, so afterPrint may clear it right away.
+     * Amounts are in centavos. Terminals started with -Dpos.receipt.backend=escpos print
+     * the receipt as raw ESC/POS instead of filling the Jasper template.
+     */
+    public static void show(ObservableList<CartItem> cartSnapshot, long paid, long total, String paymentType, Runnable afterPrint, String cashierName, String receiptNumber, long discount, long tax) {
         try {
-            generateAndPrintJasperReceipt(cartSnapshot, paid, total, paymentType, change, "", "", cashierName, receiptNumber, discount, tax, vatRate);
+            ReceiptSnapshot receipt = ReceiptSnapshot.fromCart(cartSnapshot, receiptNumber, cashierName, paymentType, paid, total, discount, tax);
+            if (EscPosPrinter.isEnabled()) {
+                ReceiptQueue.getInstance().submitRaw(ReceiptArchive.Kind.SALE, receiptNumber, () -> EscPosReceiptRenderer.render(receipt));
+            } else {
+                ReceiptQueue.getInstance().submit(ReceiptArchive.Kind.SALE, receiptNumber, () -> fillJasperReceipt(receipt));
+            }
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         if (afterPrint != null) afterPrint.run();
     }
 
-    private static void generateAndPrintJasperReceipt(
-        ObservableList<CartItem> cartSnapshot, double paid, double totalInput, String paymentType, double change, String customerName, String customerPhone, String cashierName, String receiptNumber, double discount, double tax, int vatRate
-    ) throws Exception {
-        // Calculate values
-        double subtotal = cartSnapshot.stream().mapToDouble(CartItem::getSubtotal).sum();
-        double total = subtotal - discount + tax;
-
+    /**
+     * Fill the sale receipt template from a snapshot (runs on the receipt thread)
+     */
+    static JasperPrint fillJasperReceipt(ReceiptSnapshot receipt) throws Exception {
         // Prepare parameters
         java.util.Map<String, Object> params = new java.util.HashMap<>();
         params.put("StoreName", "Dream Fashion Shop");
         params.put("StoreAddress", "123 Main St, City, Country");
         params.put("StorePhone", "123-456-7890");
         // Extract integer from zero-padded receipt number
-        String receiptNumOnly = receiptNumber.replaceFirst("^0+", "");
+        String receiptNumOnly = receipt.receiptNumber.replaceFirst("^0+", "");
         if (receiptNumOnly.isEmpty()) receiptNumOnly = "0";
         params.put("ReceiptNumber", receiptNumOnly); // only the number part
-        params.put("DateTime", java.time.LocalDateTime.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
-        params.put("Cashier", cashierName);
-        params.put("Subtotal", subtotal);
-        params.put("Discount", discount);
-        params.put("TaxLabel", "Tax (" + vatRate + "%)");
-        params.put("Tax", tax);
-        params.put("Total", total);
-        params.put("Paid", paid);
-        params.put("Change", change);
-        params.put("CustomerName", customerName);
-        params.put("CustomerPhone", customerPhone);
-        params.put("PaymentMethod", paymentType);
+        params.put("DateTime", receipt.issuedAt.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
+        params.put("Cashier", receipt.cashierName);
+        params.put("Subtotal", Money.toPesos(receipt.subtotal));
+        params.put("Discount", Money.toPesos(receipt.discount));
+        params.put("TaxLabel", "Tax (" + receipt.vatRate + "%)");
+        params.put("Tax", Money.toPesos(receipt.tax));
+        params.put("Total", Money.toPesos(receipt.total));
+        params.put("Paid", Money.toPesos(receipt.paid));
+        params.put("Change", Money.toPesos(receipt.change));
+        params.put("CustomerName", receipt.customerName);
+        params.put("CustomerPhone", receipt.customerPhone);
+        params.put("PaymentMethod", receipt.paymentMethod);
         params.put("DiscountSign", "-");
         params.put("TaxSign", "+");
 
         // Prepare item data
         java.util.List<java.util.Map<String, Object>> items = new java.util.ArrayList<>();
-        for (CartItem item : cartSnapshot) {
+        for (ReceiptSnapshot.Line line : receipt.lines) {
             java.util.Map<String, Object> row = new java.util.HashMap<>();
-            row.put("ItemName", item.getProduct().getSku());
-            row.put("Quantity", item.getQuantity());
-            row.put("UnitPrice", item.getProduct().getPrice());
-            row.put("TotalPrice", item.getSubtotal());
+            row.put("ItemName", line.sku);
+            row.put("Quantity", line.quantity);
+            row.put("UnitPrice", Money.toPesos(line.unitPrice));
+            row.put("TotalPrice", Money.toPesos(line.lineTotal));
             items.add(row);
         }
-        net.sf.jasperreports.engine.data.JRBeanCollectionDataSource dataSource = new net.sf.jasperreports.engine.data.JRBeanCollectionDataSource(items);
-
-        // Compile and fill the report
-        net.sf.jasperreports.engine.JasperReport jasperReport = net.sf.jasperreports.engine.JasperCompileManager.compileReport("receipt_template.jrxml");
-        net.sf.jasperreports.engine.JasperPrint jasperPrint = net.sf.jasperreports.engine.JasperFillManager.fillReport(jasperReport, params, dataSource);
-
-        // Now print
-        //JasperPrintManager.printReport(jasperPrint, true);
-
-        // Debug prints and show JasperViewer on JavaFX thread
-        System.out.println("About to show receipt...");
-        Platform.runLater(() -> {
-            net.sf.jasperreports.view.JasperViewer.viewReport(jasperPrint, false);
-            System.out.println("Receipt dialog should have appeared.");
-        });
+        JRBeanCollectionDataSource dataSource = new JRBeanCollectionDataSource(items);
 
-        
+        // Fill the cached, already-compiled report
+        JasperReport jasperReport = ReceiptTemplates.get(ReceiptTemplates.SALE_RECEIPT);
+        return JasperFillManager.fillReport(jasperReport, params, dataSource);
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,304 @@
+package pos.view;
+
+import javafx.application.Platform;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.JasperPrintManager;
+import pos.log.Log;
+import pos.log.Logger;
+import pos.metrics.Metrics;
+import pos.metrics.PosEvents;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background receipt pipeline.
+ * Receipts are queued (bounded) and rendered and printed one at a time on a daemon thread,
+ * so the cashier can start the next cart as soon as the sale commits. Printer failures are
+ * retried with a short backoff; if the printer stays unavailable the receipt is opened in
+ * the viewer instead so it isn't lost.
+ *
+ * Jasper receipts open in the JasperViewer by default; start the POS with -Dpos.receipt.print=true
+ * to send them straight to the default printer. Raw ESC/POS receipts go to the EscPosPrinter
+ * configured for the terminal.
+ *
+ * Every rendered receipt is stored in the ReceiptArchive before printing, so reprint()
+ * prints it again without touching the database or the templates.
+ */
+public class ReceiptQueue {
+    private static final Logger log = Log.get(ReceiptQueue.class);
+
+    private static final int CAPACITY = 32;
+    private static final int MAX_PRINT_ATTEMPTS = 3;
+    private static final long RETRY_BACKOFF_MS = 1000;
+
+    private static ReceiptQueue instance;
+
+    /**
+     * Renders one receipt. Runs on the receipt thread, never on the FX thread.
+     */
+    public interface ReceiptJob {
+        JasperPrint render() throws Exception;
+    }
+
+    /**
+     * Renders one receipt as raw printer bytes (ESC/POS). Runs on the receipt thread.
+     */
+    public interface RawReceiptJob {
+        byte[] render() throws Exception;
+    }
+
+    private interface PrintAction {
+        void print() throws Exception;
+    }
+
+    private static class QueuedReceipt {
+        final ReceiptArchive.Kind kind; // null for reprints, which are already archived
+        final String label;
+        final ReceiptJob job;
+        final RawReceiptJob rawJob;
+
+        QueuedReceipt(ReceiptArchive.Kind kind, String label, ReceiptJob job, RawReceiptJob rawJob) {
+            this.kind = kind;
+            this.label = label;
+            this.job = job;
+            this.rawJob = rawJob;
+        }
+    }
+
+    private final BlockingQueue<QueuedReceipt> queue = new ArrayBlockingQueue<>(CAPACITY);
+    private final boolean sendToPrinter = Boolean.getBoolean("pos.receipt.print");
+    private final EscPosPrinter escPosPrinter = EscPosPrinter.fromSystemProperties();
+    private final ReceiptArchive archive = ReceiptArchive.fromSystemProperties();
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    private ReceiptQueue() {
+        worker = new Thread(this::runLoop, "receipt-printer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public static synchronized ReceiptQueue getInstance() {
+        if (instance == null) {
+            instance = new ReceiptQueue();
+        }
+        return instance;
+    }
+
+    /**
+     * Stop the shared queue (if it was started), finishing receipts already queued
+     */
+    public static synchronized void shutdownShared() {
+        if (instance != null) {
+            instance.shutdown();
+            instance = null;
+        }
+    }
+
+    /**
+     * Queue a receipt for rendering and printing. Never blocks the caller:
+     * if the queue is full the receipt is handled on its own thread instead.
+     * @param number invoice or return number; the receipt is archived under it
+     */
+    public void submit(ReceiptArchive.Kind kind, String number, ReceiptJob job) {
+        enqueue(new QueuedReceipt(kind, number, job, null));
+    }
+
+    /**
+     * Queue a raw ESC/POS receipt for the terminal's EscPosPrinter
+     */
+    public void submitRaw(ReceiptArchive.Kind kind, String number, RawReceiptJob job) {
+        enqueue(new QueuedReceipt(kind, number, null, job));
+    }
+
+    /**
+     * Queue a reprint of an archived receipt, looking up sales first and then returns.
+     * The lookup waits for the archive's lock (held while it is opened and while a receipt is
+     * appended), so it runs on its own thread, never on the FX thread.
+     * @return completes with false if no receipt was archived under this number
+     */
+    public CompletableFuture<Boolean> reprint(String number) {
+        CompletableFuture<Boolean> found = new CompletableFuture<>();
+        Thread lookup = new Thread(() -> found.complete(queueReprint(number)), "receipt-reprint");
+        lookup.setDaemon(true);
+        lookup.start();
+        return found;
+    }
+
+    private boolean queueReprint(String number) {
+        ReceiptArchive.Entry entry;
+        try {
+            entry = archive.find(ReceiptArchive.Kind.SALE, number);
+            if (entry == null) {
+                entry = archive.find(ReceiptArchive.Kind.RETURN, number);
+            }
+        } catch (Exception e) {
+            log.warn("archiveReadFailed", e, "number", number);
+            return false;
+        }
+        if (entry == null) {
+            return false;
+        }
+        ReceiptArchive.Entry archived = entry;
+        String label = number + " (reprint)";
+        if (archived.format == ReceiptArchive.Format.ESCPOS) {
+            enqueue(new QueuedReceipt(null, label, null, () -> archive.readRaw(archived)));
+        } else {
+            enqueue(new QueuedReceipt(null, label, () -> archive.readJasperPrint(archived), null));
+        }
+        return true;
+    }
+
+    private void enqueue(QueuedReceipt receipt) {
+        String label = receipt.label;
+        if (running && queue.offer(receipt)) {
+            return;
+        }
+        log.warn("queueFull", "receipt", label);
+        Thread overflow = new Thread(() -> process(receipt), "receipt-printer-overflow");
+        overflow.setDaemon(true);
+        overflow.start();
+    }
+
+    public int pending() {
+        return queue.size();
+    }
+
+    private void shutdown() {
+        running = false;
+        worker.interrupt();
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        archive.close();
+    }
+
+    private void runLoop() {
+        try {
+            archive.open();
+        } catch (Exception e) {
+            log.warn("archiveOpenFailed", e);
+        }
+        while (running || !queue.isEmpty()) {
+            QueuedReceipt receipt;
+            try {
+                receipt = running ? queue.take() : queue.poll();
+            } catch (InterruptedException e) {
+                continue; // shutdown requested - drain what is left
+            }
+            if (receipt != null) {
+                process(receipt);
+            }
+        }
+    }
+
+    private void process(QueuedReceipt receipt) {
+        if (receipt.rawJob != null) {
+            processRaw(receipt);
+            return;
+        }
+        JasperPrint print;
+        PosEvents.Receipt event = startEvent("fill", receipt.label);
+        try {
+            long start = System.nanoTime();
+            print = receipt.job.render();
+            long elapsed = System.nanoTime() - start;
+            Metrics.timer("receipt.render").record(elapsed);
+            event.pages = print.getPages().size();
+            event.outcome = "ok";
+            event.commit();
+            log.debug("rendered", "receipt", receipt.label, "ms", elapsed / 1_000_000);
+        } catch (Exception e) {
+            event.commit();
+            log.error("renderFailed", e, "receipt", receipt.label);
+            return;
+        }
+        if (receipt.kind != null) {
+            try {
+                archive.appendJasper(receipt.kind, receipt.label, print);
+            } catch (Exception e) {
+                log.warn("archiveFailed", e, "receipt", receipt.label);
+            }
+        }
+
+        if (sendToPrinter && printWithRetry(receipt.label, () -> JasperPrintManager.printReport(print, false))) {
+            return;
+        }
+        if (sendToPrinter) {
+            log.warn("printerUnavailable", "receipt", receipt.label, "fallback", "viewer");
+        }
+        Platform.runLater(() -> net.sf.jasperreports.view.JasperViewer.viewReport(print, false));
+    }
+
+    private void processRaw(QueuedReceipt receipt) {
+        byte[] data;
+        PosEvents.Receipt event = startEvent("renderEscPos", receipt.label);
+        try {
+            long start = System.nanoTime();
+            data = receipt.rawJob.render();
+            long elapsed = System.nanoTime() - start;
+            Metrics.timer("receipt.renderEscPos").record(elapsed);
+            event.bytes = data.length;
+            event.outcome = "ok";
+            event.commit();
+            log.debug("rendered", "receipt", receipt.label, "bytes", data.length, "us", elapsed / 1000);
+        } catch (Exception e) {
+            event.commit();
+            log.error("renderFailed", e, "receipt", receipt.label);
+            return;
+        }
+        if (receipt.kind != null) {
+            try {
+                archive.appendRaw(receipt.kind, receipt.label, data);
+            } catch (Exception e) {
+                log.warn("archiveFailed", e, "receipt", receipt.label);
+            }
+        }
+        if (!printWithRetry(receipt.label, () -> escPosPrinter.print(receipt.label, data))) {
+            log.error("printFailed", "receipt", receipt.label, "device", escPosPrinter.getDevice().getAbsolutePath());
+        }
+    }
+
+    /**
+     * Begin a JFR receipt event; its outcome stays "error" unless the caller sets it
+     */
+    private static PosEvents.Receipt startEvent(String phase, String label) {
+        PosEvents.Receipt event = new PosEvents.Receipt();
+        event.begin();
+        event.phase = phase;
+        event.name = label;
+        event.outcome = "error";
+        return event;
+    }
+
+    private boolean printWithRetry(String label, PrintAction action) {
+        for (int attempt = 1; attempt <= MAX_PRINT_ATTEMPTS; attempt++) {
+            PosEvents.Receipt event = startEvent("print", label);
+            try {
+                long start = System.nanoTime();
+                action.print();
+                Metrics.recordSince("receipt.print", start);
+                event.outcome = "ok";
+                event.commit();
+                return true;
+            } catch (Exception e) {
+                Metrics.increment("receipt.printFailed");
+                event.commit();
+                log.warn("printAttemptFailed", "receipt", label, "attempt", attempt, "of", MAX_PRINT_ATTEMPTS, "error", e.getMessage());
+                if (attempt < MAX_PRINT_ATTEMPTS) {
+                    try {
+                        Thread.sleep(RETRY_BACKOFF_MS * attempt);
+                    } catch (InterruptedException ie) {
+                        // Keep retrying during shutdown, just without the backoff
+                    }
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,91 @@
+package pos.view;
+
+import pos.model.CartItem;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable copy of everything printed on a sale receipt.
+ * Taken on the FX thread when the sale completes so the cart can be cleared right away
+ * while the receipt is rendered and printed in the background. Amounts are in centavos.
+ */
+public class ReceiptSnapshot {
+
+    /**
+     * One printed receipt line
+     */
+    public static class Line {
+        public final String sku;
+        public final String description;
+        public final int quantity;
+        public final long unitPrice;
+        public final long lineTotal;
+
+        public Line(String sku, String description, int quantity, long unitPrice, long lineTotal) {
+            this.sku = sku;
+            this.description = description;
+            this.quantity = quantity;
+            this.unitPrice = unitPrice;
+            this.lineTotal = lineTotal;
+        }
+    }
+
+    public final String receiptNumber;
+    public final LocalDateTime issuedAt;
+    public final String cashierName;
+    public final String paymentMethod;
+    public final String customerName;
+    public final String customerPhone;
+    public final List<Line> lines;
+    public final long subtotal;
+    public final long discount;
+    public final long tax;
+    public final int vatRate;
+    public final long total;
+    public final long paid;
+    public final long change;
+
+    private ReceiptSnapshot(String receiptNumber, LocalDateTime issuedAt, String cashierName, String paymentMethod,
+                            String customerName, String customerPhone, List<Line> lines, long subtotal, long discount,
+                            long tax, int vatRate, long total, long paid, long change) {
+        this.receiptNumber = receiptNumber;
+        this.issuedAt = issuedAt;
+        this.cashierName = cashierName;
+        this.paymentMethod = paymentMethod;
+        this.customerName = customerName;
+        this.customerPhone = customerPhone;
+        this.lines = lines;
+        this.subtotal = subtotal;
+        this.discount = discount;
+        this.tax = tax;
+        this.vatRate = vatRate;
+        this.total = total;
+        this.paid = paid;
+        this.change = change;
+    }
+
+    /**
+     * Copy the cart and sale totals into a snapshot. Must be called before the cart is cleared.
+     */
+    public static ReceiptSnapshot fromCart(List<CartItem> cart, String receiptNumber, String cashierName,
+                                           String paymentMethod, long paid, long total, long discount, long tax) {
+        List<Line> lines = new ArrayList<>(cart.size());
+        long subtotal = 0L;
+        for (CartItem item : cart) {
+            long lineTotal = item.getSubtotalCentavos();
+            lines.add(new Line(item.getProduct().getSku(), item.getProduct().getDescription(), item.getQuantity(),
+                               item.getProduct().getPriceCentavos(), lineTotal));
+            subtotal += lineTotal;
+        }
+        int vatRate = 0;
+        if (total - discount > 1) {
+            vatRate = (int) Math.round((tax / (double) (total - discount)) * 100);
+        }
+        return new ReceiptSnapshot(receiptNumber, LocalDateTime.now(), cashierName, paymentMethod, "", "",
+                                   Collections.unmodifiableList(lines), subtotal, discount, tax, vatRate,
+                                   subtotal - discount + tax, paid, paid - total);
+    }
+}
@@ -0,0 +1,94 @@
+package pos.view;
+
+import net.sf.jasperreports.engine.JasperCompileManager;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.util.JRLoader;
+import pos.log.Log;
+import pos.log.Logger;
+import pos.metrics.PosEvents;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiled Jasper receipt templates, compiled once and kept in memory.
+ * A precompiled .jasper next to the .jrxml (on the classpath) is loaded directly;
+ * otherwise the .jrxml is compiled on first use. compileAll() compiles both receipt
+ * templates; App runs it after login (see Startup) so the first sale doesn't pay for it.
+ */
+public class ReceiptTemplates {
+    private static final Logger log = Log.get(ReceiptTemplates.class);
+    public static final String SALE_RECEIPT = "receipt_template.jrxml";
+    public static final String RETURN_RECEIPT = "return_receipt_template.jrxml";
+
+    private static final ConcurrentHashMap<String, JasperReport> compiled = new ConcurrentHashMap<>();
+
+    private ReceiptTemplates() {}
+
+    /**
+     * Get a compiled template, compiling it on first use
+     * @param name template file name, e.g. receipt_template.jrxml
+     */
+    public static JasperReport get(String name) throws Exception {
+        JasperReport report = compiled.get(name);
+        if (report != null) {
+            return report;
+        }
+        synchronized (ReceiptTemplates.class) {
+            report = compiled.get(name);
+            if (report == null) {
+                long start = System.currentTimeMillis();
+                PosEvents.Receipt event = new PosEvents.Receipt();
+                event.begin();
+                event.phase = "compile";
+                event.name = name;
+                event.outcome = "error";
+                try {
+                    report = load(name);
+                    event.outcome = "ok";
+                } finally {
+                    event.commit();
+                }
+                compiled.put(name, report);
+                log.debug("templateReady", "template", name, "ms", System.currentTimeMillis() - start);
+            }
+            return report;
+        }
+    }
+
+    /**
+     * Compile all receipt templates on the calling thread
+     */
+    public static void compileAll() {
+        for (String name : new String[] { SALE_RECEIPT, RETURN_RECEIPT }) {
+            try {
+                get(name);
+            } catch (Exception e) {
+                log.warn("precompileFailed", e, "template", name);
+            }
+        }
+    }
+
+    private static JasperReport load(String name) throws Exception {
+        // 1. Precompiled .jasper on the classpath
+        String jasperName = name.replaceFirst("\\.jrxml$", ".jasper");
+        try (InputStream in = ReceiptTemplates.class.getResourceAsStream("/" + jasperName)) {
+            if (in != null) {
+                return (JasperReport) JRLoader.loadObject(in);
+            }
+        }
+        // 2. .jrxml on the classpath
+        try (InputStream in = ReceiptTemplates.class.getResourceAsStream("/" + name)) {
+            if (in != null) {
+                return JasperCompileManager.compileReport(in);
+            }
+        }
+        // 3. .jrxml in the working directory
+        File file = new File(name);
+        if (file.isFile()) {
+            return JasperCompileManager.compileReport(file.getPath());
+        }
+        throw new Exception("Receipt template " + name + " not found");
+    }
+}
@@ -1,13 +1,11 @@
 package pos.view;
 
-import javafx.application.Platform;
+import pos.model.Money;
 import pos.model.ReturnItem;
+import pos.db.InvoiceCache;
 import pos.db.ReturnsDAO;
-import pos.db.DBConnection;
 import net.sf.jasperreports.engine.*;
 import net.sf.jasperreports.engine.data.JRBeanCollectionDataSource;
-import java.io.InputStream;
-import java.sql.Connection;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -20,12 +18,12 @@ import java.util.Map;
 public class ReturnReceiptDialog {
     
     /**
-     * Show return receipt dialog with refund information
+     * Queue the return receipt for rendering and printing, then return immediately
      * @param returnResult Return transaction result with return number and details
      * @param returnItems List of returned items
      * @param originalInvoiceNo Original invoice number
      * @param cashierName Name of the cashier processing the return
-     * @param afterPrint Callback to run after receipt is displayed
+     * @param afterPrint Callback to run after the receipt is queued
      */
     public static void show(ReturnsDAO.ReturnTransactionResult returnResult, 
                           List<ReturnItem> returnItems, 
@@ -33,14 +31,23 @@ public class ReturnReceiptDialog {
                           String cashierName,
                           Runnable afterPrint) {
         try {
-            generateAndPrintReturnReceipt(
-                returnResult.returnNo,
-                returnResult.returnId,
-                originalInvoiceNo,
-                returnItems,
-                returnResult.refundTotal.doubleValue(),
-                cashierName
-            );
+            // Copy the item amounts now; the returns table is cleared once the callback runs
+            List<Map<String, Object>> items = new ArrayList<>();
+            long refundSubtotal = 0L;
+            for (ReturnItem item : returnItems) {
+                Map<String, Object> row = new HashMap<>();
+                row.put("productName", item.getProductName());
+                row.put("returnQuantity", item.getQtyToReturn());
+                row.put("originalPrice", Money.toBigDecimal(item.getPriceCentavos()));
+                row.put("discountAmount", Money.toBigDecimal(item.getDiscountCentavos()));
+                row.put("refundAmount", Money.toBigDecimal(item.getRefundCentavos()));
+                items.add(row);
+                refundSubtotal += item.getRefundCentavos();
+            }
+            final long finalRefundSubtotal = refundSubtotal;
+            ReceiptQueue.getInstance().submit(ReceiptArchive.Kind.RETURN, returnResult.returnNo, () -> fillReturnReceipt(
+                returnResult.returnNo, returnResult.refundMethod, returnResult.notes, originalInvoiceNo, items, finalRefundSubtotal, cashierName
+            ));
         } catch (Exception ex) {
             ex.printStackTrace();
         }
@@ -48,59 +55,34 @@ public class ReturnReceiptDialog {
     }
     
     /**
-     * Generate and display return receipt using JasperReports
+     * Fill the return receipt with proportional tax calculation
+     * and detailed format matching sales invoice structure (runs on the receipt thread)
      */
-    private static void generateAndPrintReturnReceipt(
+    private static JasperPrint fillReturnReceipt(
         String returnNo,
-        int returnId,
+        String refundMethod,
+        String refundReason,
         String originalInvoiceNo,
-        List<ReturnItem> returnItems,
-        double refundTotal,
+        List<Map<String, Object>> items,
+        long refundSubtotal,
         String cashierName
     ) throws Exception {
         
-        // For now, use the existing template with return modifications
-        generateReturnReceiptWithExistingTemplate(
-            returnNo, returnId, originalInvoiceNo, returnItems, refundTotal, cashierName
-        );
-    }
-    
-    /**
-     * Generate and show return receipt with proportional tax calculation
-     * and detailed format matching sales invoice structure
-     */
-    private static void generateReturnReceiptWithExistingTemplate(
-        String returnNo,
-        int returnId,
-        String originalInvoiceNo,
-        List<ReturnItem> returnItems,
-        double refundTotal,
-        String cashierName
-    ) throws Exception {
-        
-        // Get original transaction data to calculate proportional tax
-        Connection conn = DBConnection.getConnection();
-        ReturnsDAO.InvoiceData originalData = ReturnsDAO.getInvoiceData(conn, originalInvoiceNo);
-        
-        // Get return transaction details for refund method and reason
-        ReturnsDAO.ReturnDetails returnDetails = ReturnsDAO.getReturnDetails(conn, returnId);
-        
-        conn.close();
-        
+        // Original transaction data (usually still cached from loading the invoice) for proportional tax
+        InvoiceCache.CachedInvoice originalData = InvoiceCache.get(originalInvoiceNo);
         if (originalData == null) {
             throw new Exception("Original invoice data not found");
         }
         
         // Calculate proportional tax for returned items
-        double refundSubtotal = returnItems.stream().mapToDouble(ReturnItem::getRefundAmount).sum();
-        double proportionalTax = calculateProportionalTax(
+        long proportionalTax = calculateProportionalTax(
             refundSubtotal, 
             originalData.subtotal, 
             originalData.discount, 
             originalData.tax
         );
         
-        double totalRefundWithTax = refundSubtotal + proportionalTax;
+        long totalRefundWithTax = refundSubtotal + proportionalTax;
         
         // Prepare parameters for new return receipt template
         Map<String, Object> params = new HashMap<>();
@@ -115,70 +97,44 @@ public class ReturnReceiptDialog {
         params.put("customerName", originalData.customerName != null ? originalData.customerName : "");
         
         // Refund method and reason from return transaction
-        params.put("refundMethod", returnDetails != null ? returnDetails.refundMethod : "Cash");
-        params.put("refundReason", returnDetails != null ? returnDetails.notes : "Customer return");
+        params.put("refundMethod", refundMethod != null ? refundMethod : "Cash");
+        params.put("refundReason", refundReason);
         
         // Original transaction totals
-        params.put("originalSubtotal", new java.math.BigDecimal(originalData.subtotal));
-        params.put("originalDiscount", new java.math.BigDecimal(originalData.discount));
-        params.put("originalTax", new java.math.BigDecimal(originalData.tax));
-        params.put("originalTotal", new java.math.BigDecimal(
+        params.put("originalSubtotal", Money.toBigDecimal(originalData.subtotal));
+        params.put("originalDiscount", Money.toBigDecimal(originalData.discount));
+        params.put("originalTax", Money.toBigDecimal(originalData.tax));
+        params.put("originalTotal", Money.toBigDecimal(
             originalData.subtotal - originalData.discount + originalData.tax));
         
         // Refund totals with proportional tax
-        params.put("refundSubtotal", new java.math.BigDecimal(refundSubtotal));
-        params.put("refundTax", new java.math.BigDecimal(proportionalTax));
-        params.put("refundTotal", new java.math.BigDecimal(totalRefundWithTax));
-        
-        // Prepare item data for the receipt with detailed breakdown
-        List<Map<String, Object>> items = new ArrayList<>();
-        for (ReturnItem item : returnItems) {
-            Map<String, Object> row = new HashMap<>();
-            row.put("productName", item.getProductName());
-            row.put("returnQuantity", item.getQtyToReturn());
-            row.put("originalPrice", new java.math.BigDecimal(item.getPrice()));
-            row.put("discountAmount", new java.math.BigDecimal(item.getDiscount()));
-            row.put("refundAmount", new java.math.BigDecimal(item.getRefundAmount()));
-            items.add(row);
-        }
+        params.put("refundSubtotal", Money.toBigDecimal(refundSubtotal));
+        params.put("refundTax", Money.toBigDecimal(proportionalTax));
+        params.put("refundTotal", Money.toBigDecimal(totalRefundWithTax));
         
         JRBeanCollectionDataSource dataSource = new JRBeanCollectionDataSource(items);
         
-        // Use the new return receipt template from resources
-        InputStream templateStream = ReturnReceiptDialog.class.getResourceAsStream("/return_receipt_template.jrxml");
-        if (templateStream == null) {
-            throw new Exception("Return receipt template not found in resources");
-        }
-        JasperReport jasperReport = JasperCompileManager.compileReport(templateStream);
-        JasperPrint jasperPrint = JasperFillManager.fillReport(jasperReport, params, dataSource);
-        
-        // Show the return receipt on JavaFX thread
-        System.out.println("About to show return receipt with proportional tax...");
-        Platform.runLater(() -> {
-            net.sf.jasperreports.view.JasperViewer.viewReport(jasperPrint, false);
-            System.out.println("Return receipt dialog should have appeared.");
-        });
+        // Use the cached, already-compiled return receipt template
+        JasperReport jasperReport = ReceiptTemplates.get(ReceiptTemplates.RETURN_RECEIPT);
+        return JasperFillManager.fillReport(jasperReport, params, dataSource);
     }
     
     /**
      * Calculate proportional tax for returned items
      */
-    private static double calculateProportionalTax(double refundSubtotal, double originalSubtotal, 
-                                                  double originalDiscount, double originalTax) {
+    private static long calculateProportionalTax(long refundSubtotal, long originalSubtotal, 
+                                                long originalDiscount, long originalTax) {
         if (originalTax <= 0 || originalSubtotal <= 0) {
-            return 0.0; // No tax to calculate
+            return 0L; // No tax to calculate
         }
         
-        // Calculate the tax rate from original transaction
-        double originalTaxableAmount = originalSubtotal - originalDiscount;
+        long originalTaxableAmount = originalSubtotal - originalDiscount;
         if (originalTaxableAmount <= 0) {
-            return 0.0;
+            return 0L;
         }
         
-        double taxRate = originalTax / originalTaxableAmount;
-        
-        // Apply the same tax rate to the returned items (already includes discounts)
-        return refundSubtotal * taxRate;
+        // Apply the original tax ratio to the returned items (already includes discounts)
+        return Money.allocate(refundSubtotal, originalTax, originalTaxableAmount);
     }
     
     /**
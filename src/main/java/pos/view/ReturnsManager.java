@@ -5,31 +5,33 @@ import javafx.collections.ObservableList;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import javafx.geometry.Pos;
+import pos.model.Money;
 import pos.model.ReturnItem;
-import pos.db.DBConnection;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
+import pos.db.InvoiceCache;
+import pos.log.Log;
+import pos.log.Logger;
 import java.util.ArrayList;
 import java.util.List;
 
 public class ReturnsManager {
+    private static final Logger log = Log.get(ReturnsManager.class);
     
     private ObservableList<ReturnItem> returnItems = FXCollections.observableArrayList();
-    private double originalSubtotal = 0.0;
-    private double originalDiscount = 0.0;
-    private double originalTax = 0.0;
+    // Original transaction amounts in centavos
+    private long originalSubtotal = 0L;
+    private long originalDiscount = 0L;
+    private long originalTax = 0L;
     private String invoiceNumber = "";
     
-    // Returns summary data
+    // Returns summary data (amounts in centavos)
     public static class ReturnsSummary {
-        public final double originalSubtotal;
-        public final double discountApplied;
-        public final double tax;
-        public final double refundItems;
-        public final double refundTotal;
+        public final long originalSubtotal;
+        public final long discountApplied;
+        public final long tax;
+        public final long refundItems;
+        public final long refundTotal;
         
-        public ReturnsSummary(double originalSubtotal, double discountApplied, double tax, double refundItems, double refundTotal) {
+        public ReturnsSummary(long originalSubtotal, long discountApplied, long tax, long refundItems, long refundTotal) {
             this.originalSubtotal = originalSubtotal;
             this.discountApplied = discountApplied;
             this.tax = tax;
@@ -46,21 +48,21 @@ public class ReturnsManager {
         try {
             this.invoiceNumber = invoiceNo;
             
-            // First validate the invoice
-            try (Connection conn = DBConnection.getConnection()) {
-                pos.db.ReturnsDAO.InvoiceValidationResult validation = pos.db.ReturnsDAO.validateInvoiceForReturns(conn, invoiceNo);
-                
-                if (!validation.isValid) {
-                    return InvoiceLoadResult.failure(validation.errorMessage);
-                }
-                
-                // If validation passed, fetch the transaction data
-                boolean success = fetchTransactionData(invoiceNo);
-                if (success) {
-                    return InvoiceLoadResult.success();
-                } else {
-                    return InvoiceLoadResult.failure("Failed to load transaction data for invoice '" + invoiceNo + "'.");
-                }
+            // Header, lines and prior returns come from one query; always reloaded, since another
+            // terminal may have returned some of these lines since the invoice was cached
+            InvoiceCache.CachedInvoice invoice = InvoiceCache.reload(invoiceNo);
+            pos.db.ReturnsDAO.InvoiceValidationResult validation = pos.db.ReturnsDAO.validateInvoiceForReturns(invoice, invoiceNo);
+            
+            if (!validation.isValid) {
+                return InvoiceLoadResult.failure(validation.errorMessage);
+            }
+            
+            // If validation passed, fill the returns table
+            boolean success = fetchTransactionData(invoice);
+            if (success) {
+                return InvoiceLoadResult.success();
+            } else {
+                return InvoiceLoadResult.failure("Failed to load transaction data for invoice '" + invoiceNo + "'.");
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -89,80 +91,43 @@ public class ReturnsManager {
         }
     }
     
-    private boolean fetchTransactionData(String invoiceNo) {
-        String query = "SELECT " +
-                "psi.id as invoice_item_id, " +
-                "psi.sku, " +
-                "psi.subtotal, " +
-                "psi.order_quantity as quantity, " +
-                "psi.online_inventory_item_id, " +
-                "psi.in_store_inventory_item_id, " +
-                "(psi.subtotal / psi.order_quantity) as unit_price, " +
-                "pt.subtotal as transaction_subtotal, " +
-                "pt.discount as transaction_discount, " +
-                "pt.tax as transaction_tax " +
-            "FROM pos_transactions pt " +
-            "JOIN physical_sale_items psi ON pt.id = psi.pos_transaction_id " +
-            "WHERE pt.invoice_no = ?";
-        
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(query)) {
-            
-            stmt.setString(1, invoiceNo);
-            ResultSet rs = stmt.executeQuery();
-            
-            List<ReturnItem> items = new ArrayList<>();
-            boolean hasData = false;
-            
-            // Process each item
-            while (rs.next()) {
-                if (!hasData) {
-                    // Set transaction totals from first row
-                    originalSubtotal = rs.getDouble("transaction_subtotal");
-                    originalDiscount = rs.getDouble("transaction_discount");
-                    originalTax = rs.getDouble("transaction_tax");
-                    hasData = true;
-                }
-                
-                double itemSubtotal = rs.getDouble("subtotal");
-                
-                String sku = rs.getString("sku");
-                String productName = sku; // Use SKU as name for now
-                
-                // Calculate proportional discount for this item
-                double itemDiscount = 0.0;
-                if (originalDiscount > 0 && originalSubtotal > 0) {
-                    itemDiscount = (itemSubtotal / originalSubtotal) * originalDiscount;
-                }
-                
-                // Get database IDs
-                int invoiceItemId = rs.getInt("invoice_item_id");
-                int onlineInventoryItemId = rs.getInt("online_inventory_item_id");
-                int inStoreInventoryId = rs.getInt("in_store_inventory_item_id");
-                
-                ReturnItem item = new ReturnItem(
-                    productName,
-                    sku,
-                    rs.getDouble("unit_price"),
-                    rs.getInt("quantity"),
-                    itemDiscount / rs.getInt("quantity"), // Per unit discount
-                    invoiceItemId,
-                    onlineInventoryItemId,
-                    inStoreInventoryId
-                );
-                items.add(item);
-            }
+    private boolean fetchTransactionData(InvoiceCache.CachedInvoice invoice) {
+        if (invoice.lines.isEmpty()) {
+            return false;
+        }
+        
+        // Set transaction totals from the invoice header
+        originalSubtotal = invoice.subtotal;
+        originalDiscount = invoice.discount;
+        originalTax = invoice.tax;
+        
+        List<ReturnItem> items = new ArrayList<>();
+        for (InvoiceCache.InvoiceLine line : invoice.lines) {
+            String productName = line.sku; // Use SKU as name for now
             
-            if (hasData) {
-                returnItems.setAll(items);
-                return true;
+            // Calculate proportional discount for this item
+            long itemDiscount = 0L;
+            if (originalDiscount > 0 && originalSubtotal > 0) {
+                itemDiscount = Money.allocate(originalDiscount, line.subtotal, originalSubtotal);
             }
             
-        } catch (Exception e) {
-            e.printStackTrace();
+            ReturnItem item = new ReturnItem(
+                productName,
+                line.sku,
+                line.getUnitPrice(),
+                line.quantity,
+                Money.allocate(itemDiscount, 1, line.quantity), // Per unit discount, for display
+                line.invoiceItemId,
+                line.onlineInventoryItemId,
+                line.inStoreInventoryItemId
+            );
+            item.setLineNetCentavos(line.subtotal - itemDiscount);
+            item.setQtyReturnable(line.getReturnableQuantity());
+            items.add(item);
         }
         
-        return false;
+        returnItems.setAll(items);
+        return true;
     }
     
     public ObservableList<ReturnItem> getReturnItems() {
@@ -170,14 +135,15 @@ public class ReturnsManager {
     }
     
     public ReturnsSummary calculateReturnsSummary() {
-        double refundItems = returnItems.stream()
-            .mapToDouble(ReturnItem::getRefundAmount)
-            .sum();
+        long refundItems = 0L;
+        for (ReturnItem item : returnItems) {
+            refundItems += item.getRefundCentavos();
+        }
         
         // Calculate proportional tax for returned items only
-        double proportionalTax = calculateProportionalTax(refundItems);
+        long proportionalTax = calculateProportionalTax(refundItems);
         
-        double refundTotal = refundItems + proportionalTax;
+        long refundTotal = refundItems + proportionalTax;
         
         return new ReturnsSummary(
             originalSubtotal,
@@ -192,23 +158,20 @@ public class ReturnsManager {
      * Calculate proportional tax for returned items
      * If original transaction had tax, calculate the proportional amount for returned items
      */
-    private double calculateProportionalTax(double refundItemsAmount) {
+    private long calculateProportionalTax(long refundItemsAmount) {
         if (originalTax <= 0 || originalSubtotal <= 0) {
-            return 0.0; // No tax to calculate
+            return 0L; // No tax to calculate
         }
         
-        // Calculate the tax rate from original transaction
         // Tax is applied to (subtotal - discount), so we need to calculate the base amount
-        double originalTaxableAmount = originalSubtotal - originalDiscount;
+        long originalTaxableAmount = originalSubtotal - originalDiscount;
         if (originalTaxableAmount <= 0) {
-            return 0.0;
+            return 0L;
         }
         
-        double taxRate = originalTax / originalTaxableAmount;
-        
-        // Apply the same tax rate to the returned items
+        // Apply the original tax ratio to the returned items
         // refundItemsAmount already includes the item-level discounts
-        return refundItemsAmount * taxRate;
+        return Money.allocate(refundItemsAmount, originalTax, originalTaxableAmount);
     }
     
     public TableView<ReturnItem> createReturnsTableView() {
@@ -263,6 +226,25 @@ public class ReturnsManager {
         qtyPurchasedCol.setMinWidth(80);
         qtyPurchasedCol.setPrefWidth(100);
         
+        // Returnable column - what is left after earlier partial returns
+        TableColumn<ReturnItem, Integer> qtyReturnableCol = new TableColumn<>("Returnable");
+        qtyReturnableCol.setCellValueFactory(cellData -> cellData.getValue().qtyReturnableProperty().asObject());
+        qtyReturnableCol.setCellFactory(col -> new TableCell<ReturnItem, Integer>() {
+            @Override
+            protected void updateItem(Integer qty, boolean empty) {
+                super.updateItem(qty, empty);
+                if (empty || qty == null) {
+                    setText("");
+                    setStyle("-fx-alignment: CENTER;");
+                } else {
+                    setText(qty.toString());
+                    setStyle(qty == 0 ? "-fx-alignment: CENTER; -fx-text-fill: #999;" : "-fx-alignment: CENTER;");
+                }
+            }
+        });
+        qtyReturnableCol.setMinWidth(70);
+        qtyReturnableCol.setPrefWidth(85);
+        
         // Discount column (12% of width)
         TableColumn<ReturnItem, Double> discountCol = new TableColumn<>("Discount");
         discountCol.setCellValueFactory(cellData -> cellData.getValue().discountProperty().asObject());
@@ -374,6 +356,7 @@ public class ReturnsManager {
         table.getColumns().add(productCol);
         table.getColumns().add(priceCol);
         table.getColumns().add(qtyPurchasedCol);
+        table.getColumns().add(qtyReturnableCol);
         table.getColumns().add(discountCol);
         table.getColumns().add(qtyToReturnCol);
         table.getColumns().add(refundCol);
@@ -399,11 +382,11 @@ public class ReturnsManager {
         // Update summary when return items change
         Runnable updateSummary = () -> {
             ReturnsSummary summary = calculateReturnsSummary();
-            originalSubtotalLabel.setText("Original Subtotal: ₱" + String.format("%.2f", summary.originalSubtotal));
-            discountAppliedLabel.setText("Discount Applied: -₱" + String.format("%.2f", summary.discountApplied));
-            taxLabel.setText("Tax: +₱" + String.format("%.2f", summary.tax));
-            refundItemsLabel.setText("Refund Items: -₱" + String.format("%.2f", summary.refundItems));
-            refundTotalLabel.setText("Refund Total: ₱" + String.format("%.2f", summary.refundTotal));
+            originalSubtotalLabel.setText("Original Subtotal: ₱" + Money.format(summary.originalSubtotal));
+            discountAppliedLabel.setText("Discount Applied: -₱" + Money.format(summary.discountApplied));
+            taxLabel.setText("Tax: +₱" + Money.format(summary.tax));
+            refundItemsLabel.setText("Refund Items: -₱" + Money.format(summary.refundItems));
+            refundTotalLabel.setText("Refund Total: ₱" + Money.format(summary.refundTotal));
         };
         
         // Listen for changes in return items
@@ -440,11 +423,10 @@ public class ReturnsManager {
         
         String cleanBarcode = barcode.trim().toUpperCase();
         
-        // Debug: Print available items and scanned barcode
-        System.out.println("Scanned barcode: '" + cleanBarcode + "'");
-        System.out.println("Available items in returns:");
-        for (ReturnItem item : returnItems) {
-            System.out.println("  - SKU: '" + item.getProductSku().toUpperCase() + "'");
+        if (log.isTraceEnabled()) {
+            for (ReturnItem item : returnItems) {
+                log.trace("returnCandidate", "sku", item.getProductSku());
+            }
         }
         
         // Find the item by SKU in the returns list (case-insensitive)
@@ -452,22 +434,22 @@ public class ReturnsManager {
             if (cleanBarcode.equals(item.getProductSku().toUpperCase())) {
                 // Check if already at maximum quantity
                 int currentQty = item.getQtyToReturn();
-                int maxQty = item.getQtyPurchased();
+                int maxQty = item.getQtyReturnable();
                 
                 if (currentQty >= maxQty) {
-                    System.out.println("Item already at maximum return quantity: " + currentQty + "/" + maxQty);
+                    log.debug("returnScanAtMax", "sku", cleanBarcode, "qty", currentQty, "max", maxQty);
                     return ScanResult.ALREADY_AT_MAX;
                 }
                 
                 // Found the item, increment its return quantity
                 item.incrementQtyToReturn();
-                System.out.println("Found and incremented item: " + item.getProductSku());
+                log.debug("returnScanIncremented", "sku", cleanBarcode, "qty", item.getQtyToReturn(), "max", maxQty);
                 return ScanResult.SUCCESS;
             }
         }
         
         // Item not found in the returns list
-        System.out.println("Item not found in returns list");
+        log.debug("returnScanNotFound", "sku", cleanBarcode, "candidates", returnItems.size());
         return ScanResult.NOT_FOUND;
     }
     
@@ -485,9 +467,9 @@ public class ReturnsManager {
     
     public void clearReturns() {
         returnItems.clear();
-        originalSubtotal = 0.0;
-        originalDiscount = 0.0;
-        originalTax = 0.0;
+        originalSubtotal = 0L;
+        originalDiscount = 0L;
+        originalTax = 0L;
         invoiceNumber = "";
     }
 }
\ No newline at end of file
@@ -9,12 +9,16 @@ import javafx.scene.Scene;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
-import pos.db.DBConnection;
+import pos.db.AuthService;
+import pos.log.Log;
+import pos.log.Logger;
 
 public class SupervisorAuthDialog extends Stage {
+    private static final Logger log = Log.get(SupervisorAuthDialog.class);
     
     private boolean authenticationSuccessful = false;
     private int authenticatedSupervisorId = -1;
+    private String sessionToken;
     private TextField usernameField;
     private PasswordField passwordField;
     private Label errorLabel;
@@ -144,88 +148,28 @@ public class SupervisorAuthDialog extends Stage {
         authorizeButton.setText("Authenticating...");
         errorLabel.setVisible(false);
         
-        // Run authentication in background thread
-        javafx.concurrent.Task<Boolean> authTask = new javafx.concurrent.Task<Boolean>() {
-            @Override
-            protected Boolean call() throws Exception {
-                // Add slight delay for better UX
-                Thread.sleep(800);
-                return authenticateAdmin(username, password);
-            }
-        };
-        
-        authTask.setOnSucceeded(e -> {
-            Platform.runLater(() -> {
-                loadingBox.setVisible(false);
-                authorizeButton.setDisable(false);
-                authorizeButton.setText("Authorize");
-                
-                if (authTask.getValue()) {
-                    authenticationSuccessful = true;
-                    close();
-                } else {
-                    showError("Invalid credentials. Please check username and password.");
-                    passwordField.clear();
-                    passwordField.requestFocus();
-                }
-            });
-        });
-        
-        authTask.setOnFailed(e -> {
-            Platform.runLater(() -> {
-                loadingBox.setVisible(false);
-                authorizeButton.setDisable(false);
-                authorizeButton.setText("Authorize");
-                showError("Authentication failed. Please try again.");
+        // Lookup and BCrypt check run on the auth worker pool
+        AuthService.getInstance().authenticateSupervisor(username, password).whenComplete((result, error) -> Platform.runLater(() -> {
+            loadingBox.setVisible(false);
+            authorizeButton.setDisable(false);
+            authorizeButton.setText("Authorize");
+            
+            if (error != null) {
+                log.error("supervisorAuthFailed", error.getCause() != null ? error.getCause() : error, "user", username);
+                showError("Authorization failed due to a system error. Please try again.");
+                passwordField.clear();
+                passwordField.requestFocus();
+            } else if (result.success) {
+                authenticatedSupervisorId = result.staffId;
+                sessionToken = result.sessionToken;
+                authenticationSuccessful = true;
+                close();
+            } else {
+                showError(result.errorMessage);
                 passwordField.clear();
                 passwordField.requestFocus();
-            });
-        });
-        
-        new Thread(authTask).start();
-    }
-    
-    private boolean authenticateAdmin(String username, String password) {
-        try (java.sql.Connection conn = DBConnection.getConnection()) {
-            String sql = "SELECT * FROM staff_acc WHERE username = ? AND role = 'admin' AND status = 'active'";
-            java.sql.PreparedStatement stmt = conn.prepareStatement(sql);
-            stmt.setString(1, username);
-            java.sql.ResultSet rs = stmt.executeQuery();
-            
-            if (rs.next()) {
-                String storedHash = rs.getString("password");
-                int staffId = rs.getInt("id");
-                
-                // Check if password is already hashed (BCrypt hashes start with $2a$, $2b$, $2y$)
-                if (storedHash.startsWith("$2") && storedHash.length() == 60) {
-                    try {
-                        // Fix salt revision compatibility issue (same as LoginView)
-                        if (storedHash.startsWith("$2y$")) {
-                            storedHash = "$2a$" + storedHash.substring(4);
-                        }
-                        boolean isValid = org.mindrot.jbcrypt.BCrypt.checkpw(password, storedHash);
-                        if (isValid) {
-                            authenticatedSupervisorId = staffId; // Store the staff ID
-                        }
-                        return isValid;
-                    } catch (IllegalArgumentException e) {
-                        System.err.println("BCrypt verification failed: " + e.getMessage());
-                        return false;
-                    }
-                } else {
-                    // Plain text comparison for non-hashed passwords
-                    boolean isValid = password.equals(storedHash);
-                    if (isValid) {
-                        authenticatedSupervisorId = staffId; // Store the staff ID
-                    }
-                    return isValid;
-                }
             }
-            return false;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return false;
-        }
+        }));
     }
     
     private void showError(String message) {
@@ -257,16 +201,37 @@ public class SupervisorAuthDialog extends Stage {
     public static SupervisorAuthResult requestSupervisorAuthorizationWithId() {
         SupervisorAuthDialog dialog = new SupervisorAuthDialog();
         dialog.showAndWait();
-        return new SupervisorAuthResult(dialog.isAuthenticationSuccessful(), dialog.getAuthenticatedSupervisorId());
+        return new SupervisorAuthResult(dialog.isAuthenticationSuccessful(), dialog.getAuthenticatedSupervisorId(), dialog.sessionToken);
+    }
+    
+    /**
+     * Reuse a supervisor session that is still valid, otherwise ask for credentials
+     * @param sessionToken token from an earlier authorization on this terminal, may be null
+     */
+    public static SupervisorAuthResult requestSupervisorAuthorizationWithId(String sessionToken) {
+        int supervisorId = AuthService.getInstance().getSupervisorForSession(sessionToken);
+        if (supervisorId > 0) {
+            return new SupervisorAuthResult(true, supervisorId, sessionToken);
+        }
+        return requestSupervisorAuthorizationWithId();
     }
     
     public static class SupervisorAuthResult {
         private final boolean successful;
         private final int supervisorId;
+        private final String sessionToken;
         
-        public SupervisorAuthResult(boolean successful, int supervisorId) {
+        public SupervisorAuthResult(boolean successful, int supervisorId, String sessionToken) {
             this.successful = successful;
             this.supervisorId = supervisorId;
+            this.sessionToken = sessionToken;
+        }
+        
+        /**
+         * Token for re-authorizing without credentials while the supervisor session lasts
+         */
+        public String getSessionToken() {
+            return sessionToken;
         }
         
         public boolean isSuccessful() {
@@ -0,0 +1,303 @@
+package pos.view;
+
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import pos.db.DBConnection;
+import pos.db.ProductDAO;
+import pos.db.PromotionDao;
+import pos.db.PromotionIndex;
+import pos.db.StockReservationDAO;
+import pos.db.SystemSettingsDAO;
+import pos.log.Log;
+import pos.log.Logger;
+import pos.metrics.Metrics;
+import pos.model.CartItem;
+import pos.model.Product;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Consumer;
+
+/**
+ * Warm-up after login, while the catalog skeleton is showing.
+ *
+ * The first scan, the first promotion calculation and the first receipt of a session used to pay
+ * for cold code: interpreted pricing and search loops, first connection setup, first use of each
+ * DAO statement, and Jasper's fill engine. WarmUp runs those paths once on a background thread,
+ * in stages:
+ *
+ *   connections  open -Dpos.warmup.connections (default 2) connections: driver, TLS and auth setup
+ *   statements   run the scan, reservation, promotion and VAT queries with keys that match nothing
+ *   pricing      reprice a throw-away cart -Dpos.warmup.iterations (default 500) times
+ *   search       SKU search over a synthetic catalog, same number of iterations
+ *   receipt      compile the receipt templates and fill a sale receipt that is never printed
+ *
+ * The connections are closed after the last stage, which hands them back to DBConnection's pool
+ * warm (driver, TLS, auth and the statements already run), so the first sale doesn't open one.
+ *
+ * Nothing is written to the database, and a failing stage (e.g. database down) is logged and
+ * skipped. The warm-up's queries are kept out of the db.* metrics and the slow query log, so the
+ * first minutes' histograms describe real sales only. Progress is reported to a listener on the FX thread; POSView shows it in its header.
+ * -Dpos.warmup=false turns the warm-up off.
+ */
+public final class WarmUp {
+    private static final Logger log = Log.get(WarmUp.class);
+
+    private static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("pos.warmup"));
+    private static final int CONNECTIONS = Integer.getInteger("pos.warmup.connections", 2);
+    private static final int ITERATIONS = Integer.getInteger("pos.warmup.iterations", 500);
+    private static final int CATALOG_SIZE = 2000;
+    private static final int CART_LINES = 12;
+
+    /** SKU and transaction ID that don't exist, for read-only statements */
+    private static final String WARMUP_SKU = "__warmup__";
+    private static final String WARMUP_TRANSACTION = "__warmup__";
+
+    private static final String[] STAGES = {"connections", "statements", "pricing", "search", "receipt"};
+
+    /**
+     * Where the warm-up is; sent to the listener after each stage
+     */
+    public static class Progress {
+        public final String stage;
+        public final int completed;
+        public final int total;
+        public final int failed;
+
+        Progress(String stage, int completed, int total, int failed) {
+            this.stage = stage;
+            this.completed = completed;
+            this.total = total;
+            this.failed = failed;
+        }
+
+        public boolean isReady() {
+            return completed == total;
+        }
+    }
+
+    private final Consumer<Progress> listener;
+    private final List<Connection> connections = new ArrayList<>();
+    private final List<PromotionDao.Promotion> promotions = new ArrayList<>();
+    private Product[] catalog;
+    private int failed;
+
+    private WarmUp(Consumer<Progress> listener) {
+        this.listener = listener;
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Start the warm-up on a background thread; listener (may be null) is called on the FX thread
+     */
+    public static void start(Consumer<Progress> listener) {
+        Thread worker = new Thread(new WarmUp(listener)::run, "warm-up");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Run the warm-up on the calling thread (the AppCDS training run)
+     */
+    public static void runNow() {
+        new WarmUp(null).run();
+    }
+
+    private void run() {
+        Metrics.setDbTracked(false);
+        try {
+            runStages();
+        } finally {
+            Metrics.setDbTracked(true);
+        }
+    }
+
+    private void runStages() {
+        long start = System.nanoTime();
+        for (int i = 0; i < STAGES.length; i++) {
+            String stage = STAGES[i];
+            long stageStart = System.nanoTime();
+            try {
+                runStage(stage);
+                log.debug("warmUpStage", "stage", stage, "ms", (System.nanoTime() - stageStart) / 1_000_000);
+            } catch (Exception e) {
+                failed++;
+                log.warn("warmUpStageFailed", e, "stage", stage);
+            }
+            Metrics.recordSince("warmup." + stage, stageStart);
+            report(new Progress(stage, i + 1, STAGES.length, failed));
+        }
+        closeConnections();
+        Metrics.recordSince("warmup.total", start);
+        log.info("warmUpComplete", "ms", (System.nanoTime() - start) / 1_000_000, "failedStages", failed);
+    }
+
+    private void runStage(String stage) throws Exception {
+        switch (stage) {
+            case "connections": openConnections(); break;
+            case "statements": primeStatements(); break;
+            case "pricing": warmPricing(); break;
+            case "search": warmSearch(); break;
+            case "receipt": warmReceipt(); break;
+            default: throw new IllegalArgumentException(stage);
+        }
+    }
+
+    private void report(Progress progress) {
+        if (listener != null) {
+            Platform.runLater(() -> listener.accept(progress));
+        }
+    }
+
+    private void openConnections() throws SQLException {
+        for (int i = 0; i < Math.max(1, CONNECTIONS); i++) {
+            connections.add(DBConnection.getConnection());
+        }
+    }
+
+    /**
+     * The read-only statements of a scan (stock check, reservation lookup), of pricing
+     * (promotions, VAT) and of a sale's SKU lookups, spread over the open connections
+     */
+    private void primeStatements() throws SQLException {
+        if (connections.isEmpty()) {
+            throw new SQLException("No connection from the connections stage");
+        }
+        for (Connection conn : connections) {
+            StockReservationDAO.checkAvailableStock(conn, WARMUP_SKU, 1, WARMUP_TRANSACTION);
+            StockReservationDAO.getReservationsByTransaction(conn, WARMUP_TRANSACTION);
+            ProductDAO.getInventoryInfoBySku(conn, WARMUP_SKU);
+            ProductDAO.getCategoryIdBySku(conn, WARMUP_SKU);
+        }
+        promotions.addAll(PromotionDao.getActiveAutomaticDiscounts(connections.get(0)));
+        SystemSettingsDAO.getVatRate();
+    }
+
+    /**
+     * Add, change and remove lines of a throw-away cart with its own engine. CartPricingEngine
+     * updates belong on the FX thread, so each iteration runs there as a short task of its own
+     * and the UI keeps responding in between.
+     */
+    private void warmPricing() throws Exception {
+        List<PromotionDao.Promotion> promos = new ArrayList<>(promotions);
+        promos.add(syntheticPromotion("percentage", 10, "all", null));
+        promos.add(syntheticPromotion("fixed", 50, "category", 1));
+        PromotionIndex index = PromotionIndex.compile(promos);
+
+        Product[] products = catalog();
+        ObservableList<CartItem> cart = FXCollections.observableArrayList();
+        CartPricingEngine engine = onFxThread(() -> {
+            CartPricingEngine e = new CartPricingEngine(cart);
+            e.setPromotionIndex(index);
+            e.setVatRate(12);
+            return e;
+        });
+        long checksum = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            int first = i * CART_LINES;
+            checksum += onFxThread(() -> {
+                for (int line = 0; line < CART_LINES; line++) {
+                    cart.add(new CartItem(products[(first + line) % products.length], 1, WARMUP_TRANSACTION));
+                }
+                for (CartItem item : cart) {
+                    item.setQuantity(item.getQuantity() + 1);
+                }
+                long total = engine.getTotals().total;
+                cart.clear();
+                return total;
+            });
+        }
+        log.trace("warmUpPricing", "checksum", checksum);
+    }
+
+    /**
+     * Run task on the FX thread and wait for its result
+     */
+    private static <T> T onFxThread(Callable<T> task) throws Exception {
+        if (Platform.isFxApplicationThread()) {
+            return task.call();
+        }
+        FutureTask<T> future = new FutureTask<>(task);
+        Platform.runLater(future);
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    private void warmSearch() {
+        Product[] products = catalog();
+        int matches = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            matches += ProductSearch.filterInStock(products, Integer.toString(i % 100)).size();
+            if (ProductSearch.findBySku(products, products[(i * 7) % products.length].getSku()) != null) {
+                matches++;
+            }
+        }
+        log.trace("warmUpSearch", "matches", matches);
+    }
+
+    private void warmReceipt() throws Exception {
+        ReceiptTemplates.compileAll();
+        Product[] products = catalog();
+        List<CartItem> cart = new ArrayList<>();
+        long total = 0;
+        for (int line = 0; line < CART_LINES; line++) {
+            CartItem item = new CartItem(products[line], 1 + line % 3, WARMUP_TRANSACTION);
+            cart.add(item);
+            total += item.getSubtotalCentavos();
+        }
+        ReceiptSnapshot receipt = ReceiptSnapshot.fromCart(cart, "000000", "warm-up", "Cash", total, total, 0, 0);
+        if (EscPosPrinter.isEnabled()) {
+            EscPosReceiptRenderer.render(receipt);
+        } else {
+            ReceiptDialog.fillJasperReceipt(receipt);
+        }
+    }
+
+    private Product[] catalog() {
+        if (catalog == null) {
+            catalog = new Product[CATALOG_SIZE];
+            for (int i = 0; i < CATALOG_SIZE; i++) {
+                catalog[i] = new Product(Integer.toString(1_000_000 + i), 99.75 + i % 500, "Warm-up item " + i, null,
+                                         i % 10 == 0 ? 0 : 5 + i % 40, 1 + i % 8);
+            }
+        }
+        return catalog;
+    }
+
+    private static PromotionDao.Promotion syntheticPromotion(String type, double value, String appliesToType, Integer appliesToId) {
+        PromotionDao.Promotion p = new PromotionDao.Promotion();
+        p.title = "warm-up";
+        p.type = type;
+        p.value = value;
+        p.saleChannel = "in-store";
+        p.appliesToType = appliesToType;
+        p.appliesToId = appliesToId;
+        return p;
+    }
+
+    /**
+     * Back to the connection pool, where the first sale picks them up
+     */
+    private void closeConnections() {
+        for (Connection conn : connections) {
+            try {
+                conn.close();
+            } catch (SQLException ignored) {
+                // Dropped by the pool; the sale opens its own
+            }
+        }
+        connections.clear();
+    }
+}
@@ -0,0 +1,170 @@
+-- Schema for the embedded database profile (-Dpos.db.profile=embedded).
+-- Only the tables and columns the POS reads and writes; types follow the MySQL schema.
+-- Statements end with ';' at the end of a line. Run by EmbeddedDatabase on first connection.
+
+CREATE TABLE IF NOT EXISTS inventory (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    item_name VARCHAR(255),
+    description TEXT,
+    category_id INT,
+    product_status VARCHAR(20) NOT NULL DEFAULT 'active',
+    sale_channel VARCHAR(20) NOT NULL DEFAULT 'in-store'
+);
+CREATE INDEX IF NOT EXISTS idx_inventory_status_channel ON inventory (product_status, sale_channel);
+
+CREATE TABLE IF NOT EXISTS in_store_product_details (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    inventory_product_id INT NOT NULL,
+    sku VARCHAR(64) NOT NULL,
+    unit_price DECIMAL(10,2) NOT NULL,
+    quantity INT NOT NULL DEFAULT 0
+);
+CREATE UNIQUE INDEX IF NOT EXISTS idx_in_store_sku ON in_store_product_details (sku);
+CREATE INDEX IF NOT EXISTS idx_in_store_inventory ON in_store_product_details (inventory_product_id);
+
+CREATE TABLE IF NOT EXISTS online_product_details (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    product_id INT NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_online_details_product ON online_product_details (product_id);
+
+CREATE TABLE IF NOT EXISTS online_product_variant (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    online_product_id INT NOT NULL,
+    sku VARCHAR(64) NOT NULL,
+    unit_price DECIMAL(10,2) NOT NULL,
+    quantity INT NOT NULL DEFAULT 0,
+    image_path VARCHAR(255)
+);
+CREATE UNIQUE INDEX IF NOT EXISTS idx_online_variant_sku ON online_product_variant (sku);
+CREATE INDEX IF NOT EXISTS idx_online_variant_product ON online_product_variant (online_product_id);
+
+CREATE TABLE IF NOT EXISTS stock_reservations (
+    reservation_id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    transaction_id VARCHAR(64) NOT NULL,
+    online_inventory_item_id INT,
+    in_store_inventory_id INT,
+    quantity INT NOT NULL,
+    channel VARCHAR(20),
+    reserved_at DATETIME NOT NULL,
+    expires_at DATETIME NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_reservations_transaction ON stock_reservations (transaction_id);
+CREATE INDEX IF NOT EXISTS idx_reservations_online ON stock_reservations (online_inventory_item_id, expires_at);
+CREATE INDEX IF NOT EXISTS idx_reservations_in_store ON stock_reservations (in_store_inventory_id, expires_at);
+CREATE INDEX IF NOT EXISTS idx_reservations_expires ON stock_reservations (expires_at);
+
+CREATE TABLE IF NOT EXISTS pos_transactions (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    transaction_date DATETIME NOT NULL,
+    payment_method VARCHAR(50),
+    staff_id INT,
+    subtotal DECIMAL(10,2) NOT NULL DEFAULT 0,
+    discount DECIMAL(10,2) NOT NULL DEFAULT 0,
+    tax DECIMAL(10,2) NOT NULL DEFAULT 0,
+    total_amount DECIMAL(10,2) NOT NULL DEFAULT 0,
+    received_amount DECIMAL(10,2),
+    invoice_no VARCHAR(32),
+    payment_ref_no VARCHAR(64),
+    customer_name VARCHAR(255)
+);
+CREATE UNIQUE INDEX IF NOT EXISTS idx_pos_transactions_invoice ON pos_transactions (invoice_no);
+
+CREATE TABLE IF NOT EXISTS physical_sale_items (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    pos_transaction_id INT NOT NULL,
+    sku VARCHAR(64) NOT NULL,
+    order_quantity INT NOT NULL,
+    stock_quantity INT,
+    subtotal DECIMAL(10,2) NOT NULL,
+    sale_channel VARCHAR(20),
+    online_inventory_item_id INT,
+    in_store_inventory_item_id INT
+);
+CREATE INDEX IF NOT EXISTS idx_sale_items_transaction ON physical_sale_items (pos_transaction_id);
+
+CREATE TABLE IF NOT EXISTS pos_returns (
+    return_id INT AUTO_INCREMENT PRIMARY KEY,
+    return_no VARCHAR(32),
+    invoice_no VARCHAR(32) NOT NULL,
+    cashier_id INT,
+    supervisor_id INT,
+    refund_total DECIMAL(10,2) NOT NULL,
+    refund_method VARCHAR(50),
+    notes TEXT,
+    return_date DATETIME DEFAULT CURRENT_TIMESTAMP
+);
+CREATE INDEX IF NOT EXISTS idx_pos_returns_invoice ON pos_returns (invoice_no);
+
+CREATE TABLE IF NOT EXISTS pos_return_items (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    return_id INT NOT NULL,
+    invoice_item_id INT NOT NULL,
+    online_inventory_item_id INT,
+    in_store_inventory_id INT,
+    qty_returned INT NOT NULL,
+    refund_amount DECIMAL(10,2) NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_return_items_invoice_item ON pos_return_items (invoice_item_id, qty_returned);
+
+CREATE TABLE IF NOT EXISTS transaction_log (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    transaction_id VARCHAR(64) NOT NULL,
+    online_order_id INT,
+    pos_transaction_id INT,
+    return_id INT,
+    pos_returns_id INT,
+    channel VARCHAR(20),
+    type VARCHAR(20),
+    status VARCHAR(20),
+    created_at DATETIME DEFAULT CURRENT_TIMESTAMP
+);
+CREATE INDEX IF NOT EXISTS idx_transaction_log_id ON transaction_log (transaction_id);
+
+CREATE TABLE IF NOT EXISTS vouchers (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    title VARCHAR(255),
+    type VARCHAR(20) NOT NULL,
+    value DECIMAL(10,2) NOT NULL DEFAULT 0,
+    min_purchase DECIMAL(10,2) NOT NULL DEFAULT 0,
+    sale_channel VARCHAR(20),
+    application_method VARCHAR(30),
+    activation_date DATE NOT NULL,
+    expiration_date DATE NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS voucher_applicability (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    voucher_id INT NOT NULL,
+    applies_to_type VARCHAR(20) NOT NULL,
+    applies_to_id INT
+);
+CREATE INDEX IF NOT EXISTS idx_voucher_applicability_voucher ON voucher_applicability (voucher_id);
+
+CREATE TABLE IF NOT EXISTS system_settings (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    group_name VARCHAR(64) NOT NULL,
+    variable_name VARCHAR(64) NOT NULL,
+    value VARCHAR(255)
+);
+CREATE INDEX IF NOT EXISTS idx_system_settings_group ON system_settings (group_name);
+
+CREATE TABLE IF NOT EXISTS staff_acc (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    username VARCHAR(64) NOT NULL,
+    password VARCHAR(255) NOT NULL,
+    first_name VARCHAR(100),
+    last_name VARCHAR(100),
+    role VARCHAR(20) NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'active',
+    last_login DATETIME
+);
+CREATE UNIQUE INDEX IF NOT EXISTS idx_staff_username ON staff_acc (username);
+
+CREATE TABLE IF NOT EXISTS activity_log (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    staff_id INT,
+    activity_type VARCHAR(50),
+    details TEXT,
+    created_at DATETIME DEFAULT CURRENT_TIMESTAMP
+);
@@ -0,0 +1,66 @@
+-- Indexes for the columns the POS DAOs filter and join on, for the MySQL database.
+-- The embedded profile gets the same indexes from embedded_schema.sql.
+--
+-- Run with the mysql client against the shop database:
+--   mysql -u <user> -p <database> < mysql_indexes.sql
+--
+-- Safe to run more than once: an index is only created if no index on the table already starts
+-- with the same columns. Indexes are built online (ALGORITHM=INPLACE, LOCK=NONE), so the POS and
+-- the website keep working, but run it outside opening hours on large tables anyway.
+
+DELIMITER //
+
+DROP PROCEDURE IF EXISTS pos_add_index //
+CREATE PROCEDURE pos_add_index(IN p_table VARCHAR(64), IN p_index VARCHAR(64), IN p_columns VARCHAR(255))
+BEGIN
+    IF NOT EXISTS (
+        SELECT 1 FROM (
+            SELECT GROUP_CONCAT(column_name ORDER BY seq_in_index SEPARATOR ',') AS cols
+            FROM information_schema.statistics
+            WHERE table_schema = DATABASE() AND table_name = p_table
+            GROUP BY index_name
+        ) existing
+        WHERE existing.cols = p_columns OR existing.cols LIKE CONCAT(p_columns, ',%')
+    ) THEN
+        SET @ddl = CONCAT('CREATE INDEX ', p_index, ' ON ', p_table, ' (', p_columns, ') ALGORITHM=INPLACE LOCK=NONE');
+        PREPARE stmt FROM @ddl;
+        EXECUTE stmt;
+        DEALLOCATE PREPARE stmt;
+        SELECT CONCAT('Created ', p_index, ' on ', p_table, ' (', p_columns, ')') AS result;
+    ELSE
+        SELECT CONCAT('Skipped ', p_index, ': ', p_table, ' already has an index on (', p_columns, ')') AS result;
+    END IF;
+END //
+
+DELIMITER ;
+
+-- SKU lookups: scans, stock checks, stock decrements (ProductDAO, StockReservationDAO)
+CALL pos_add_index('in_store_product_details', 'idx_in_store_sku', 'sku');
+CALL pos_add_index('online_product_variant', 'idx_online_variant_sku', 'sku');
+
+-- Catalog queries (UNION ALL of in-store and online products)
+CALL pos_add_index('inventory', 'idx_inventory_status_channel', 'product_status,sale_channel');
+CALL pos_add_index('in_store_product_details', 'idx_in_store_inventory', 'inventory_product_id');
+CALL pos_add_index('online_product_details', 'idx_online_details_product', 'product_id');
+CALL pos_add_index('online_product_variant', 'idx_online_variant_product', 'online_product_id');
+
+-- Stock reservations: per cart, per item (reserved quantity of other carts) and expiry cleanup
+CALL pos_add_index('stock_reservations', 'idx_reservations_transaction', 'transaction_id');
+CALL pos_add_index('stock_reservations', 'idx_reservations_in_store', 'in_store_inventory_id,expires_at');
+CALL pos_add_index('stock_reservations', 'idx_reservations_online', 'online_inventory_item_id,expires_at');
+CALL pos_add_index('stock_reservations', 'idx_reservations_expires', 'expires_at');
+
+-- Invoices and returns (InvoiceCache, ReturnsDAO)
+CALL pos_add_index('pos_transactions', 'idx_pos_transactions_invoice', 'invoice_no');
+CALL pos_add_index('pos_returns', 'idx_pos_returns_invoice', 'invoice_no');
+CALL pos_add_index('physical_sale_items', 'idx_sale_items_transaction', 'pos_transaction_id');
+CALL pos_add_index('pos_return_items', 'idx_return_items_invoice_item', 'invoice_item_id,qty_returned');
+
+-- Transaction IDs (PosTransactionDAO looks up the last ID of the day by prefix)
+CALL pos_add_index('transaction_log', 'idx_transaction_log_id', 'transaction_id');
+
+-- Promotions and settings
+CALL pos_add_index('voucher_applicability', 'idx_voucher_applicability_voucher', 'voucher_id');
+CALL pos_add_index('system_settings', 'idx_system_settings_group', 'group_name');
+
+DROP PROCEDURE pos_add_index;